@@ -2,14 +2,18 @@ package com.yg;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.*;
 
 import org.apache.commons.io.FileUtils;
 
+import com.yg.assembler.AssemblerSelector;
 import com.yg.assembler.BLASTAlignment;
 import com.yg.assembler.CAP3Assembler;
 import com.yg.assembler.BridgeAssembly;
+import com.yg.exceptions.FileException;
 import com.yg.exceptions.InputParametersException;
 import com.yg.io_handlers.IOParameters;
 import com.yg.io_handlers.InputDataHandler;
@@ -20,6 +24,7 @@ import com.yg.models.FASTASeq;
 import com.yg.models.MEInsertion;
 import com.yg.models.Variants;
 import com.yg.parsers.FastaParser;
+import com.yg.reference.ReferenceGenome;
 import com.yg.utilities.IOGeneralHelper;
 
 /**
@@ -58,6 +63,12 @@ public class Main {
 		}
 		
 		try {
+			// Prepare the reference genome only, if requested
+			if (IOParameters.PREPARE_REF) {
+				FastaParser.parseRefIntoChromosomes();
+				return;
+			}
+			
 			// Initialize IO handler
 			InputDataHandler ioHandler = new InputDataHandler();
 			
@@ -67,6 +78,9 @@ public class Main {
 			// Run the pipeline - main algorithm
 			runThePipeline(ioHandler);
 			
+			// Release opened BAM files
+			ioHandler.close();
+			
 		} catch (Exception e) {
 			// Log all exceptions
 			LOGGER.log(Level.SEVERE, "EXCEPTION:\n" + e.toString(), e);
@@ -83,13 +97,17 @@ public class Main {
 	 * @throws IOException
 	 * @throws InputParametersException 
 	 * @throws InterruptedException 
+	 * @throws FileException 
 	 */
-	public static void inputPreprocessing(InputDataHandler ioHandler) throws IOException, InputParametersException, InterruptedException {
+	public static void inputPreprocessing(InputDataHandler ioHandler) throws IOException, InputParametersException, InterruptedException, FileException {
 		LOGGER.info(Main.class.getName() + " LOGGER STARTED \n");
 
 		// Index consensus databases (to use blast tool)
 		BLASTAlignment.formatDB();
 		
+		// Load the packed reference genome once for all loci, if requested
+		ReferenceGenome.load();
+		
 		// Parse RepeatMasker output into files that store each subtype data separately 
 		//BEDParser.parseByTypes(IOParameters.REPEATMASK_LOCS_BED + IOParameters.ME_TYPE + IOParameters.REFERENCE_END);
 		
@@ -129,6 +147,29 @@ public class Main {
 			}
 		}
 		
+		// Plan collection of reads for loci that don't have them yet, so that close loci are read together;
+		// in the scan mode reads of all of them are collected at once
+		if (IOParameters.COLLECT_READS) {
+			// Extract candidate reads of .bam files into sidecars, if requested and not done in previous runs
+			ioHandler.prepareSidecars();
+
+			List<MEInsertion> lociToCollect = new ArrayList<MEInsertion>();
+			for (MEInsertion me: Variants.listOfMEI.subList(IOParameters.START_LOCI, IOParameters.END_LOCI)) {
+				File input = new File(System.getProperty("user.dir") + "/disc_reads/" + me.getChromosome() + '_' + me.getPosition() + ".fa");
+				if (!input.exists() || input.isDirectory()) {
+					lociToCollect.add(me);
+				}
+			}
+			if (IOParameters.BAM_SCAN && !lociToCollect.isEmpty()) {
+				ioHandler.scanLoci(lociToCollect);
+			} else {
+				ioHandler.planLoci(lociToCollect);
+			}
+		}
+
+		// Local assembly engines
+		AssemblerSelector assemblerSelector = new AssemblerSelector();
+		
 		int i = 0; // count the position in the list
 		
 		// For each mei location
@@ -162,30 +203,25 @@ public class Main {
 				}
 			}
 			
-			// Perform local assembly on collected reads using cap3 assembler
-			String contigsFA = CAP3Assembler.doAssembly(me.getChromosome(), me.getPosition());
-			if (contigsFA == null || contigsFA.equals("")) {
+			// Perform local assembly on collected reads, the engine is chosen by the reads, coverage and ME type
+			String readsFile = System.getProperty("user.dir") + "/disc_reads/" + me.getChromosome() + '_' + me.getPosition() + IOParameters.OUTPUT_FORMAT;
+			File readsInput = new File(readsFile);
+			if (!readsInput.exists() || readsInput.isDirectory()) {
 				LOGGER.info("No ASSEMBLED contigs");
 				OutputData.writeFailedMEOut(me); // write down failed mei with no contigs
 				continue;
 			}
-			
-			// Check obtained contigs after the assembly
-			Map<String, FASTASeq> contigs = FastaParser.extractContigs(contigsFA); // extract contigs
-			if (contigs == null || contigs.isEmpty()) {
+			List<FASTASeq> reads = new FastaParser(readsFile).parse();
+			List<FASTASeq> assembledContigs = assemblerSelector.assemble(me, reads, estimatedCoverage);
+			if (assembledContigs.isEmpty()) {
 				LOGGER.info("NO CONTIGS ASSEMBLED for " + me.getChromosome() + ":" + me.getPosition() + "\n");
 				OutputData.writeFailedMEOut(me); // write down failed mei with no contigs
 				continue;
 			}
-						
-			// Parse contigs into separate files
-			String contigsOutDir = "/intermediate_output/contigs_for_merging/" + IOParameters.ME_TYPE + "/" + IOParameters.ME_TYPE + "." + me.getChromosome() + "_" + me.getPosition() + "/contigs";
-			// Create new directory
-			IOGeneralHelper.createOutDir(contigsOutDir);
-			// Remove all existing files from that directory
-			FileUtils.cleanDirectory(new File(System.getProperty("user.dir") + contigsOutDir));
+			LOGGER.info("Contigs of " + me.getChromosome() + ":" + me.getPosition() + " assembled by " + me.getAssembler() + "\n");
 			
-			String contigsDir = CAP3Assembler.parseContigsIntoSepFiles(contigsFA, System.getProperty("user.dir") + contigsOutDir); // write valid contigs into separate files
+			// Parse contigs into separate files
+			String contigsDir = CAP3Assembler.writeContigsIntoSepFiles(assembledContigs, createContigsOutDir(me)); // write valid contigs into separate files
 			if (contigsDir == null) {
 				throw new InputParametersException("Contigs cannot be separated into files");
 			}		
@@ -208,7 +244,7 @@ public class Main {
 			}
 			
 			// Check obtained contigs after the "bridge" assembly
-			contigs = FastaParser.extractContigs(mergedContigsFile);
+			Map<String, FASTASeq> contigs = FastaParser.extractContigs(mergedContigsFile);
 			if (contigs == null || contigs.isEmpty()) {
 				LOGGER.info("NO MERGED contigs\n");
 				OutputData.writeFailedMEOut(me); // write down failed mei
@@ -252,4 +288,19 @@ public class Main {
 			// Align full sequence to consensus
 		}	
 	}
+	
+	/**
+	 * Create an empty directory for separated contigs of the mei
+	 * @param me
+	 * @return full path of the directory
+	 * @throws IOException
+	 */
+	private static String createContigsOutDir(MEInsertion me) throws IOException {
+		String contigsOutDir = "/intermediate_output/contigs_for_merging/" + IOParameters.ME_TYPE + "/" + IOParameters.ME_TYPE + "." + me.getChromosome() + "_" + me.getPosition() + "/contigs";
+		// Create new directory
+		IOGeneralHelper.createOutDir(contigsOutDir);
+		// Remove all existing files from that directory
+		FileUtils.cleanDirectory(new File(System.getProperty("user.dir") + contigsOutDir));
+		return System.getProperty("user.dir") + contigsOutDir;
+	}
 }
@@ -0,0 +1,35 @@
+package com.yg.assembler;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.yg.exceptions.InputParametersException;
+import com.yg.models.FASTASeq;
+
+/**
+ * Local assembly engine: reads collected for a location in, contigs out (see AssemblerSelector)
+ * 
+ * @author Yaroslava Girilishena
+ *
+ */
+public interface Assembler {
+
+	/**
+	 * Name of the engine, as given by -assembler
+	 * @return
+	 */
+	public String getName();
+
+	/**
+	 * Assemble reads of the location
+	 * @param chromosome
+	 * @param position
+	 * @param reads - reads collected for the location
+	 * @param estimatedCoverage - read coverage of the location
+	 * @return contigs, empty if nothing was assembled
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws InputParametersException
+	 */
+	public List<FASTASeq> assemble(String chromosome, long position, List<FASTASeq> reads, int estimatedCoverage) throws IOException, InterruptedException, InputParametersException;
+}
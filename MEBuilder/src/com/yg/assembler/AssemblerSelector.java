@@ -0,0 +1,130 @@
+package com.yg.assembler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.yg.exceptions.InputParametersException;
+import com.yg.io_handlers.IOParameters;
+import com.yg.models.FASTASeq;
+import com.yg.models.MEInsertion;
+
+/**
+ * Chooses the local assembly engine for a location (IOParameters.ASSEMBLER, or by the read set if it is "auto"):
+ * the in-memory engines are cheaper than cap3, which needs files and a process per location;
+ * OLC suits small read sets and short insertions (Alu), de Bruijn needs enough coverage and suits
+ * large read sets and long insertions (SVA, L1); cap3 is kept for what the others are unlikely to assemble;
+ * Engines are tried from the cheapest one until contigs are assembled, the engine used is recorded in the insertion
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class AssemblerSelector {
+	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME); // init logger
+
+	public static final String AUTO = "auto";
+	public static final List<String> ENGINES = Arrays.asList(AUTO, "olc", "debruijn", "cap3"); // values of -assembler
+
+	private static final int OLC_MAX_READS = 2000; // overlaps of larger read sets are expensive
+	private static final int DE_BRUIJN_MIN_COVERAGE = 8; // k-mers of lower coverage break the graph
+	private static final int SHORT_INSERTION = 300; // insertions up to that average length are assembled by OLC first
+
+	private Map<String, Assembler> assemblers = new LinkedHashMap<String, Assembler>();
+
+	/**
+	 * Constructor
+	 */
+	public AssemblerSelector() {
+		register(new OLCAssembler());
+		register(new DeBruijnAssembler());
+		register(new CAP3Assembler());
+	}
+
+	private void register(Assembler assembler) {
+		assemblers.put(assembler.getName(), assembler);
+	}
+
+	/**
+	 * Check if the engine name is known
+	 * @param name
+	 * @return
+	 */
+	public static boolean isSupported(String name) {
+		return ENGINES.contains(name);
+	}
+
+	/**
+	 * Select engines for the read set
+	 * @param numOfReads
+	 * @param coverage - read coverage of the location
+	 * @param meType - ME type, e.g. Alu
+	 * @return engines in the order to try
+	 */
+	public List<Assembler> select(int numOfReads, double coverage, String meType) {
+		List<Assembler> selected = new ArrayList<Assembler>();
+		if (!AUTO.equals(IOParameters.ASSEMBLER)) {
+			selected.add(assemblers.get(IOParameters.ASSEMBLER));
+			return selected;
+		}
+
+		Integer insertionLength = IOParameters.AVG_INS_LENGTH.get(meType);
+		boolean longInsertion = insertionLength != null && insertionLength > SHORT_INSERTION;
+		boolean highCoverage = coverage >= DE_BRUIJN_MIN_COVERAGE;
+		boolean smallReadSet = numOfReads <= OLC_MAX_READS;
+
+		if (highCoverage && (longInsertion || !smallReadSet)) {
+			selected.add(assemblers.get("debruijn"));
+		}
+		if (smallReadSet) {
+			selected.add(assemblers.get("olc"));
+		}
+		if (highCoverage && !selected.contains(assemblers.get("debruijn"))) {
+			selected.add(assemblers.get("debruijn"));
+		}
+		selected.add(assemblers.get("cap3"));
+		return selected;
+	}
+
+	/**
+	 * Assemble reads of the insertion, trying selected engines until contigs are assembled
+	 * @param me - the engine that assembled the contigs is set to the insertion (setAssembler)
+	 * @param reads
+	 * @param estimatedCoverage - read coverage, estimated from the reads if not positive
+	 * @return contigs, empty if no engine assembled them
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws InputParametersException
+	 */
+	public List<FASTASeq> assemble(MEInsertion me, List<FASTASeq> reads, int estimatedCoverage) throws IOException, InterruptedException, InputParametersException {
+		int coverage = (estimatedCoverage > 0) ? estimatedCoverage : estimateCoverage(reads);
+		List<Assembler> selected = select(reads.size(), coverage, IOParameters.ME_TYPE);
+
+		for (Assembler assembler : selected) {
+			LOGGER.info("ASSEMBLER for " + me.getChromosome() + "_" + me.getPosition() + ": " + assembler.getName() +
+						" (" + reads.size() + " reads, coverage " + coverage + ")\n");
+			List<FASTASeq> contigs = assembler.assemble(me.getChromosome(), me.getPosition(), reads, coverage);
+			if (contigs != null && !contigs.isEmpty()) {
+				me.setAssembler(assembler.getName());
+				return contigs;
+			}
+		}
+		return new ArrayList<FASTASeq>();
+	}
+
+	/**
+	 * Estimate read coverage of the flanking region (as InputDataHandler.collectDiscordantReads)
+	 * @param reads
+	 * @return
+	 */
+	private static int estimateCoverage(List<FASTASeq> reads) {
+		long bases = 0;
+		for (FASTASeq read : reads) {
+			bases += read.getNucleotideSeq().length();
+		}
+		return (int) (bases / (2 * IOParameters.FLANKING_REGION));
+	}
+}
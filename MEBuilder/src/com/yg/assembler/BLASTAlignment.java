@@ -204,7 +204,7 @@ public class BLASTAlignment {
 		// Search for a valid alignment
 		int validAlignmentIdx = -1;
 		for (int i=0; i < alignments.size(); i++) {
-			if (alignments.get(i).getQend() <= 300 || alignments.get(i).getQstart() >= contigs.get(alignments.get(i).getQseqid()).getSequence().length() - 300) {
+			if (alignments.get(i).getQend() <= 300 || alignments.get(i).getQstart() >= contigs.get(alignments.get(i).getQseqid()).getNucleotideSeq().length() - 300) {
 				// Not valid alignment of insertion
 				continue;
 			} else {
@@ -228,27 +228,27 @@ public class BLASTAlignment {
 				me.setLength(alignments.get(validAlignmentIdx).getLength()); // set the length of insertion
 				
 				// Set insertion sequence
-				me.setSequence(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence()
-						.substring((int)alignments.get(validAlignmentIdx).getQstart()-1, (int)alignments.get(validAlignmentIdx).getQend())); // set the insertion sequence
+				me.setSequence(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getNucleotideSeq()
+						.subSequence((int)alignments.get(validAlignmentIdx).getQstart()-1, (int)alignments.get(validAlignmentIdx).getQend())); // set the insertion sequence
 				
 				// Set left flanking sequence 
-				me.setFlankingL(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence().substring(0, (int)alignments.get(validAlignmentIdx).getQstart()-1));
+				me.setFlankingL(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getNucleotideSeq().subSequence(0, (int)alignments.get(validAlignmentIdx).getQstart()-1));
 				// Set right flanking sequence
-				me.setFlankingR(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence().substring((int)alignments.get(validAlignmentIdx).getQend()));
+				me.setFlankingR(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getNucleotideSeq().subSequence((int)alignments.get(validAlignmentIdx).getQend()));
 				
 			} else {
 				//System.out.println("\nSet length of aligned insertion: " + alignments.get(validAlignmentIdx).getLength() + "\n" + "Sequence full length: " + contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence().length());
 				me.setLength(alignments.get(validAlignmentIdx).getLength()); // set the length of aligned insertion
 				
-				if (contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION > IOParameters.FLANKING_REGION) {
+				if (contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION > IOParameters.FLANKING_REGION) {
 					
 					// Set insertion sequence
-					me.setSequence(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence().substring(IOParameters.FLANKING_REGION, contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION));
+					me.setSequence(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getNucleotideSeq().subSequence(IOParameters.FLANKING_REGION, contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION));
 					
 					// Set left flanking sequence 
-					me.setFlankingL(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence().substring(0, IOParameters.FLANKING_REGION));
+					me.setFlankingL(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getNucleotideSeq().subSequence(0, IOParameters.FLANKING_REGION));
 					// Set right flanking sequence
-					me.setFlankingR(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence().substring(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION));
+					me.setFlankingR(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getNucleotideSeq().subSequence(contigs.get(alignments.get(validAlignmentIdx).getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION));
 					
 				} else {
 					me.setFull(false);
@@ -301,7 +301,7 @@ public class BLASTAlignment {
 			if (contig1 == null) {
 				
 				if ((alignments.get(i).getQseqid().contains("left") && alignments.get(i).getQend() > IOParameters.FLANKING_REGION) ||
-					alignments.get(i).getQseqid().contains("right") && alignments.get(i).getQstart() < contigs.get(alignments.get(i).getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION){
+					alignments.get(i).getQseqid().contains("right") && alignments.get(i).getQstart() < contigs.get(alignments.get(i).getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION){
 					
 					contig1 = alignments.get(i);
 					continue;
@@ -309,7 +309,7 @@ public class BLASTAlignment {
 			} else if (contig2 == null && !contig1.getQseqid().equals(alignments.get(i).getQseqid())) {
 				
 				if ((alignments.get(i).getQseqid().contains("left") && alignments.get(i).getQend() > IOParameters.FLANKING_REGION) ||
-					alignments.get(i).getQseqid().contains("right") && alignments.get(i).getQstart() < contigs.get(alignments.get(i).getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION){
+					alignments.get(i).getQseqid().contains("right") && alignments.get(i).getQstart() < contigs.get(alignments.get(i).getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION){
 					
 					// Different query id and contig2 is undefined yet
 					contig2 = alignments.get(i);
@@ -330,7 +330,7 @@ public class BLASTAlignment {
 			if (contig1.getLength() > IOParameters.AVG_INS_LENGTH.get(IOParameters.ME_TYPE)) {
 				LOGGER.info("ONE alignment insertion found. Contains FULL insertion\n");
 				me.setFull(true);
-				me.setSequence(contigs.get(contig1.getQseqid()).getSequence().substring((int)contig1.getQstart()-1, (int)contig1.getQend()));
+				me.setSequence(contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence((int)contig1.getQstart()-1, (int)contig1.getQend()));
 
 				// Get flanking regions
 				if (contig1.getQseqid().contains("left")) {
@@ -340,14 +340,14 @@ public class BLASTAlignment {
 					FastaParser parseFlank = new FastaParser(rightFlankFile);
 					FASTASeq rightFlank = parseFlank.parse().get(0);
 					
-					me.setFlankingL(contigs.get(contig1.getQseqid()).getSequence().substring(0, (int)contig1.getQstart()-1)); // left
+					me.setFlankingL(contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence(0, (int)contig1.getQstart()-1)); // left
 					
 					// Get extra bases in front of the insertion
-					if (contigs.get(contig1.getQseqid()).getSequence().length() - (int)contig1.getQend() > 0) {
+					if (contigs.get(contig1.getQseqid()).getNucleotideSeq().length() - (int)contig1.getQend() > 0) {
 						// attach extra bases to the left flanking
-						me.setFlankingR(contigs.get(contig1.getQseqid()).getSequence().substring((int)contig1.getQend()) + rightFlank.getSequence());
+						me.setFlankingR(contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence((int)contig1.getQend()).concat(rightFlank.getNucleotideSeq()));
 					} else {
-						me.setFlankingR(rightFlank.getSequence());
+						me.setFlankingR(rightFlank.getNucleotideSeq());
 					}
 					
 				} else {
@@ -357,14 +357,14 @@ public class BLASTAlignment {
 					FastaParser parseFlank = new FastaParser(leftFlankFile);
 					FASTASeq leftFlank = parseFlank.parse().get(0);
 					
-					me.setFlankingR(contigs.get(contig1.getQseqid()).getSequence().substring((int)contig1.getQend())); // right
+					me.setFlankingR(contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence((int)contig1.getQend())); // right
 					
 					// Get extra bases in front of the insertion
 					if ((int)contig1.getQstart() > 1) {
 						// attach extra bases to the left flanking
-						me.setFlankingL(leftFlank.getSequence() + contigs.get(contig1.getQseqid()).getSequence().substring(0, (int)contig1.getQstart()));
+						me.setFlankingL(leftFlank.getNucleotideSeq().concat(contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence(0, (int)contig1.getQstart())));
 					} else {
-						me.setFlankingL(leftFlank.getSequence());
+						me.setFlankingL(leftFlank.getNucleotideSeq());
 					}
 					
 				}
@@ -460,21 +460,21 @@ public class BLASTAlignment {
 		// -----------------------
  		// SPECIAL CASES - ONE INSIDE ANOTHER
  		// -----------------------
-		String sequence = "";
+		CharSequence sequence = "";
 		
 		// Left insertion inside the right one
 		if (contig2Sstart < contig1Sstart && contig1Sstart < contig2Send 
 				&& contig2Sstart < contig1Send && contig1Send < contig2Send) {
 				
-			sequence = contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQstart()-1, (int)contig2.getQend());
+			sequence = contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQstart()-1, (int)contig2.getQend());
 		
 			// Full sequence found
 			me.setFull(true);
 			
 			// Set sequence and flanking regions
 			me.setSequence(sequence);
-			me.setFlankingL(contigs.get(contig1.getQseqid()).getSequence().substring(0, (int)contig1.getQstart()-1)); // left
-			me.setFlankingR(contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQend())); // right
+			me.setFlankingL(contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence(0, (int)contig1.getQstart()-1)); // left
+			me.setFlankingR(contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQend())); // right
 		
 			// Set alignment information
 			me.getConsensusAlignments().add(new ConsensusLocation(contig2.getQseqid(), contig2.getSseqid(), contig2.getSstart(), contig2.getSend()));
@@ -487,15 +487,15 @@ public class BLASTAlignment {
 		if (contig1Sstart < contig2Sstart && contig2Sstart < contig1Send 
 				&& contig1Sstart < contig2Send && contig2Send < contig1Send) {
 				
-			sequence = contigs.get(contig1.getQseqid()).getSequence().substring((int)contig1.getQstart()-1, (int)contig1.getQend());
+			sequence = contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence((int)contig1.getQstart()-1, (int)contig1.getQend());
 		
 			// Full sequence found
 			me.setFull(true);
 			
 			// Set sequence and flanking regions
 			me.setSequence(sequence);
-			me.setFlankingL(contigs.get(contig1.getQseqid()).getSequence().substring(0, (int)contig1.getQstart()-1)); // left
-			me.setFlankingR(contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQend())); // right
+			me.setFlankingL(contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence(0, (int)contig1.getQstart()-1)); // left
+			me.setFlankingR(contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQend())); // right
 		
 			// Set alignment information
 			me.getConsensusAlignments().add(new ConsensusLocation(contig1.getQseqid(), contig1.getSseqid(), contig1.getSstart(), contig1.getSend()));
@@ -551,8 +551,8 @@ public class BLASTAlignment {
 		if (IOParameters.ME_TYPE.equals("Alu")) {
 		
 			if (gapLength > 0) {
-				sequence = contigs.get(contig1.getQseqid()).getSequence().substring((int)contig1.getQstart()-1, (int)contig1.getQend()) 
-						+ gaps + contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQstart()-1, (int)contig2.getQend());
+				sequence = contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence((int)contig1.getQstart()-1, (int)contig1.getQend()) 
+						+ gaps + contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQstart()-1, (int)contig2.getQend());
 				
 				me.setContig1AlignLength(contig1.getLength());
 				me.setContig2AlignLength(contig2.getLength());
@@ -565,13 +565,13 @@ public class BLASTAlignment {
 				// Get more bp from the contig with higher % of identical matches
 				if (contig1.getPident() > contig2.getPident()) {
 					
-					sequence = contigs.get(contig1.getQseqid()).getSequence().substring((int)contig1.getQstart()-1, (int)contig1.getQend()) + 
-							   contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQstart()-1 + Math.abs(gapLength), (int)contig2.getQend());
+					sequence = contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence((int)contig1.getQstart()-1, (int)contig1.getQend()).concat(
+							   contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQstart()-1 + Math.abs(gapLength), (int)contig2.getQend()));
 				} else {
 					
 					
-					sequence = contigs.get(contig1.getQseqid()).getSequence().substring((int)contig1.getQstart()-1, (int)contig1.getQend() - Math.abs(gapLength)) + 
-							   contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQstart()-1, (int)contig2.getQend());
+					sequence = contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence((int)contig1.getQstart()-1, (int)contig1.getQend() - Math.abs(gapLength)).concat(
+							   contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQstart()-1, (int)contig2.getQend()));
 				}
 				
 				// Full sequence found
@@ -580,12 +580,12 @@ public class BLASTAlignment {
 			
 			// Set sequence and flanking regions
 			me.setSequence(sequence);
-			me.setFlankingL(contigs.get(contig1.getQseqid()).getSequence().substring(0, (int)contig1.getQstart())); // left
-			me.setFlankingR(contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQend())); // right
+			me.setFlankingL(contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence(0, (int)contig1.getQstart())); // left
+			me.setFlankingR(contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQend())); // right
 		
 		} else {
 			
-			if (contig1.getQend() < IOParameters.FLANKING_REGION || contig2.getQstart()-1 > contigs.get(contig2.getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION) {
+			if (contig1.getQend() < IOParameters.FLANKING_REGION || contig2.getQstart()-1 > contigs.get(contig2.getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION) {
 				me.setFull(false);
 				
 				// Set alignment information
@@ -596,8 +596,8 @@ public class BLASTAlignment {
 			}
 			
 			if (gapLength > 0) {
-				sequence = contigs.get(contig1.getQseqid()).getSequence().substring(IOParameters.FLANKING_REGION, (int)contig1.getQend()) 
-						+ gaps + contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQstart()-1, contigs.get(contig2.getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION);
+				sequence = contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence(IOParameters.FLANKING_REGION, (int)contig1.getQend()) 
+						+ gaps + contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQstart()-1, contigs.get(contig2.getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION);
 				
 				// Full sequence not found, but reconstructed with N's
 				me.setFull(false);
@@ -606,11 +606,11 @@ public class BLASTAlignment {
 				
 				// Get more bp from the contig with higher % of identical matches
 				if (contig1.getPident() > contig2.getPident()) {
-					sequence = contigs.get(contig1.getQseqid()).getSequence().substring(IOParameters.FLANKING_REGION, (int)contig1.getQend()) 
-							+ contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQstart()-1 + Math.abs(gapLength), contigs.get(contig2.getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION);
+					sequence = contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence(IOParameters.FLANKING_REGION, (int)contig1.getQend()).concat(
+							contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQstart()-1 + Math.abs(gapLength), contigs.get(contig2.getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION));
 				} else {
-					sequence = contigs.get(contig1.getQseqid()).getSequence().substring(IOParameters.FLANKING_REGION, (int)contig1.getQend() - Math.abs(gapLength)) 
-							+ contigs.get(contig2.getQseqid()).getSequence().substring((int)contig2.getQstart()-1, contigs.get(contig2.getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION);
+					sequence = contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence(IOParameters.FLANKING_REGION, (int)contig1.getQend() - Math.abs(gapLength)).concat(
+							contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence((int)contig2.getQstart()-1, contigs.get(contig2.getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION));
 				}
 				
 				// Full sequence found
@@ -619,8 +619,8 @@ public class BLASTAlignment {
 			
 			// Set sequence and flanking regions
 			me.setSequence(sequence);
-			me.setFlankingL(contigs.get(contig1.getQseqid()).getSequence().substring(0, IOParameters.FLANKING_REGION)); // left
-			me.setFlankingR(contigs.get(contig2.getQseqid()).getSequence().substring(contigs.get(contig2.getQseqid()).getSequence().length() - IOParameters.FLANKING_REGION)); // right
+			me.setFlankingL(contigs.get(contig1.getQseqid()).getNucleotideSeq().subSequence(0, IOParameters.FLANKING_REGION)); // left
+			me.setFlankingR(contigs.get(contig2.getQseqid()).getNucleotideSeq().subSequence(contigs.get(contig2.getQseqid()).getNucleotideSeq().length() - IOParameters.FLANKING_REGION)); // right
 			
 		}
 		
@@ -11,7 +11,7 @@ import com.yg.utilities.IOGeneralHelper;
 import com.yg.utilities.ProcessStream;
 
 /**
- * This class does pairwise alignment between contigs (or contig and flanking) using bl2seq tool
+ * This class does pairwise alignment between a contig and the reference sequence (TSD/IMD) using bl2seq tool
  * 
  * @author Yaroslava Girilishena
  *
@@ -20,68 +20,6 @@ import com.yg.utilities.ProcessStream;
 public class Bl2seqAlignment {
 	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME); // init logger
 	
-	/**
-	 *  Compare pairwise two contigs for alignment 
-	 * @param contig1 - path to cintig 1
-	 * @param contig2 - path to contig 2
-	 * @param outDir - output directory
-	 * @return a file with output data
-	 * @throws IOException
-	 * @throws InputParametersException
-	 * @throws InterruptedException
-	 */
-	public static String runBL2SEQ(String contig1, String contig2, String outDir) throws IOException, InputParametersException, InterruptedException {
-		// Set output file
-		String bl2seqOutFile = System.getProperty("user.dir") + outDir + "/" + contig1.substring(contig1.lastIndexOf("/") + 1, contig1.lastIndexOf(".")) + "_" + 
-							   contig2.substring(contig2.lastIndexOf("/") + 1, contig2.lastIndexOf(".")) + ".fa";
-				
-		// Build command for running bl2seq
-		List<String> blastnCommands = new ArrayList<String>();
-		blastnCommands.add(IOParameters.BL2SEQ_EXEC_PATH + "/bl2seq");
-		blastnCommands.add("-i");
-		blastnCommands.add(contig1);
-		blastnCommands.add("-j");
-		blastnCommands.add(contig2);
-		blastnCommands.add("-p");
-		blastnCommands.add("blastn");
-		blastnCommands.add("-e");
-		blastnCommands.add("0.1");
-		blastnCommands.add("-W");
-		blastnCommands.add("4"); // 9
-		blastnCommands.add("-D");
-		blastnCommands.add("1");
-		blastnCommands.add("-q");
-		blastnCommands.add("-2");
-		blastnCommands.add("-F");
-		blastnCommands.add("F");
-		blastnCommands.add("-o");
-		blastnCommands.add(bl2seqOutFile);
-
-		// Run the tool
-		ProcessBuilder blastnPB = new ProcessBuilder(blastnCommands);
-        Process blastnProcess = blastnPB.start();
-        
-        // Collect error messages
-        ProcessStream errStream = new ProcessStream(blastnProcess.getErrorStream(), "ERROR");            
-        errStream.start();
-        
-        // Catch error
-        if (errStream.getOutput() != null && !errStream.getOutput().equals("") && errStream.getOutput().length() != 0) {
-        	throw new InputParametersException("BL2SEQ ERROR:\n" + errStream.getOutput());
-        } else {
-        	errStream.cleanBuffer();
-        }
-        
-        // Collect output
-        ProcessStream outputStream = new ProcessStream(blastnProcess.getInputStream(), "OUTPUT");
-        outputStream.start();
-
-        blastnProcess.waitFor();
-        outputStream.cleanBuffer(); // clean buffer
-		
-		return bl2seqOutFile; // return a file with output data
-	}
-
 	/**
 	 * Run bl2seq to align contig and reference sequence to find TSD/IMD, etc.
 	 * @param contig
@@ -6,7 +6,13 @@ import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FileUtils;
@@ -20,11 +26,10 @@ import com.yg.graph.Node;
 import com.yg.graph.Tree;
 import com.yg.graph.Vertex;
 import com.yg.io_handlers.IOParameters;
-import com.yg.io_handlers.InputDataHandler;
 import com.yg.models.Bl2seqOutputData;
 import com.yg.models.FASTASeq;
+import com.yg.models.NucleotideSeq;
 import com.yg.models.MEInsertion;
-import com.yg.parsers.Bl2seqOutTabParser;
 import com.yg.parsers.FastaParser;
 import com.yg.utilities.IOGeneralHelper;
 
@@ -43,12 +48,14 @@ public class BridgeAssembly {
 	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME); // init logger
 	
 	private List<String> contigsFiles;
+	private PairwiseAlignment pairwiseAlignment = new PairwiseAlignment(); // in place of bl2seq
 	
 	private List<Vertex> nodes;
     private List<Edge> edges;
     
     public AdjacencyMatrix adjacencyMatrix; // for tree path
     public AdjacencyMatrix adjacencyMatrixSymmetric; //for graph path
+    public AdjacencyMatrix overlapMatrix; // alignment lengths of overlaps, to rank graph paths
     
     private Graph graph;
     
@@ -83,15 +90,11 @@ public class BridgeAssembly {
      * @throws FileException 
      */
     public String findMaxOverlap(String contigsDir) throws IOException, InputParametersException, InterruptedException, FileException {
-    	// Create output directory for pair-wise alignments
+    	// Create output directory for merged contigs of paths
     	String alignmentOutDir = "/intermediate_output/bl2seq_output/" + IOParameters.ME_TYPE + "/" + IOParameters.ME_TYPE + "." + chromosome + "_" + position + "/paired_contigs";
     	IOGeneralHelper.createOutDir(alignmentOutDir);
     	// Remove all existing files from that directory
     	FileUtils.cleanDirectory(new File(System.getProperty("user.dir") + alignmentOutDir));
-    				
-    	// Create output directory for flanking alignments
-    	String flankingAlignmentOutDir = "/intermediate_output/bl2seq_output_flanking/" + IOParameters.ME_TYPE;
-    	IOGeneralHelper.createOutDir(flankingAlignmentOutDir);
     	
     	String finalMergedContigs = null; // file with final merged contigs
     	
@@ -114,10 +117,10 @@ public class BridgeAssembly {
         	LOGGER.info("Do all-against-all pairwise alignment for contigs\n");
         	
 			// Filter out contigs fully aligned to flanking region
-    		filterOutFullyAlignedToFlanking(flankingAlignmentOutDir);
+    		filterOutFullyAlignedToFlanking();
     		
     		// Align all contigs and flanking sequences
-    		alignAllPairsOfContigs(alignmentOutDir, flankingSequences);
+    		alignAllPairsOfContigs(flankingSequences);
     		List<String> alignedContigs;
     		
     		// Print matrix - TEST
@@ -139,11 +142,11 @@ public class BridgeAssembly {
         			alignedContigs = getListOfContigsFromPath(path, null);
         			
         			// Merge contigs from a path
-        			finalMergedContigs = mergeContigsFromPath(alignedContigs, alignmentOutDir);
+        			finalMergedContigs = mergeContigsFromPath(alignedContigs);
         			
         			if (finalMergedContigs.contains("left") && finalMergedContigs.contains("right")) {
         				// Align to consensus 
-            			if (alignInsertionToConsensus(finalMergedContigs, true) && me.getSequence().length() >= IOParameters.MIN_MEI_LENGTH.get(IOParameters.ME_TYPE)) {
+            			if (alignInsertionToConsensus(finalMergedContigs, true) && me.getNucleotideSeq().length() >= IOParameters.MIN_MEI_LENGTH.get(IOParameters.ME_TYPE)) {
             				LOGGER.info("PATH #" + index + " aligned SUCCESSFULLY\n");
             				insPathFound = true;
             				break;
@@ -174,7 +177,7 @@ public class BridgeAssembly {
     			if (longestLeftPath != null && longestLeftPath.size() != 0) {
     				LOGGER.info("LONGEST LEFT path found!\n");
     				alignedContigs = getListOfContigsFromPath(null, longestLeftPath);
-    				leftMergedContigsFile = mergeContigsFromPath(alignedContigs, alignmentOutDir);
+    				leftMergedContigsFile = mergeContigsFromPath(alignedContigs);
     			} else {
     				leftMergedContigsFile = flankingSequences.get(0);
     			}
@@ -200,7 +203,7 @@ public class BridgeAssembly {
     			if (longestRightPath != null && longestRightPath.size() != 0) {
     				LOGGER.info("LONGEST RIGHT path found!\n");
     				alignedContigs = getListOfContigsFromPath(null, longestRightPath);
-    				rightMergedContigsFile = mergeContigsFromPath(alignedContigs, alignmentOutDir);
+    				rightMergedContigsFile = mergeContigsFromPath(alignedContigs);
     			} else {
     				rightMergedContigsFile = flankingSequences.get(1);
     			}
@@ -317,15 +320,13 @@ public class BridgeAssembly {
      * Merge contigs from a path
      * 
      * @param contigsFiles
-     * @param bl2seqOutputDir
      * @return
      * @throws IOException
      * @throws InputParametersException
      * @throws InterruptedException
      */
-    public String mergeContigsFromPath(List<String> contigsFiles, String alignmentOutDir) throws IOException, InputParametersException, InterruptedException {
-    	Bl2seqOutTabParser bl2seqRes;
-    	String alignmentFile;
+    public String mergeContigsFromPath(List<String> contigsFiles) throws IOException, InputParametersException, InterruptedException {
+    	List<Bl2seqOutputData> alignments;
     	
     	// Start merging from the first file
     	String mergedFile = contigsFiles.get(0);
@@ -334,18 +335,15 @@ public class BridgeAssembly {
     	for (int i=1; i<contigsFiles.size(); i++) {
 			
     		// Align merged contig with next contig in a path
-    		alignmentFile = Bl2seqAlignment.runBL2SEQ(mergedFile, contigsFiles.get(i), alignmentOutDir);
-    		//bl2seqRes = parseAndValidateAlignment(alignmentFile, query, subject);
-    		
-    		// Parse bl2seq output file with results
-        	bl2seqRes = new Bl2seqOutTabParser(alignmentFile, true);
-        	bl2seqRes.parse();
+    		FASTASeq query = new FastaParser(mergedFile).parse().get(0);
+    		FASTASeq subject = new FastaParser(contigsFiles.get(i)).parse().get(0);
+    		alignments = pairwiseAlignment.align(query, subject, true);
         	
     		// If they are aligned (and they should!)
-    		if (bl2seqRes != null && bl2seqRes.alignmentsList.size() !=0) {
+    		if (alignments.size() != 0) {
     			boolean merged = false;
     			
-    			for (Bl2seqOutputData bl2seqOut : bl2seqRes.alignmentsList) {
+    			for (Bl2seqOutputData bl2seqOut : alignments) {
     				// Merge contigs
     				mergedSequence = mergeContigs(mergedFile, contigsFiles.get(i), bl2seqOut);
     				
@@ -392,49 +390,51 @@ public class BridgeAssembly {
 		parseContig = new FastaParser(contig2File);
 		FASTASeq subject = parseContig.parse().get(0);
 		
-		String fullSeq = "";
-		String reverseContig2 = "";
+		NucleotideSeq querySeq = query.getNucleotideSeq();
+		NucleotideSeq subjectSeq = subject.getNucleotideSeq();
+		NucleotideSeq fullSeq = NucleotideSeq.EMPTY;
+		NucleotideSeq reverseContig2 = NucleotideSeq.EMPTY;
 
 		if (contig1File.contains(IOParameters.LEFT_FLANK_TAG) && !contig2File.contains(IOParameters.RIGHT_FLANK_TAG)) { // left flanking region
 			if (bl2seqRes.subjectStrand == '+') { // subject '+'					
 				
 				if ((bl2seqRes.subjectStart < 50 || bl2seqRes.queryStart < 50) && 
-						Math.abs(bl2seqRes.subjectEnd - subject.getSequence().length()) > 10 &&
-						Math.abs(query.getSequence().length() - bl2seqRes.queryEnd) < 15) {
+						Math.abs(bl2seqRes.subjectEnd - subjectSeq.length()) > 10 &&
+						Math.abs(querySeq.length() - bl2seqRes.queryEnd) < 15) {
 					
-					fullSeq = query.getSequence().substring(0, bl2seqRes.queryStart) + 
-							subject.getSequence().substring(bl2seqRes.subjectStart);
+					fullSeq = querySeq.subSequence(0, bl2seqRes.queryStart).concat(
+							subjectSeq.subSequence(bl2seqRes.subjectStart));
 				}
 			} else { // subject '-'
 				
-				if ((Math.abs(bl2seqRes.subjectStart - subject.getSequence().length()) < 50 || bl2seqRes.queryStart < 50) && 
+				if ((Math.abs(bl2seqRes.subjectStart - subjectSeq.length()) < 50 || bl2seqRes.queryStart < 50) && 
 						bl2seqRes.subjectEnd > 10 && 
-						Math.abs(query.getSequence().length() - bl2seqRes.queryEnd) < 15) {
+						Math.abs(querySeq.length() - bl2seqRes.queryEnd) < 15) {
 					
-					reverseContig2 = InputDataHandler.reverseCompDNA( subject.getSequence().substring(0, bl2seqRes.subjectStart) );
+					reverseContig2 = subjectSeq.subSequence(0, bl2seqRes.subjectStart).reverseComplement();
 
-					fullSeq = query.getSequence().substring(0, bl2seqRes.queryStart) + reverseContig2;
+					fullSeq = querySeq.subSequence(0, bl2seqRes.queryStart).concat(reverseContig2);
 				}
 			}
 		} else if (contig1File.contains(IOParameters.RIGHT_FLANK_TAG) && !contig2File.contains(IOParameters.LEFT_FLANK_TAG)) { // right flanking region
 			if (bl2seqRes.subjectStrand == '+') { // subject '+'
 				
-				if ((Math.abs(bl2seqRes.subjectEnd - subject.getSequence().length()) < 50 || Math.abs(bl2seqRes.queryEnd - query.getSequence().length()) < 50 )&& 
+				if ((Math.abs(bl2seqRes.subjectEnd - subjectSeq.length()) < 50 || Math.abs(bl2seqRes.queryEnd - querySeq.length()) < 50 )&& 
 						bl2seqRes.subjectStart > 10 &&
 						bl2seqRes.queryStart < 25) {
 					
-					fullSeq = subject.getSequence().substring(0, bl2seqRes.subjectEnd) +
-							query.getSequence().substring(bl2seqRes.queryEnd);
+					fullSeq = subjectSeq.subSequence(0, bl2seqRes.subjectEnd).concat(
+							querySeq.subSequence(bl2seqRes.queryEnd));
 				}
 			} else { // subject '-'
 				
-				if (Math.abs(bl2seqRes.subjectStart - subject.getSequence().length()) > 10 &&
-						(bl2seqRes.subjectEnd < 50 || Math.abs(bl2seqRes.queryEnd - query.getSequence().length()) < 50) &&
+				if (Math.abs(bl2seqRes.subjectStart - subjectSeq.length()) > 10 &&
+						(bl2seqRes.subjectEnd < 50 || Math.abs(bl2seqRes.queryEnd - querySeq.length()) < 50) &&
 						bl2seqRes.queryStart < 25) {
 					
-					reverseContig2 = InputDataHandler.reverseCompDNA( subject.getSequence().substring(bl2seqRes.subjectEnd) );
+					reverseContig2 = subjectSeq.subSequence(bl2seqRes.subjectEnd).reverseComplement();
 					
-					fullSeq = reverseContig2 + query.getSequence().substring(bl2seqRes.queryEnd);
+					fullSeq = reverseContig2.concat(querySeq.subSequence(bl2seqRes.queryEnd));
 				}
 			}
 		} else {
@@ -442,19 +442,19 @@ public class BridgeAssembly {
 			boolean successful = false;
 			
 			if (bl2seqRes.subjectStrand == '+') { // subject '+'
-				if (bl2seqRes.subjectStart < 25 && Math.abs(bl2seqRes.queryEnd - query.getSequence().length()) < 50) {
+				if (bl2seqRes.subjectStart < 25 && Math.abs(bl2seqRes.queryEnd - querySeq.length()) < 50) {
 					
-					fullSeq = query.getSequence().substring(0, bl2seqRes.queryEnd) // merged left path
-							+ subject.getSequence().substring(bl2seqRes.subjectEnd); // right flanking
+					fullSeq = querySeq.subSequence(0, bl2seqRes.queryEnd) // merged left path
+							.concat(subjectSeq.subSequence(bl2seqRes.subjectEnd)); // right flanking
 					
 					successful = true;
 				}
 			} 
 			
 			if (!successful) {
-				if (query.getSequence().length() > IOParameters.AVG_INS_LENGTH.get(IOParameters.ME_TYPE) + IOParameters.FLANKING_REGION) {
-					fullSeq = query.getSequence()	 // merged left path
-							+ subject.getSequence(); // right flanking
+				if (querySeq.length() > IOParameters.AVG_INS_LENGTH.get(IOParameters.ME_TYPE) + IOParameters.FLANKING_REGION) {
+					fullSeq = querySeq	 // merged left path
+							.concat(subjectSeq); // right flanking
 				}
 			}
 		}
@@ -479,55 +479,52 @@ public class BridgeAssembly {
 	/**
 	 * Align contigs to the reference genome 
 	 * and filter out the ones that are fully mapped either to one of the flanks or to both
-	 * @param alignmentOutDir
 	 */
-	public void filterOutFullyAlignedToFlanking(String alignmentOutDir) {
+	public void filterOutFullyAlignedToFlanking() {
     	// Get file with flanking sequence
     	String refSeq = System.getProperty("user.dir") + "/intermediate_output/ref_flanking/" + IOParameters.ME_TYPE + "/" + chromosome + "_" + position + ".fa";
     	
-    	String outFile; // alignment output file
-    	Bl2seqOutTabParser bl2seqRes;
+    	List<Bl2seqOutputData> alignments;
+    	FASTASeq ref;
+    	try {
+    		ref = new FastaParser(refSeq).parse().get(0);
+    	} catch (IOException e) {
+    		e.printStackTrace();
+    		return;
+    	}
     	
     	List<String> fullAllignments = new ArrayList<String>();
     	
     	// Align each contig to flanking sequence and validate the alignment
     	for (int i=0; i<contigsFiles.size(); i++) {
 			try {				
-				// Align contig to ref using bl2seq  tool 
-				// and get the output file with alignment results
-				outFile = Bl2seqAlignment.runBL2SEQ(refSeq, contigsFiles.get(i), alignmentOutDir);
-			
-				// Parse second overlapping contig (subject)
-				FastaParser parsedFA = new FastaParser(contigsFiles.get(i));
-				FASTASeq subject = parsedFA.parse().get(0);
+				// Parse contig (subject)
+				FASTASeq subject = new FastaParser(contigsFiles.get(i)).parse().get(0);
 				
-				// Parse bl2seq output file with results
-	        	bl2seqRes = new Bl2seqOutTabParser(outFile, false);
-	        	bl2seqRes.parse();
+				// Align contig to ref
+				alignments = pairwiseAlignment.align(ref, subject, false);
 	        	
 				// If no hits found
-				if (bl2seqRes == null || bl2seqRes.alignmentsList == null ||  bl2seqRes.alignmentsList.size() == 0) {
-					bl2seqRes = null;
+				if (alignments.size() == 0) {
 		    		continue;
 		    	} else {
 		    		// Check every alignment to the reference
-		    		for (Bl2seqOutputData bl2seqOut : bl2seqRes.alignmentsList) {
+		    		for (Bl2seqOutputData bl2seqOut : alignments) {
 		    			
 		    			int sStart = bl2seqOut.subjectStart < bl2seqOut.subjectEnd ? bl2seqOut.subjectStart : bl2seqOut.subjectEnd;
 			    		int sEnd = bl2seqOut.subjectStart > bl2seqOut.subjectEnd ? bl2seqOut.subjectStart : bl2seqOut.subjectEnd;
 			    		
-			    		int subjectLeftover = sStart - 1 > subject.getSequence().length() - sEnd ? sStart - 1 : subject.getSequence().length() - sEnd;
+			    		int subjectLeftover = sStart - 1 > subject.getNucleotideSeq().length() - sEnd ? sStart - 1 : subject.getNucleotideSeq().length() - sEnd;
 
 			    		if (subjectLeftover < 10) {
 			    			LOGGER.info(contigsFiles.get(i) + " fully aligned to both flanking - REMOVED");
 			    			fullAllignments.add(contigsFiles.get(i));
-			    			bl2seqRes = null;
 				    		break;
 			    		}
 		    		}
 		    	}
 				
-			} catch (IOException | InputParametersException | InterruptedException e) {
+			} catch (IOException e) {
 				e.printStackTrace();
 			}
     	}
@@ -540,105 +537,136 @@ public class BridgeAssembly {
     
     /**
      * Do all-against-all pairwise alignment of contigs and flanking sequences
-     * @param contigsDir
-     * @param alignmentOutDir
-     * @param chromosome
-     * @param position
-     * @return
+     * Pairs are aligned as independent tasks on ALIGNMENT_THREADS threads, the adjacency matrix is built after all of them
+     * @param flankingSequences
      * @throws IOException
      * @throws FileException 
+     * @throws InterruptedException 
      */
-    public void alignAllPairsOfContigs(String alignmentOutDir, List<String> flankingSequences) throws IOException, FileException {  	
+    public void alignAllPairsOfContigs(List<String> flankingSequences) throws IOException, FileException, InterruptedException {  	
 
     	// Add flanking sequences to the contigs list
     	contigsFiles.add(0, flankingSequences.get(0)); //add left flanking at the beginning
     	contigsFiles.add(flankingSequences.get(1)); // add right flanking at the end
 
-    	// Define the adjacency matrix
-    	adjacencyMatrix = new AdjacencyMatrix(contigsFiles.size());
+    	// Parse contigs once for all pairs
+    	List<FASTASeq> contigs = new ArrayList<FASTASeq>();
+    	for (String contigFile : contigsFiles) {
+    		contigs.add(new FastaParser(contigFile).parse().get(0));
+    	}
 
-    	String outFile;
-    	// For each contigs pair, run the alignment tool
-    	for (int i=0; i<contigsFiles.size()-1; i++) {
-    		for (int j=i+1; j<contigsFiles.size(); j++) {
-    			try {
-    				// Left and right flanking should not be counted as aligned
-    				if (contigsFiles.get(i).contains(IOParameters.LEFT_FLANK_TAG) && contigsFiles.get(j).contains(IOParameters.RIGHT_FLANK_TAG)
-    						|| contigsFiles.get(j).contains(IOParameters.LEFT_FLANK_TAG) && contigsFiles.get(i).contains(IOParameters.RIGHT_FLANK_TAG)) {
-    					continue;
-    				}
-    				// Align pairs of contigs using bl2seq tool and get the output file with alignment results
-					outFile = Bl2seqAlignment.runBL2SEQ(contigsFiles.get(i), contigsFiles.get(j), alignmentOutDir);
-					
-					// Parse the first overlapping contig (query)
-					FastaParser parseContig = new FastaParser(contigsFiles.get(i));
-					FASTASeq query = parseContig.parse().get(0);
-					
-					// Parse the second overlapping contig (subject)
-					parseContig = new FastaParser(contigsFiles.get(j));
-					FASTASeq subject = parseContig.parse().get(0);
-					
-					// Filter out pairs with either bad or no alignment
-					Bl2seqOutputData bl2seqRes = parseAndValidateAlignments(outFile, query, subject);
-					
-					if (bl2seqRes == null) {
-						// Remove file with no alignment
-			    		//IOGeneralHelper.deleteFile(outFile, null); //"has bad or no alignment - REMOVED");
-						//LOGGER.info(outFile + " has bad or no alignment");
-			    		continue;
+    	// Pairs sharing seeds near their ends, others are not aligned
+    	ContigPairPrefilter prefilter = new ContigPairPrefilter(contigs);
+    	int numOfPairs = 0;
+    	
+    	// Valid overlaps of pairs: pair index (i * size + j) -> alignment
+    	final int size = contigsFiles.size();
+    	final Map<Integer, Bl2seqOutputData> overlaps = new ConcurrentHashMap<Integer, Bl2seqOutputData>();
+    	
+    	// For each contigs pair, align them in memory
+    	ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, IOParameters.ALIGNMENT_THREADS));
+    	try {
+    		List<Future<?>> futures = new ArrayList<Future<?>>();
+	    	for (int i=0; i<size-1; i++) {
+	    		for (int j=i+1; j<size; j++) {
+					// Left and right flanking should not be counted as aligned
+					if (contigsFiles.get(i).contains(IOParameters.LEFT_FLANK_TAG) && contigsFiles.get(j).contains(IOParameters.RIGHT_FLANK_TAG)
+							|| contigsFiles.get(j).contains(IOParameters.LEFT_FLANK_TAG) && contigsFiles.get(i).contains(IOParameters.RIGHT_FLANK_TAG)) {
+						continue;
 					}
+					numOfPairs++;
+					if (!prefilter.isCandidate(i, j)) {
+						continue;
+					}
+					final FASTASeq query = contigs.get(i); // the first overlapping contig
+					final FASTASeq subject = contigs.get(j); // the second overlapping contig
+					final int pair = i*size + j;
 					
-					// Save aligned pair into adjacency matrix 
-					adjacencyMatrix.items[i][j] = bl2seqRes.subjectLeftover;
-					
-				} catch (IOException | InputParametersException | InterruptedException e) {
-					e.printStackTrace();
-				}
+					futures.add(executor.submit(new Runnable() {
+						@Override
+						public void run() {
+							// Align pairs of contigs
+							List<Bl2seqOutputData> alignments = pairwiseAlignment.align(query, subject, true);
+							
+							// Filter out pairs with either bad or no alignment
+							Bl2seqOutputData bl2seqRes = validateAlignments(alignments, query, subject);
+							if (bl2seqRes != null) {
+								overlaps.put(pair, bl2seqRes);
+							}
+						}
+					}));
+	    		}
+	    	}
+	    	
+	    	LOGGER.info("Contig pairs to align: " + futures.size() + " of " + numOfPairs + " (" + 
+	    			String.format(Locale.US, "%.1f", (numOfPairs == 0) ? 0 : 100.0 * (numOfPairs - futures.size()) / numOfPairs) + "% pruned by shared seeds)\n");
+	    	
+	    	// Wait for all alignments
+	    	for (Future<?> future : futures) {
+	    		try {
+	    			future.get();
+	    		} catch (ExecutionException e) {
+	    			if (e.getCause() instanceof RuntimeException) {
+	    				throw (RuntimeException) e.getCause();
+	    			}
+	    			throw new IllegalStateException(e.getCause());
+	    		}
+	    	}
+    	} finally {
+    		executor.shutdownNow();
+    	}
+    	
+    	// Define the adjacency matrix and save aligned pairs into it
+    	adjacencyMatrix = new AdjacencyMatrix(size);
+    	overlapMatrix = new AdjacencyMatrix(size);
+    	for (int i=0; i<size-1; i++) {
+    		for (int j=i+1; j<size; j++) {
+    			Bl2seqOutputData overlap = overlaps.get(i*size + j);
+    			if (overlap != null) {
+    				adjacencyMatrix.items[i][j] = overlap.subjectLeftover;
+    				overlapMatrix.items[i][j] = overlap.alignmentLength;
+    			}
     		}
     	}
     }
     
     /**
-     * Parse and validate the alignment between contigs and flanking sequences
-     * @param alignmentFile
-     * @return
-     * @throws IOException
+     * Validate the alignments between contigs and flanking sequences
+     * @param alignments - alignments of the query and the subject, the best first
+     * @param query
+     * @param subject
+     * @return the first valid alignment, null if there is none
      */
-    public Bl2seqOutputData parseAndValidateAlignments(String alignmentFile, FASTASeq query, FASTASeq subject) throws IOException {
-    	try {
-    		// Parse bl2seq output file with results
-        	Bl2seqOutTabParser bl2seqRes = new Bl2seqOutTabParser(alignmentFile, true);
-        	bl2seqRes.parse();
-        	
+    public Bl2seqOutputData validateAlignments(List<Bl2seqOutputData> alignments, FASTASeq query, FASTASeq subject) {
 			// If no hits found
-			if (bl2seqRes == null || bl2seqRes.alignmentsList == null || bl2seqRes.alignmentsList.size() == 0) {
+			if (alignments == null || alignments.size() == 0) {
 	    		return null;
 	    	} else {
     			// Validate the alignments 
 	    		Bl2seqOutputData bestAlignment = null;
 	    		
-	    		for (Bl2seqOutputData bl2seqOut : bl2seqRes.alignmentsList) {
+	    		for (Bl2seqOutputData bl2seqOut : alignments) {
 	    			// If the left flank (query) is aligned to a contig (subject), e.g. left_flank -> Contig1
 		    		if (query.getDescription().contains(IOParameters.LEFT_FLANK_TAG)) {
 		    			
 			    		if (bl2seqOut.subjectStrand == '+') { // subject '+'
 							if ( (bl2seqOut.subjectStart > 50 && bl2seqOut.queryStart > 50) || 
-									Math.abs(bl2seqOut.subjectEnd - subject.getSequence().length()) < 10 ||
-									Math.abs(query.getSequence().length() - bl2seqOut.queryEnd) > 15) {
+									Math.abs(bl2seqOut.subjectEnd - subject.getNucleotideSeq().length()) < 10 ||
+									Math.abs(query.getNucleotideSeq().length() - bl2seqOut.queryEnd) > 15) {
 								continue;
 							} else {
 
 					    		// Get the subject's leftover length
-								bl2seqOut.subjectLeftover = subject.getSequence().length() - bl2seqOut.subjectEnd;
+								bl2seqOut.subjectLeftover = subject.getNucleotideSeq().length() - bl2seqOut.subjectEnd;
 								bestAlignment = bl2seqOut;
 								break;
 								
 							}
 						} else { // subject '-'
 							
-							if ( (Math.abs(bl2seqOut.subjectStart - subject.getSequence().length()) > 50 && bl2seqOut.queryStart > 50) || 
+							if ( (Math.abs(bl2seqOut.subjectStart - subject.getNucleotideSeq().length()) > 50 && bl2seqOut.queryStart > 50) || 
 									bl2seqOut.subjectEnd < 10 || 
-									Math.abs(query.getSequence().length() - bl2seqOut.queryEnd) > 15) {
+									Math.abs(query.getNucleotideSeq().length() - bl2seqOut.queryEnd) > 15) {
 								continue;
 							} else {
 
@@ -656,7 +684,7 @@ public class BridgeAssembly {
 		    			
 		    			if (bl2seqOut.subjectStrand == '+') { // subject '+'
 		    				
-		    				if ( (Math.abs(bl2seqOut.subjectEnd - subject.getSequence().length()) > 50 && Math.abs(bl2seqOut.queryEnd - query.getSequence().length()) > 50)|| 
+		    				if ( (Math.abs(bl2seqOut.subjectEnd - subject.getNucleotideSeq().length()) > 50 && Math.abs(bl2seqOut.queryEnd - query.getNucleotideSeq().length()) > 50)|| 
 		    						bl2seqOut.subjectStart < 10 ||
 		    						bl2seqOut.queryStart > 25) {
 		    					continue;
@@ -670,14 +698,14 @@ public class BridgeAssembly {
 							}
 		    			} else { // subject '-'
 		    				
-		    				if (Math.abs(bl2seqOut.subjectStart - subject.getSequence().length()) < 10 ||
-		    						(bl2seqOut.subjectEnd > 50 && Math.abs(bl2seqOut.queryEnd - query.getSequence().length()) > 50) ||
+		    				if (Math.abs(bl2seqOut.subjectStart - subject.getNucleotideSeq().length()) < 10 ||
+		    						(bl2seqOut.subjectEnd > 50 && Math.abs(bl2seqOut.queryEnd - query.getNucleotideSeq().length()) > 50) ||
 		    						bl2seqOut.queryStart > 25) {
 		    					continue;
 		    				} else {
 
 					    		// Get the subject's leftover length
-		    					bl2seqOut.subjectLeftover = subject.getSequence().length() - bl2seqOut.subjectStart;
+		    					bl2seqOut.subjectLeftover = subject.getNucleotideSeq().length() - bl2seqOut.subjectStart;
 		    					bestAlignment = bl2seqOut;
 		    					break;
 		    					
@@ -690,7 +718,7 @@ public class BridgeAssembly {
 		    			
 		    			if (bl2seqOut.subjectStrand == '+') { // subject '+'
 		    				
-		    				if ( (Math.abs(bl2seqOut.queryEnd - query.getSequence().length()) > 50 && Math.abs(bl2seqOut.subjectEnd - subject.getSequence().length()) > 50) ||
+		    				if ( (Math.abs(bl2seqOut.queryEnd - query.getNucleotideSeq().length()) > 50 && Math.abs(bl2seqOut.subjectEnd - subject.getNucleotideSeq().length()) > 50) ||
 		    						bl2seqOut.queryStart < 10 ||
 		    						bl2seqOut.subjectStart > 25) {
 		    					continue;
@@ -704,14 +732,14 @@ public class BridgeAssembly {
 							}
 		    			} else { // subject '-'
 		    				
-		    				if (Math.abs(bl2seqOut.queryEnd - query.getSequence().length()) < 10 ||
-		    						(bl2seqOut.queryStart > 50 && Math.abs(bl2seqOut.subjectStart - subject.getSequence().length()) > 50)||
+		    				if (Math.abs(bl2seqOut.queryEnd - query.getNucleotideSeq().length()) < 10 ||
+		    						(bl2seqOut.queryStart > 50 && Math.abs(bl2seqOut.subjectStart - subject.getNucleotideSeq().length()) > 50)||
 		    						bl2seqOut.subjectEnd > 25) {
 		    					continue;
 		    				} else {
 
 					    		// Get the subject's leftover length
-		    					bl2seqOut.subjectLeftover = query.getSequence().length() - bl2seqOut.queryEnd;
+		    					bl2seqOut.subjectLeftover = query.getNucleotideSeq().length() - bl2seqOut.queryEnd;
 		    					bestAlignment = bl2seqOut;
 		    					break;
 							}
@@ -724,17 +752,17 @@ public class BridgeAssembly {
 			    		int subjectStart = bl2seqOut.subjectStart < bl2seqOut.subjectEnd ? bl2seqOut.subjectStart : bl2seqOut.subjectEnd;
 			    		int subjectEnd = bl2seqOut.subjectEnd > bl2seqOut.subjectStart ? bl2seqOut.subjectEnd : bl2seqOut.subjectStart;
 			    			
-			    		if ( ((queryStart > 25 && Math.abs(queryEnd - query.getSequence().length()) > 25)
-			    			|| (subjectStart > 25 && Math.abs(subjectEnd - subject.getSequence().length()) > 25))) {
+			    		if ( ((queryStart > 25 && Math.abs(queryEnd - query.getNucleotideSeq().length()) > 25)
+			    			|| (subjectStart > 25 && Math.abs(subjectEnd - subject.getNucleotideSeq().length()) > 25))) {
 
 			    			continue;
 			    		} else {
 			    			
 			    			// Get the subject's leftover length
-			    			if (subjectStart > 25 && Math.abs(subjectEnd - subject.getSequence().length()) < 25) {
+			    			if (subjectStart > 25 && Math.abs(subjectEnd - subject.getNucleotideSeq().length()) < 25) {
 			    				bl2seqOut.subjectLeftover = subjectStart - 1;
-			    			} else if (subjectStart < 25 && Math.abs(subjectEnd - subject.getSequence().length()) > 25) {
-			    				bl2seqOut.subjectLeftover = subject.getSequence().length() - subjectEnd;
+			    			} else if (subjectStart < 25 && Math.abs(subjectEnd - subject.getNucleotideSeq().length()) > 25) {
+			    				bl2seqOut.subjectLeftover = subject.getNucleotideSeq().length() - subjectEnd;
 			    			}
 			    			bestAlignment = bl2seqOut;
 			    			break;
@@ -749,9 +777,6 @@ public class BridgeAssembly {
 	    		return bestAlignment;
 	    		
 	    	}
-		} catch (IOException e) {
-			throw e;
-		}
     }
     
     // -----------------------------------------------------------------------------------
@@ -759,7 +784,8 @@ public class BridgeAssembly {
  	// -----------------------------------------------------------------------------------
     
     /**
-     * Build a graph from overlapping contigs and find all paths between the left and the right flanking
+     * Build a graph from overlapping contigs and find the best paths between the left and the right flanking,
+     * up to MAX_PATHS paths within PATH_SEARCH_TIME, ranked by the number of overlaps, then by overlap lengths
      * @param from
      * @param to
      * @return
@@ -780,12 +806,12 @@ public class BridgeAssembly {
         for (int i=0; i<adjacencyMatrix.getRows(); i++) {
         	for (int j=0; j<adjacencyMatrix.getCols(); j++) {
         		if (adjacencyMatrix.items[i][j] > 0) {
-        			graph.addNewEdge(i, j);
+        			graph.addNewEdge(i, j, overlapMatrix.items[i][j]);
         		}
         	}
         }
-        // Get all paths in a graph
-        List<List<Vertex>> paths = graph.getAllPaths(from, to);
+        // Get the best paths in a graph
+        List<List<Vertex>> paths = graph.getBestPaths(from, to, IOParameters.MAX_PATHS, IOParameters.PATH_SEARCH_TIME);
         
         LOGGER.info("Searching for MULTIPLE PATHS for " + chromosome + "_" + position + ": ");
         if (paths != null && !paths.isEmpty()){
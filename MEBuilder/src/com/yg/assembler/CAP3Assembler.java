@@ -18,41 +18,51 @@ import com.yg.parsers.FastaParser;
 import com.yg.utilities.ProcessStream;
 
 /**
- * This class removes redundant reads using cd-hit-est before the assembly; 
+ * Assembler running CAP3 tool: 
+ * removes redundant reads before the assembly; 
  * does assembly using CAP3 tool; 
  * parses obtained contigs into separate files.
  * 
  * @author Yaroslava Girilishena
  *
  */
-public class CAP3Assembler {
+public class CAP3Assembler implements Assembler {
 	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME); // init logger
 	
+	@Override
+	public String getName() {
+		return "cap3";
+	}
+	
+	@Override
+	public List<FASTASeq> assemble(String chromosome, long position, List<FASTASeq> reads, int estimatedCoverage) throws IOException, InterruptedException, InputParametersException {
+		String inputFile = removeRedundantReads(chromosome, position, reads); // remove redundant reads
+		String contigsFA = doAssembly(chromosome, position, inputFile);
+		
+		// Collect assembled contigs
+		File contigsFile = new File(contigsFA);
+		if (!contigsFile.exists() || contigsFile.isDirectory()) {
+			return new ArrayList<FASTASeq>();
+		}
+		List<FASTASeq> contigs = new FastaParser(contigsFA).parse();
+		LOGGER.info("Number of contigs for " + contigsFA + ": " + contigs.size() + "\n");
+		return contigs;
+	}
+	
 	/**
 	 * Do assembly using cap3 tool to create contigs
 	 * @param chromosome
 	 * @param position
+	 * @param inputFile - file with reads
 	 * @return a file with assembled contigs
 	 * @throws IOException
 	 * @throws InputParametersException
 	 * @throws InterruptedException
 	 */
-	public static String doAssembly(String chromosome, long position) throws IOException, InputParametersException, InterruptedException {
-		String inputFile = removeRedundantReads(chromosome, position); // remove redundant reads
-		
+	private static String doAssembly(String chromosome, long position, String inputFile) throws IOException, InputParametersException, InterruptedException {
 		// Setup output directory
 		String outputDirectory = System.getProperty("user.dir") + "/intermediate_output/cap3_assembly/" + IOParameters.ME_TYPE + "/" + IOParameters.ME_TYPE + "." + chromosome + "_" + position;
 
-		// Check if input file exists
-		if (inputFile == null) {
-			return null;
-		}
-		
-		File input = new File(inputFile);
-		if (!input.exists() || input.isDirectory()) {
-			return null;
-		}
-		
 		// Create output directory if it doesn't exist
 		Path path = Paths.get(outputDirectory);
         if (!Files.exists(path)) {
@@ -103,65 +113,38 @@ public class CAP3Assembler {
 	}
 	
 	/**
-	 * Run cd-hit tool to remove redundant reads before assembly
+	 * Remove redundant reads before assembly (in place of cd-hit-est, see ReadDeduplicator)
 	 * @param chromosome
 	 * @param position
+	 * @param reads
 	 * @return a file with reads
-	 * @throws InputParametersException
 	 * @throws IOException
-	 * @throws InterruptedException
 	 */
-	private static String removeRedundantReads(String chromosome, long position) throws InputParametersException, IOException, InterruptedException {		
-		// Setup input file
-		String inputFile = System.getProperty("user.dir") + "/disc_reads/" + chromosome + "_" + position + IOParameters.OUTPUT_FORMAT;
+	private static String removeRedundantReads(String chromosome, long position, List<FASTASeq> reads) throws IOException {		
 		//Setup output directory
 		String outputDirectory = System.getProperty("user.dir") + "/intermediate_output/cap3_assembly/" + IOParameters.ME_TYPE + "/" + IOParameters.ME_TYPE + "." + chromosome + "_" + position;
 		// Setup output file
 		String outputFile = outputDirectory + "/" + IOParameters.ME_TYPE + "." + chromosome + "_" + position + ".cdhit";
 
-		// Check if input file exists
-		File input = new File(inputFile);
-		if (!input.exists() || input.isDirectory()) {
-			return null;
-		}
 		// Create output directory if it doesn't exist
 		Path path = Paths.get(outputDirectory);
         if (!Files.exists(path)) {
            Files.createDirectories(path);
         }
-		        
-		// Commands for running cd-hit-est
- 		List<String> cdhitCommands = new ArrayList<String>();
- 		cdhitCommands.add(IOParameters.CDHIT_TOOL_PATH + "/cd-hit-est");
- 		cdhitCommands.add("-i");
- 		cdhitCommands.add(inputFile);
- 		cdhitCommands.add("-c");
- 		cdhitCommands.add(IOParameters.PERC_IDENTITY_CDHIT.toString());
- 		cdhitCommands.add("-o");
- 		cdhitCommands.add(outputFile);
-
- 		// Run the process
- 	    ProcessBuilder cdhitPB = new ProcessBuilder(cdhitCommands);
-        Process cdhitProcess = cdhitPB.start();
-         
-        // Collect error messages
-        ProcessStream errStream = new ProcessStream(cdhitProcess.getErrorStream(), "ERROR");            
-        errStream.start();
-         
-        // Catch error
-        if (errStream.getOutput() != null && !errStream.getOutput().equals("") && errStream.getOutput().length() != 0) {
-         	throw new InputParametersException("CDHIT ERROR:\n" + errStream.getOutput());
-        } else {
-         	errStream.cleanBuffer();
+		
+        // Cluster reads with identity PERC_IDENTITY_CDHIT and keep representatives
+        List<FASTASeq> representatives = ReadDeduplicator.removeRedundantReads(reads);
+        
+        LOGGER.info("Redundant reads removed: " + (reads.size() - representatives.size()) + " of " + reads.size() + "\n");
+        
+        BufferedWriter outwriter = new BufferedWriter(new FileWriter(outputFile));
+        try {
+        	for (FASTASeq read : representatives) {
+        		outwriter.write(read.toPrint());
+        	}
+        } finally {
+        	outwriter.close();
         }
-         
-        // Collect output
-        ProcessStream outputStream = new ProcessStream(cdhitProcess.getInputStream(), "OUTPUT");
-        outputStream.start();
-         
-        cdhitProcess.waitFor();
-         
-        outputStream.cleanBuffer(); // clean buffer
 		
 		return outputFile;
 	}
@@ -193,13 +176,24 @@ public class CAP3Assembler {
 			return null;
 		}
 		
+		return writeContigsIntoSepFiles(contigs, contigsDir);
+	}
+	
+	/**
+	 * Write contigs into separate files, one file <description>.fa for each contig
+	 * @param contigs - assembled contigs
+	 * @param contigsDir - destination directory
+	 * @return destination directory
+	 * @throws IOException
+	 */
+	public static String writeContigsIntoSepFiles(List<FASTASeq> contigs, String contigsDir) throws IOException {
 		String outfilename = "";
 		BufferedWriter outwriter;
 		
 		// Parse and write each contig into a file
 		for (FASTASeq contig : contigs) {
 			// Remove too short contigs
-			if (contig.getSequence().length() < IOParameters.MIN_CONTIG_LENGTH.get(IOParameters.ME_TYPE)) {
+			if (contig.getNucleotideSeq().length() < IOParameters.MIN_CONTIG_LENGTH.get(IOParameters.ME_TYPE)) {
 				continue;
 			}
 			outfilename = contigsDir + "/" + contig.getDescription() + ".fa";
@@ -0,0 +1,146 @@
+package com.yg.assembler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.yg.models.FASTASeq;
+import com.yg.utilities.DNA;
+import com.yg.utilities.Minimizers;
+
+/**
+ * Candidate pairs of contigs (and flanking sequences) for the pairwise alignment:
+ * every sequence is sketched with minimizers on both strands, a pair is a candidate if its shared minimizers
+ * form a diagonal cluster of at least MIN_SHARED_SEEDS seeds that reaches near an end of both sequences,
+ * as overlaps accepted by BridgeAssembly.validateAlignments do;
+ * Pairs without shared seeds or sharing an inner repeat only are not aligned
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class ContigPairPrefilter {
+
+	private static final int K = 11; // minimizer length
+	private static final int WINDOW = 4; // k-mers per minimizer window, shared stretches of K+WINDOW-1 bases share a seed
+	private static final int MIN_SHARED_SEEDS = 2; // seeds of a cluster
+	private static final int BAND = 16; // diagonals of a cluster differ by up to that (indels)
+	private static final int END_SLACK = 100; // bps between a cluster and the sequence end
+
+	private boolean[][] candidates;
+
+	/**
+	 * Constructor - sketch the sequences and find candidate pairs
+	 * @param seqs - contigs and flanking sequences, in the order of the adjacency matrix
+	 */
+	public ContigPairPrefilter(List<FASTASeq> seqs) {
+		int size = seqs.size();
+		this.candidates = new boolean[size][size];
+
+		// Index minimizers of both strands: minimizer -> {sequence, strand, position}
+		Map<Long, List<int[]>> index = new HashMap<Long, List<int[]>>();
+		List<List<long[]>> forwardSketches = new ArrayList<List<long[]>>();
+		int[] lengths = new int[size];
+		for (int n = 0; n < size; n++) {
+			byte[] forward = DNA.encode(seqs.get(n).getNucleotideSeq());
+			lengths[n] = forward.length;
+			List<long[]> forwardSketch = Minimizers.getMinimizers(forward, K, WINDOW);
+			forwardSketches.add(forwardSketch);
+			addToIndex(index, forwardSketch, n, 0);
+			addToIndex(index, Minimizers.getMinimizers(DNA.reverseComplementCodes(forward), K, WINDOW), n, 1);
+		}
+
+		// Collect seeds of each sequence (forward) with the following ones (either strand)
+		for (int n = 0; n < size - 1; n++) {
+			Map<Integer, List<int[]>> seeds = new HashMap<Integer, List<int[]>>(); // other -> {strand, diagonal, position}
+			for (long[] minimizer : forwardSketches.get(n)) {
+				List<int[]> hits = index.get(minimizer[0]);
+				for (int[] hit : hits) {
+					if (hit[0] <= n) {
+						continue;
+					}
+					List<int[]> pairSeeds = seeds.get(hit[0]);
+					if (pairSeeds == null) {
+						pairSeeds = new ArrayList<int[]>();
+						seeds.put(hit[0], pairSeeds);
+					}
+					int position = (int) minimizer[1];
+					pairSeeds.add(new int[] {hit[1], hit[2] - position, position});
+				}
+			}
+			for (Map.Entry<Integer, List<int[]>> entry : seeds.entrySet()) {
+				int other = entry.getKey();
+				if (hasEndCluster(entry.getValue(), lengths[n], lengths[other])) {
+					candidates[n][other] = true;
+					candidates[other][n] = true;
+				}
+			}
+		}
+	}
+
+	private static void addToIndex(Map<Long, List<int[]>> index, List<long[]> sketch, int seq, int strand) {
+		for (long[] minimizer : sketch) {
+			List<int[]> hits = index.get(minimizer[0]);
+			if (hits == null) {
+				hits = new ArrayList<int[]>(2);
+				index.put(minimizer[0], hits);
+			}
+			hits.add(new int[] {seq, strand, (int) minimizer[1]});
+		}
+	}
+
+	/**
+	 * Check if seeds of the pair form a cluster along a diagonal that reaches near an end of both sequences
+	 * @param seeds - {strand, diagonal, query position}
+	 * @param queryLength
+	 * @param subjectLength
+	 * @return
+	 */
+	private static boolean hasEndCluster(List<int[]> seeds, int queryLength, int subjectLength) {
+		if (seeds.size() < MIN_SHARED_SEEDS) {
+			return false;
+		}
+		Collections.sort(seeds, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				return (a[0] != b[0]) ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]);
+			}
+		});
+
+		int start = 0;
+		for (int i = 1; i <= seeds.size(); i++) {
+			if (i < seeds.size() && seeds.get(i)[0] == seeds.get(i - 1)[0] && seeds.get(i)[1] - seeds.get(i - 1)[1] <= BAND) {
+				continue;
+			}
+			// Cluster [start, i)
+			if (i - start >= MIN_SHARED_SEEDS) {
+				int queryStart = Integer.MAX_VALUE, queryEnd = 0, subjectStart = Integer.MAX_VALUE, subjectEnd = 0;
+				for (int s = start; s < i; s++) {
+					int[] seed = seeds.get(s);
+					queryStart = Math.min(queryStart, seed[2]);
+					queryEnd = Math.max(queryEnd, seed[2] + K);
+					subjectStart = Math.min(subjectStart, seed[2] + seed[1]);
+					subjectEnd = Math.max(subjectEnd, seed[2] + seed[1] + K);
+				}
+				if ((queryStart <= END_SLACK || queryLength - queryEnd <= END_SLACK) &&
+						(subjectStart <= END_SLACK || subjectLength - subjectEnd <= END_SLACK)) {
+					return true;
+				}
+			}
+			start = i;
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the pair should be aligned
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	public boolean isCandidate(int i, int j) {
+		return candidates[i][j];
+	}
+}
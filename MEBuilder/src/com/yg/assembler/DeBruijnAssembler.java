@@ -0,0 +1,687 @@
+package com.yg.assembler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.yg.io_handlers.IOParameters;
+import com.yg.models.FASTASeq;
+import com.yg.utilities.DNA;
+
+/**
+ * Built-in de Bruijn graph assembler for local read sets, in place of running velveth and velvetg;
+ * K-mers are packed 2 bits per base into a long and counted in an open-addressing table of primitives;
+ * The graph is cleaned from tips (dead ends shorter than 2k) and bubbles (short alternative paths between the same k-mers),
+ * unitigs below a fraction of the expected coverage are dropped, and the remaining unitigs are reported as contigs;
+ * Several k-mer lengths are assembled in parallel from the same reads, the assembly with the best N50 is kept
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class DeBruijnAssembler implements Assembler {
+	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME); // init logger
+
+	private static final int MAX_K = 31; // k-mers fit a long
+	private static final int TIP_ROUNDS = 3; // removing tips may create new tips
+	private static final int MAX_BUBBLE_INDEL = 3; // max difference in length of bubble paths
+	private static final int MIN_COVERAGE_TO_FILTER = 5; // k-mers seen once are errors if the coverage is at least that
+	private static final double COVERAGE_CUTOFF = 0.1; // fraction of the expected coverage for a unitig to be kept
+	private static final byte OTHER = DNA.CODE_OTHER;
+	private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+	private int[] kValues;
+	private int minContigLength;
+
+	/**
+	 * Constructor with the parameters of the pipeline
+	 */
+	public DeBruijnAssembler() {
+		this(IOParameters.HASH_LENGTHS, IOParameters.MIN_CONTIG_LENGTH.containsKey(IOParameters.ME_TYPE) ? IOParameters.MIN_CONTIG_LENGTH.get(IOParameters.ME_TYPE) : IOParameters.MIN_CONTIG_LENGTH_TO_KEEP);
+	}
+
+	/**
+	 * Constructor
+	 * @param kValues - k-mer lengths to try, odd and up to 31
+	 * @param minContigLength - shorter contigs are not reported
+	 */
+	public DeBruijnAssembler(int[] kValues, int minContigLength) {
+		for (int k : kValues) {
+			if (k < 3 || k > MAX_K || k % 2 == 0) {
+				throw new IllegalArgumentException("ERROR - DeBruijnAssembler: k-mer length should be odd and between 3 and " + MAX_K + ": " + k);
+			}
+		}
+		this.kValues = kValues.clone();
+		this.minContigLength = minContigLength;
+	}
+
+	@Override
+	public String getName() {
+		return "debruijn";
+	}
+
+	/**
+	 * Assemble reads of the location
+	 * @param estimatedCoverage - read coverage, the expected coverage is estimated from the graph if it is less than 10 (as velvet -exp_cov auto)
+	 */
+	@Override
+	public List<FASTASeq> assemble(String chromosome, long position, List<FASTASeq> reads, int estimatedCoverage) throws InterruptedException {
+		return assemble(reads, new ArrayList<FASTASeq>(), (estimatedCoverage >= 10) ? estimatedCoverage : 0);
+	}
+
+	/**
+	 * Assemble reads with all k-mer lengths in parallel and keep the best assembly
+	 * @param reads - short reads
+	 * @param longSeqs - long sequences (e.g. contigs), their k-mers are kept regardless of coverage
+	 * @param readCoverage - expected read coverage, 0 to estimate it from the graph
+	 * @return contigs, the longest first
+	 * @throws InterruptedException
+	 */
+	public List<FASTASeq> assemble(List<FASTASeq> reads, List<FASTASeq> longSeqs, double readCoverage) throws InterruptedException {
+		final List<byte[]> shortCodes = encode(reads);
+		final List<byte[]> longCodes = encode(longSeqs);
+
+		// Convert read coverage into k-mer coverage: a read of length L has L-k+1 k-mers
+		double readLength = 0;
+		for (byte[] read : shortCodes) {
+			readLength += read.length;
+		}
+		readLength = shortCodes.isEmpty() ? 0 : readLength / shortCodes.size();
+		final double meanReadLength = readLength;
+		final double coverage = readCoverage;
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(kValues.length, Runtime.getRuntime().availableProcessors())));
+		try {
+			List<Future<Assembly>> futures = new ArrayList<Future<Assembly>>();
+			for (final int k : kValues) {
+				futures.add(executor.submit(new Callable<Assembly>() {
+					@Override
+					public Assembly call() {
+						double kmerCoverage = (meanReadLength > k) ? coverage * (meanReadLength - k + 1) / meanReadLength : 0;
+						return new Graph(k).assemble(shortCodes, longCodes, kmerCoverage);
+					}
+				}));
+			}
+
+			Assembly best = null;
+			for (Future<Assembly> future : futures) {
+				Assembly assembly;
+				try {
+					assembly = future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+				LOGGER.info("De Bruijn assembly k=" + assembly.k + ": " + assembly.contigs.size() + " contigs, N50 " + assembly.n50 + ", total length " + assembly.totalLength + "\n");
+				if (best == null || assembly.isBetterThan(best)) {
+					best = assembly;
+				}
+			}
+			if (best == null) {
+				return new ArrayList<FASTASeq>();
+			}
+			LOGGER.info("De Bruijn assembly: k=" + best.k + " is kept\n");
+			return best.contigs;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static List<byte[]> encode(List<FASTASeq> seqs) {
+		List<byte[]> codes = new ArrayList<byte[]>();
+		if (seqs != null) {
+			for (FASTASeq seq : seqs) {
+				codes.add(DNA.encode(seq.getNucleotideSeq()));
+			}
+		}
+		return codes;
+	}
+
+	/**
+	 * Contigs assembled with one k-mer length
+	 */
+	private static class Assembly {
+		int k;
+		List<FASTASeq> contigs;
+		long n50;
+		long totalLength;
+
+		Assembly(int k, List<FASTASeq> contigs) {
+			this.k = k;
+			this.contigs = contigs;
+			List<Integer> lengths = new ArrayList<Integer>();
+			for (FASTASeq contig : contigs) {
+				lengths.add(contig.getNucleotideSeq().length());
+				totalLength += contig.getNucleotideSeq().length();
+			}
+			Collections.sort(lengths, Collections.reverseOrder());
+			long sum = 0;
+			for (int length : lengths) {
+				sum += length;
+				if (2*sum >= totalLength) {
+					n50 = length;
+					break;
+				}
+			}
+		}
+
+		boolean isBetterThan(Assembly other) {
+			return (n50 != other.n50) ? n50 > other.n50 : totalLength > other.totalLength;
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------
+	// GRAPH
+	// ---------------------------------------------------------------------------------------
+
+	/**
+	 * De Bruijn graph of one k-mer length; nodes are canonical k-mers (the smaller of a k-mer and its reverse complement),
+	 * a k-mer x is followed by the k-mers of x shifted by one base that are present in the table
+	 */
+	private class Graph {
+		private int k;
+		private long mask;
+		private KmerTable table;
+
+		Graph(int k) {
+			this.k = k;
+			this.mask = (1L << 2*k) - 1;
+		}
+
+		Assembly assemble(List<byte[]> reads, List<byte[]> longSeqs, double expectedCoverage) {
+			table = new KmerTable(1024);
+			count(reads, false);
+			count(longSeqs, true);
+			removeErrors();
+
+			for (int round = 0; round < TIP_ROUNDS && removeTips(); round++) {
+			}
+			popBubbles();
+
+			List<Unitig> unitigs = getUnitigs();
+			if (expectedCoverage <= 0) {
+				expectedCoverage = getMedianCoverage(unitigs);
+			}
+			if (removeLowCoverage(unitigs, expectedCoverage * COVERAGE_CUTOFF)) {
+				unitigs = getUnitigs(); // merge unitigs split by removed ones
+			}
+
+			Collections.sort(unitigs, new Comparator<Unitig>() {
+				@Override
+				public int compare(Unitig a, Unitig b) {
+					return (a.kmers.length != b.kmers.length) ? Integer.compare(b.kmers.length, a.kmers.length) : Double.compare(b.coverage, a.coverage);
+				}
+			});
+			List<FASTASeq> contigs = new ArrayList<FASTASeq>();
+			for (Unitig unitig : unitigs) {
+				int length = unitig.kmers.length + k - 1;
+				if (length < minContigLength) {
+					continue;
+				}
+				contigs.add(new FASTASeq("NODE_" + (contigs.size() + 1) + "_length_" + length + "_cov_" + String.format(Locale.US, "%.1f", unitig.coverage),
+										 unitig.getSequence()));
+			}
+			return new Assembly(k, contigs);
+		}
+
+		/**
+		 * Count canonical k-mers of sequences, k-mers with N are skipped
+		 */
+		private void count(List<byte[]> seqs, boolean trusted) {
+			for (byte[] seq : seqs) {
+				long kmer = 0;
+				int valid = 0; // ACGT bases before the position
+				for (int i = 0; i < seq.length; i++) {
+					if (seq[i] == OTHER) {
+						valid = 0;
+						continue;
+					}
+					kmer = ((kmer << 2) | seq[i]) & mask;
+					if (++valid >= k) {
+						table.add(canonical(kmer), trusted);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Remove k-mers seen once, if the coverage is high enough for them to be errors
+		 */
+		private void removeErrors() {
+			long repeated = 0;
+			long sum = 0;
+			for (int slot = 0; slot < table.capacity(); slot++) {
+				if (table.isPresent(slot) && table.getCount(slot) > 1) {
+					repeated++;
+					sum += table.getCount(slot);
+				}
+			}
+			if (repeated == 0 || sum < (long) MIN_COVERAGE_TO_FILTER * repeated) {
+				return;
+			}
+			for (int slot = 0; slot < table.capacity(); slot++) {
+				if (table.isPresent(slot) && table.getCount(slot) == 1 && !table.isTrusted(slot)) {
+					table.remove(slot);
+				}
+			}
+		}
+
+		/**
+		 * Remove tips: unitigs shorter than 2k with a dead end, attached to a branch with a higher coverage
+		 * @return true if tips were removed
+		 */
+		private boolean removeTips() {
+			boolean removed = false;
+			for (Unitig unitig : getUnitigs()) {
+				if (unitig.kmers.length + k - 1 >= 2*k) {
+					continue;
+				}
+				long first = unitig.kmers[0];
+				long last = unitig.kmers[unitig.kmers.length - 1];
+				int in = inDegree(first);
+				int out = outDegree(last);
+				double siblingCoverage;
+				if (in == 0 && out == 1) {
+					long next = successors(last)[0];
+					siblingCoverage = getMaxCount(predecessors(next), last);
+				} else if (in == 1 && out == 0) {
+					long prev = predecessors(first)[0];
+					siblingCoverage = getMaxCount(successors(prev), first);
+				} else {
+					continue;
+				}
+				if (siblingCoverage >= unitig.coverage) {
+					remove(unitig);
+					removed = true;
+				}
+			}
+			return removed;
+		}
+
+		/**
+		 * Pop bubbles: of short unitigs between the same pair of k-mers and of similar length, only the most covered is kept
+		 */
+		private void popBubbles() {
+			Map<String, List<Unitig>> bubbles = new HashMap<String, List<Unitig>>();
+			for (Unitig unitig : getUnitigs()) {
+				if (unitig.kmers.length > 2*k) {
+					continue;
+				}
+				long first = unitig.kmers[0];
+				long last = unitig.kmers[unitig.kmers.length - 1];
+				if (inDegree(first) != 1 || outDegree(last) != 1) {
+					continue;
+				}
+				long prev = predecessors(first)[0];
+				long next = successors(last)[0];
+				// The same bubble seen from the other strand: from rc(next) to rc(prev)
+				long rcPrev = reverseComplement(next);
+				long rcNext = reverseComplement(prev);
+				String key = (prev < rcPrev || (prev == rcPrev && next <= rcNext)) ? prev + ":" + next : rcPrev + ":" + rcNext;
+				List<Unitig> paths = bubbles.get(key);
+				if (paths == null) {
+					paths = new ArrayList<Unitig>();
+					bubbles.put(key, paths);
+				}
+				paths.add(unitig);
+			}
+
+			for (List<Unitig> paths : bubbles.values()) {
+				if (paths.size() < 2) {
+					continue;
+				}
+				Unitig kept = paths.get(0);
+				for (Unitig path : paths) {
+					if (path.coverage > kept.coverage || (path.coverage == kept.coverage && path.kmers.length > kept.kmers.length)) {
+						kept = path;
+					}
+				}
+				for (Unitig path : paths) {
+					if (path != kept && Math.abs(path.kmers.length - kept.kmers.length) <= MAX_BUBBLE_INDEL) {
+						remove(path);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Remove unitigs with coverage below the cutoff
+		 * @return true if unitigs were removed
+		 */
+		private boolean removeLowCoverage(List<Unitig> unitigs, double cutoff) {
+			boolean removed = false;
+			for (Unitig unitig : unitigs) {
+				if (unitig.coverage < cutoff && !unitig.trusted) {
+					remove(unitig);
+					removed = true;
+				}
+			}
+			return removed;
+		}
+
+		/**
+		 * Get the median coverage of bases in unitigs
+		 */
+		private double getMedianCoverage(List<Unitig> unitigs) {
+			if (unitigs.isEmpty()) {
+				return 0;
+			}
+			List<Unitig> sorted = new ArrayList<Unitig>(unitigs);
+			Collections.sort(sorted, new Comparator<Unitig>() {
+				@Override
+				public int compare(Unitig a, Unitig b) {
+					return Double.compare(a.coverage, b.coverage);
+				}
+			});
+			long total = 0;
+			for (Unitig unitig : sorted) {
+				total += unitig.kmers.length;
+			}
+			long sum = 0;
+			for (Unitig unitig : sorted) {
+				sum += unitig.kmers.length;
+				if (2*sum >= total) {
+					return unitig.coverage;
+				}
+			}
+			return sorted.get(sorted.size() - 1).coverage;
+		}
+
+		/**
+		 * Get unitigs: maximal paths of k-mers with one successor, each followed by a k-mer with one predecessor
+		 */
+		private List<Unitig> getUnitigs() {
+			List<Unitig> unitigs = new ArrayList<Unitig>();
+			boolean[] visited = new boolean[table.capacity()];
+			LongList kmers = new LongList();
+			for (int slot = 0; slot < table.capacity(); slot++) {
+				if (!table.isPresent(slot) || visited[slot]) {
+					continue;
+				}
+				long kmer = table.getKey(slot);
+
+				// Walk back to the start of the unitig
+				long start = kmer;
+				for (int steps = 0; steps < table.size() && inDegree(start) == 1; steps++) {
+					long prev = predecessors(start)[0];
+					if (outDegree(prev) != 1 || canonical(prev) == kmer) {
+						break;
+					}
+					start = prev;
+				}
+
+				// Walk forward collecting k-mers
+				kmers.clear();
+				long current = start;
+				visited[table.find(canonical(current))] = true;
+				kmers.add(current);
+				while (outDegree(current) == 1) {
+					long next = successors(current)[0];
+					int nextSlot = table.find(canonical(next));
+					if (inDegree(next) != 1 || visited[nextSlot]) {
+						break;
+					}
+					visited[nextSlot] = true;
+					kmers.add(next);
+					current = next;
+				}
+				unitigs.add(new Unitig(kmers.toArray()));
+			}
+			return unitigs;
+		}
+
+		private void remove(Unitig unitig) {
+			for (long kmer : unitig.kmers) {
+				int slot = table.find(canonical(kmer));
+				if (slot >= 0) {
+					table.remove(slot);
+				}
+			}
+		}
+
+		private double getMaxCount(long[] kmers, long except) {
+			int max = 0;
+			for (long kmer : kmers) {
+				if (kmer != except) {
+					max = Math.max(max, table.getCount(table.find(canonical(kmer))));
+				}
+			}
+			return max;
+		}
+
+		private long[] successors(long kmer) {
+			long[] next = new long[4];
+			int n = 0;
+			for (int b = 0; b < 4; b++) {
+				long candidate = ((kmer << 2) | b) & mask;
+				if (table.find(canonical(candidate)) >= 0) {
+					next[n++] = candidate;
+				}
+			}
+			return Arrays.copyOf(next, n);
+		}
+
+		private long[] predecessors(long kmer) {
+			long[] prev = new long[4];
+			int n = 0;
+			for (int b = 0; b < 4; b++) {
+				long candidate = (kmer >>> 2) | ((long) b << 2*(k - 1));
+				if (table.find(canonical(candidate)) >= 0) {
+					prev[n++] = candidate;
+				}
+			}
+			return Arrays.copyOf(prev, n);
+		}
+
+		private int outDegree(long kmer) {
+			int n = 0;
+			for (int b = 0; b < 4; b++) {
+				if (table.find(canonical(((kmer << 2) | b) & mask)) >= 0) {
+					n++;
+				}
+			}
+			return n;
+		}
+
+		private int inDegree(long kmer) {
+			int n = 0;
+			for (int b = 0; b < 4; b++) {
+				if (table.find(canonical((kmer >>> 2) | ((long) b << 2*(k - 1)))) >= 0) {
+					n++;
+				}
+			}
+			return n;
+		}
+
+		private long canonical(long kmer) {
+			return Math.min(kmer, reverseComplement(kmer));
+		}
+
+		/**
+		 * Reverse complement of the packed k-mer: complement the codes (A=0 <-> T=3, C=1 <-> G=2), reverse the order of 2-bit codes
+		 */
+		private long reverseComplement(long kmer) {
+			long x = ~kmer;
+			x = ((x >>> 2) & 0x3333333333333333L) | ((x & 0x3333333333333333L) << 2);
+			x = ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((x & 0x0F0F0F0F0F0F0F0FL) << 4);
+			x = Long.reverseBytes(x);
+			return x >>> (64 - 2*k);
+		}
+
+		/**
+		 * Path of k-mers in the graph
+		 */
+		private class Unitig {
+			long[] kmers; // oriented k-mers
+			double coverage; // mean count of k-mers
+			boolean trusted; // has k-mers of long sequences
+
+			Unitig(long[] kmers) {
+				this.kmers = kmers;
+				long sum = 0;
+				for (long kmer : kmers) {
+					int slot = table.find(canonical(kmer));
+					sum += table.getCount(slot);
+					trusted |= table.isTrusted(slot);
+				}
+				this.coverage = (double) sum / kmers.length;
+			}
+
+			String getSequence() {
+				char[] seq = new char[kmers.length + k - 1];
+				for (int i = 0; i < k; i++) {
+					seq[i] = BASES[(int) (kmers[0] >>> 2*(k - 1 - i)) & 3];
+				}
+				for (int i = 1; i < kmers.length; i++) {
+					seq[k - 1 + i] = BASES[(int) kmers[i] & 3];
+				}
+				return new String(seq);
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------
+	// K-MER TABLE
+	// ---------------------------------------------------------------------------------------
+
+	/**
+	 * Open-addressing (linear probing) table of k-mer counts, kept in primitive arrays
+	 */
+	private static class KmerTable {
+		private static final long EMPTY = -1L; // k-mers use at most 62 bits
+		private static final byte REMOVED = 1;
+		private static final byte TRUSTED = 2;
+
+		private long[] keys;
+		private int[] counts;
+		private byte[] flags;
+		private int size;
+
+		KmerTable(int capacity) {
+			int c = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+			keys = new long[c];
+			counts = new int[c];
+			flags = new byte[c];
+			Arrays.fill(keys, EMPTY);
+		}
+
+		void add(long key, boolean trusted) {
+			if (2*(size + 1) > keys.length) {
+				resize();
+			}
+			int slot = slot(key);
+			if (keys[slot] == EMPTY) {
+				keys[slot] = key;
+				size++;
+			}
+			counts[slot]++;
+			if (trusted) {
+				flags[slot] |= TRUSTED;
+			}
+		}
+
+		/**
+		 * Find the k-mer
+		 * @return slot or -1 if the k-mer is absent or removed
+		 */
+		int find(long key) {
+			int slot = slot(key);
+			return (keys[slot] == EMPTY || (flags[slot] & REMOVED) != 0) ? -1 : slot;
+		}
+
+		void remove(int slot) {
+			flags[slot] |= REMOVED;
+		}
+
+		boolean isPresent(int slot) {
+			return keys[slot] != EMPTY && (flags[slot] & REMOVED) == 0;
+		}
+
+		boolean isTrusted(int slot) {
+			return (flags[slot] & TRUSTED) != 0;
+		}
+
+		long getKey(int slot) {
+			return keys[slot];
+		}
+
+		int getCount(int slot) {
+			return counts[slot];
+		}
+
+		int capacity() {
+			return keys.length;
+		}
+
+		int size() {
+			return size;
+		}
+
+		private int slot(long key) {
+			int m = keys.length - 1;
+			int slot = (int) mix(key) & m;
+			while (keys[slot] != EMPTY && keys[slot] != key) {
+				slot = (slot + 1) & m;
+			}
+			return slot;
+		}
+
+		private void resize() {
+			long[] oldKeys = keys;
+			int[] oldCounts = counts;
+			byte[] oldFlags = flags;
+			keys = new long[oldKeys.length << 1];
+			counts = new int[keys.length];
+			flags = new byte[keys.length];
+			Arrays.fill(keys, EMPTY);
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != EMPTY) {
+					int slot = slot(oldKeys[i]);
+					keys[slot] = oldKeys[i];
+					counts[slot] = oldCounts[i];
+					flags[slot] = oldFlags[i];
+				}
+			}
+		}
+
+		private static long mix(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return h ^ (h >>> 32);
+		}
+	}
+
+	/**
+	 * Growing array of longs
+	 */
+	private static class LongList {
+		private long[] values = new long[64];
+		private int size;
+
+		void add(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size << 1);
+			}
+			values[size++] = value;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,425 @@
+package com.yg.assembler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.yg.io_handlers.IOParameters;
+import com.yg.models.FASTASeq;
+import com.yg.models.NucleotideSeq;
+import com.yg.utilities.DNA;
+import com.yg.utilities.Minimizers;
+
+/**
+ * Built-in overlap-layout-consensus assembler for small local read sets, an alternative to running cd-hit and CAP3;
+ * Overlaps are found through shared minimizers of reads (in both orientations) and verified without gaps
+ * against the same cutoffs as CAP3 (OVERLAP_CAP3 bases, PERC_IDENTITY_CAP3 % identity);
+ * Reads contained in other reads are removed, the remaining reads are laid out by taking
+ * the longest overlaps first, and the consensus of each layout is called by majority of bases
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class OLCAssembler implements Assembler {
+	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME); // init logger
+
+	private static final int K = 11; // minimizer length
+	private static final int MAX_WINDOW = 10; // k-mers per minimizer window
+	private static final int MAX_OCCURRENCES = 300; // minimizers seen more often are repeats and ignored (as cap3 -t)
+	private static final int MAX_DIAGONALS = 3; // diagonals verified per pair of reads
+	private static final int MIN_READS_PER_CONTIG = 2; // single reads are not reported as contigs, as in CAP3
+	private static final char[] BASES = {'A', 'C', 'G', 'T', 'N'};
+	private static final byte OTHER = DNA.CODE_OTHER;
+
+	private int minOverlap;
+	private int percIdentity;
+	private int window;
+
+	private byte[][] seqs; // reads as codes, [2*i] forward and [2*i + 1] reverse complement of read i
+	private int[] container; // read containing the read, or -1
+	private int[] containedAt; // offset of the read in its container
+	private int[] containedStrand; // strand of the read relative to its container
+	private List<Overlap> overlaps;
+
+	/**
+	 * Overlap of node from with node to (nodes are oriented reads): to starts at shift in from and extends beyond its end
+	 */
+	private static class Overlap {
+		int from;
+		int to;
+		int shift;
+		int length;
+		int matches;
+
+		Overlap(int from, int to, int shift, int length, int matches) {
+			this.from = from;
+			this.to = to;
+			this.shift = shift;
+			this.length = length;
+			this.matches = matches;
+		}
+	}
+
+	/**
+	 * Constructor with the cutoffs of CAP3 assembly
+	 */
+	public OLCAssembler() {
+		this(IOParameters.OVERLAP_CAP3, IOParameters.PERC_IDENTITY_CAP3);
+	}
+
+	/**
+	 * Constructor
+	 * @param minOverlap - minimum length of an overlap
+	 * @param percIdentity - overlap percentage identity cutoff
+	 */
+	public OLCAssembler(int minOverlap, int percIdentity) {
+		this.minOverlap = minOverlap;
+		this.percIdentity = percIdentity;
+		// Any overlap of minOverlap bases contains a whole window of k-mers, thus shares its minimizer
+		this.window = Math.max(1, Math.min(MAX_WINDOW, minOverlap - K + 1));
+	}
+
+	@Override
+	public String getName() {
+		return "olc";
+	}
+
+	@Override
+	public List<FASTASeq> assemble(String chromosome, long position, List<FASTASeq> reads, int estimatedCoverage) {
+		return assemble(reads);
+	}
+
+	/**
+	 * Assemble reads into contigs
+	 * @param reads
+	 * @return contigs named Contig1, Contig2, ... in the order of their first reads
+	 */
+	public List<FASTASeq> assemble(List<FASTASeq> reads) {
+		int n = reads.size();
+		seqs = new byte[2*n][];
+		for (int i = 0; i < n; i++) {
+			seqs[2*i] = DNA.encode(reads.get(i).getNucleotideSeq());
+			seqs[2*i + 1] = DNA.reverseComplementCodes(seqs[2*i]);
+		}
+		container = new int[n];
+		containedAt = new int[n];
+		containedStrand = new int[n];
+		Arrays.fill(container, -1);
+		overlaps = new ArrayList<Overlap>();
+
+		findOverlaps();
+		List<FASTASeq> contigs = layout();
+
+		LOGGER.info("OLC assembly: " + n + " reads, " + overlaps.size() + " overlaps, " + contigs.size() + " contigs\n");
+		return contigs;
+	}
+
+	// ---------------------------------------------------------------------------------------
+	// OVERLAP
+	// ---------------------------------------------------------------------------------------
+
+	/**
+	 * Find overlaps and containments of all pairs of reads sharing minimizers
+	 */
+	private void findOverlaps() {
+		// Index minimizers of all nodes
+		Map<Long, List<int[]>> index = new HashMap<Long, List<int[]>>();
+		for (int node = 0; node < seqs.length; node++) {
+			for (long[] minimizer : Minimizers.getMinimizers(seqs[node], K, window)) {
+				List<int[]> hits = index.get(minimizer[0]);
+				if (hits == null) {
+					hits = new ArrayList<int[]>(2);
+					index.put(minimizer[0], hits);
+				}
+				hits.add(new int[] {node, (int) minimizer[1]});
+			}
+		}
+
+		int n = seqs.length / 2;
+		for (int read = 0; read < n; read++) {
+			// Count shared minimizers of the read and each node of later reads per diagonal
+			Map<Long, int[]> diagonals = new HashMap<Long, int[]>();
+			for (long[] minimizer : Minimizers.getMinimizers(seqs[2*read], K, window)) {
+				List<int[]> hits = index.get(minimizer[0]);
+				if (hits.size() > MAX_OCCURRENCES) {
+					continue;
+				}
+				for (int[] hit : hits) {
+					if (hit[0] / 2 <= read) {
+						continue;
+					}
+					int shift = (int) minimizer[1] - hit[1];
+					long key = ((long) hit[0] << 32) | (shift & 0xFFFFFFFFL);
+					int[] count = diagonals.get(key);
+					if (count == null) {
+						diagonals.put(key, new int[] {1});
+					} else {
+						count[0]++;
+					}
+				}
+			}
+
+			// Group diagonals by node, the best supported first
+			Map<Integer, List<long[]>> candidates = new HashMap<Integer, List<long[]>>();
+			for (Map.Entry<Long, int[]> diagonal : diagonals.entrySet()) {
+				int node = (int) (diagonal.getKey() >>> 32);
+				List<long[]> shifts = candidates.get(node);
+				if (shifts == null) {
+					shifts = new ArrayList<long[]>();
+					candidates.put(node, shifts);
+				}
+				shifts.add(new long[] {(int) diagonal.getKey().longValue(), diagonal.getValue()[0]});
+			}
+			List<Integer> nodes = new ArrayList<Integer>(candidates.keySet());
+			Collections.sort(nodes);
+			for (int node : nodes) {
+				List<long[]> shifts = candidates.get(node);
+				Collections.sort(shifts, new Comparator<long[]>() {
+					@Override
+					public int compare(long[] a, long[] b) {
+						return (a[1] != b[1]) ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]);
+					}
+				});
+				for (int i = 0; i < shifts.size() && i < MAX_DIAGONALS; i++) {
+					if (verify(read, node, (int) shifts.get(i)[0])) {
+						break;
+					}
+				}
+			}
+		}
+
+		// Overlaps of contained reads are not used in the layout
+		List<Overlap> dovetails = new ArrayList<Overlap>();
+		for (Overlap overlap : overlaps) {
+			if (container[overlap.from / 2] < 0 && container[overlap.to / 2] < 0) {
+				dovetails.add(overlap);
+			}
+		}
+		overlaps = dovetails;
+	}
+
+	/**
+	 * Verify the ungapped alignment of the forward read and the node on the diagonal
+	 * @param read
+	 * @param node
+	 * @param shift - position of the node start in the read
+	 * @return true if the alignment is an overlap or a containment
+	 */
+	private boolean verify(int read, int node, int shift) {
+		byte[] a = seqs[2*read];
+		byte[] b = seqs[node];
+		int start = Math.max(0, shift);
+		int end = Math.min(a.length, shift + b.length);
+		int length = end - start;
+		if (length < minOverlap) {
+			return false;
+		}
+		int matches = 0;
+		for (int i = start; i < end; i++) {
+			if (a[i] == b[i - shift] && a[i] != OTHER) {
+				matches++;
+			}
+		}
+		if (100L * matches < (long) percIdentity * length) {
+			return false;
+		}
+
+		int other = node / 2;
+		if (shift >= 0 && shift + b.length <= a.length) { // the node is contained in the read
+			contain(other, read, shift, node & 1);
+		} else if (shift <= 0 && shift + b.length >= a.length) { // the read is contained in the node
+			if ((node & 1) == 0) {
+				contain(read, other, -shift, 0);
+			} else {
+				contain(read, other, b.length + shift - a.length, 1);
+			}
+		} else if (shift > 0) {
+			overlaps.add(new Overlap(2*read, node, shift, length, matches));
+		} else {
+			overlaps.add(new Overlap(node, 2*read, -shift, length, matches));
+		}
+		return true;
+	}
+
+	/**
+	 * Record the read as contained in the container, the longest container is kept
+	 * @param read
+	 * @param by - container
+	 * @param offset - position of the read in the forward container
+	 * @param strand - strand of the read in the forward container
+	 */
+	private void contain(int read, int by, int offset, int strand) {
+		if (container[read] >= 0 && seqs[2*container[read]].length >= seqs[2*by].length) {
+			return;
+		}
+		container[read] = by;
+		containedAt[read] = offset;
+		containedStrand[read] = strand;
+	}
+
+	// ---------------------------------------------------------------------------------------
+	// LAYOUT AND CONSENSUS
+	// ---------------------------------------------------------------------------------------
+
+	/**
+	 * Chain reads by the longest overlaps first and call the consensus of each chain
+	 * @return
+	 */
+	private List<FASTASeq> layout() {
+		int n = seqs.length / 2;
+		Collections.sort(overlaps, new Comparator<Overlap>() {
+			@Override
+			public int compare(Overlap a, Overlap b) {
+				if (a.length != b.length) {
+					return Integer.compare(b.length, a.length);
+				}
+				if (a.matches != b.matches) {
+					return Integer.compare(b.matches, a.matches);
+				}
+				return (a.from != b.from) ? Integer.compare(a.from, b.from) : Integer.compare(a.to, b.to);
+			}
+		});
+
+		// Accepting an overlap of nodes u -> v also accepts its reverse complement v' -> u'
+		int[] next = new int[2*n];
+		int[] nextShift = new int[2*n];
+		int[] prev = new int[2*n];
+		Arrays.fill(next, -1);
+		Arrays.fill(prev, -1);
+		int[] component = new int[n];
+		for (int i = 0; i < n; i++) {
+			component[i] = i;
+		}
+		for (Overlap overlap : overlaps) {
+			int u = overlap.from;
+			int v = overlap.to;
+			if (next[u] >= 0 || prev[v] >= 0 || find(component, u / 2) == find(component, v / 2)) {
+				continue;
+			}
+			next[u] = v;
+			nextShift[u] = overlap.shift;
+			prev[v] = u;
+			next[v ^ 1] = u ^ 1;
+			nextShift[v ^ 1] = seqs[v].length + overlap.shift - seqs[u].length;
+			prev[u ^ 1] = v ^ 1;
+			component[find(component, u / 2)] = find(component, v / 2);
+		}
+
+		// Contained reads of each read
+		Map<Integer, List<Integer>> contained = new HashMap<Integer, List<Integer>>();
+		for (int i = 0; i < n; i++) {
+			if (container[i] >= 0) {
+				int top = i;
+				while (container[top] >= 0) {
+					top = container[top];
+				}
+				List<Integer> list = contained.get(top);
+				if (list == null) {
+					list = new ArrayList<Integer>();
+					contained.put(top, list);
+				}
+				list.add(i);
+			}
+		}
+
+		List<FASTASeq> contigs = new ArrayList<FASTASeq>();
+		boolean[] visited = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			if (visited[i] || container[i] >= 0) {
+				continue;
+			}
+			int first = 2*i;
+			while (prev[first] >= 0) {
+				first = prev[first];
+			}
+
+			// Place reads of the chain: {node, position}
+			List<int[]> placed = new ArrayList<int[]>();
+			int position = 0;
+			for (int node = first; node >= 0; node = next[node]) {
+				visited[node / 2] = true;
+				placed.add(new int[] {node, position});
+				List<Integer> list = contained.get(node / 2);
+				if (list != null) {
+					for (int read : list) {
+						placed.add(placeContained(read, node, position));
+					}
+				}
+				if (next[node] >= 0) {
+					position += nextShift[node];
+				}
+			}
+			if (placed.size() >= MIN_READS_PER_CONTIG) {
+				contigs.add(new FASTASeq("Contig" + (contigs.size() + 1), consensus(placed)));
+			}
+		}
+		return contigs;
+	}
+
+	private static int find(int[] component, int i) {
+		while (component[i] != i) {
+			component[i] = component[component[i]];
+			i = component[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Place the contained read relative to the placed node of its top container
+	 * @return {node, position}
+	 */
+	private int[] placeContained(int read, int topNode, int topPosition) {
+		// Position and strand of the read in the forward top container
+		int offset = 0;
+		int strand = 0;
+		for (int r = read; container[r] >= 0; r = container[r]) {
+			if (containedStrand[r] == 0) {
+				offset = containedAt[r] + offset;
+			} else {
+				offset = containedAt[r] + seqs[2*r].length - offset - seqs[2*read].length;
+			}
+			strand ^= containedStrand[r];
+		}
+		if ((topNode & 1) == 0) {
+			return new int[] {2*read + strand, topPosition + offset};
+		}
+		return new int[] {2*read + (strand ^ 1), topPosition + seqs[topNode].length - offset - seqs[2*read].length};
+	}
+
+	/**
+	 * Call the consensus of placed reads by majority of bases in each column
+	 * @param placed - {node, position}
+	 * @return
+	 */
+	private NucleotideSeq consensus(List<int[]> placed) {
+		int start = Integer.MAX_VALUE;
+		int end = Integer.MIN_VALUE;
+		for (int[] read : placed) {
+			start = Math.min(start, read[1]);
+			end = Math.max(end, read[1] + seqs[read[0]].length);
+		}
+		int[][] counts = new int[end - start][BASES.length];
+		for (int[] read : placed) {
+			byte[] seq = seqs[read[0]];
+			for (int i = 0; i < seq.length; i++) {
+				counts[read[1] - start + i][seq[i]]++;
+			}
+		}
+		NucleotideSeq.Builder consensus = new NucleotideSeq.Builder(end - start);
+		for (int[] column : counts) {
+			int best = OTHER; // N if no read has A, C, G or T in the column
+			for (int b = 0; b < OTHER; b++) {
+				if (column[b] > 0 && (best == OTHER || column[b] > column[best])) {
+					best = b;
+				}
+			}
+			consensus.append(BASES[best]);
+		}
+		return consensus.build();
+	}
+}
@@ -0,0 +1,474 @@
+package com.yg.assembler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.yg.models.Bl2seqOutputData;
+import com.yg.models.FASTASeq;
+import com.yg.utilities.DNA;
+import com.yg.utilities.PatternSplitter;
+
+/**
+ * Pairwise local alignment of two sequences in memory, in place of bl2seq:
+ * exact word hits on both strands are extended without gaps, hits scoring enough are extended with affine gaps (X-drop),
+ * alignments are kept by their Karlin-Altschul e-value and reported as bl2seq tabular output is parsed (Bl2seqOutTabParser):
+ * 1-based coordinates, the query on '+', the subject start greater than its end on '-'
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class PairwiseAlignment {
+
+	// Options of bl2seq for contigs: -p blastn -W 4 -e 0.1 -q -2 -F F
+	public static final int WORD_SIZE = 4;
+	public static final double MAX_EVALUE = 0.1;
+	public static final double MIN_IDENTITY = 90; // % of identities checked by Bl2seqOutTabParser
+
+	// blastn scores (reward 1, penalty -2, gap existence 5, gap extension 2) and their Karlin-Altschul parameters
+	private static final int REWARD = 1;
+	private static final int PENALTY = -2;
+	private static final int GAP_OPEN = 5;
+	private static final int GAP_EXTEND = 2;
+	private static final double LAMBDA = 0.625;
+	private static final double K = 0.41;
+
+	private static final int XDROP_UNGAPPED = 11; // about 20 bits, as blastn
+	private static final int XDROP_GAPPED = 33; // about 30 bits, as blastn
+	private static final int GAP_TRIGGER = 13; // ungapped score of a hit to extend it with gaps
+	private static final int MAX_TABLE_BITS = 22;
+	private static final int NEG = Integer.MIN_VALUE / 4;
+
+	private int wordSize;
+	private double maxEValue;
+
+	/**
+	 * Constructor with options of bl2seq for contigs
+	 */
+	public PairwiseAlignment() {
+		this(WORD_SIZE, MAX_EVALUE);
+	}
+
+	/**
+	 * Constructor
+	 * @param wordSize - length of exact word hits
+	 * @param maxEValue - e-value cutoff of alignments
+	 */
+	public PairwiseAlignment(int wordSize, double maxEValue) {
+		this.wordSize = wordSize;
+		this.maxEValue = maxEValue;
+	}
+
+	/**
+	 * Align two sequences
+	 * @param query
+	 * @param subject
+	 * @param checkIdentities - keep alignments with at least MIN_IDENTITY % of identities only (as Bl2seqOutTabParser)
+	 * @return alignments, the best first; empty if no hits found
+	 */
+	public List<Bl2seqOutputData> align(FASTASeq query, FASTASeq subject, boolean checkIdentities) {
+		byte[] q = DNA.encode(query.getNucleotideSeq());
+		byte[] s = DNA.encode(subject.getNucleotideSeq());
+
+		List<Hsp> hsps = new ArrayList<Hsp>();
+		if (q.length >= wordSize && s.length >= wordSize) {
+			findHsps(q, s, '+', hsps);
+			findHsps(q, DNA.reverseComplementCodes(s), '-', hsps);
+		}
+		Collections.sort(hsps, new Comparator<Hsp>() {
+			@Override
+			public int compare(Hsp a, Hsp b) {
+				return (a.score != b.score) ? Integer.compare(b.score, a.score) : Integer.compare(a.queryStart, b.queryStart);
+			}
+		});
+
+		String queryId = getId(query);
+		String subjectId = getId(subject);
+		List<Bl2seqOutputData> alignments = new ArrayList<Bl2seqOutputData>();
+		for (Hsp hsp : hsps) {
+			Bl2seqOutputData alignment = toOutputData(hsp, queryId, subjectId, q.length, s.length);
+			if (!checkIdentities || alignment.getIdentities() >= MIN_IDENTITY) {
+				alignments.add(alignment);
+			}
+		}
+		return alignments;
+	}
+
+	/**
+	 * Get e-value of the alignment score
+	 * @param score - raw score
+	 * @param queryLength
+	 * @param subjectLength
+	 * @return
+	 */
+	public static double getEValue(int score, int queryLength, int subjectLength) {
+		return K * queryLength * subjectLength * Math.exp(-LAMBDA * score);
+	}
+
+	/**
+	 * Alignment of the query and one strand of the subject, 0-based coordinates with exclusive ends
+	 */
+	private static class Hsp {
+		char strand;
+		int score;
+		int queryStart, queryEnd;
+		int subjectStart, subjectEnd; // on the strand
+		int matches;
+		int columns;
+
+		boolean contains(int queryPos, int subjectPos) {
+			return queryPos >= queryStart && queryPos < queryEnd && subjectPos >= subjectStart && subjectPos < subjectEnd;
+		}
+	}
+
+	/**
+	 * Result of the gapped extension in one direction
+	 */
+	private static class Extension {
+		int score;
+		int queryLength;
+		int subjectLength;
+		int matches;
+		int columns;
+	}
+
+	/**
+	 * Find alignments of the query and the subject strand
+	 * @param q - query codes
+	 * @param s - codes of the subject strand
+	 * @param strand
+	 * @param hsps - found alignments are added to the list
+	 */
+	private void findHsps(byte[] q, byte[] s, char strand, List<Hsp> hsps) {
+		// Index words of the subject: bucket heads and chains of positions
+		int tableBits = Math.min(2*wordSize, MAX_TABLE_BITS);
+		int mask = (1 << tableBits) - 1;
+		int[] heads = new int[1 << tableBits];
+		int[] next = new int[s.length];
+		long[] words = new long[s.length];
+		Arrays.fill(heads, -1);
+		for (int j = s.length - wordSize; j >= 0; j--) {
+			long word = getWord(s, j);
+			words[j] = word;
+			if (word >= 0) {
+				int bucket = bucket(word, mask);
+				next[j] = heads[bucket];
+				heads[bucket] = j;
+			}
+		}
+
+		List<Hsp> found = new ArrayList<Hsp>();
+		int[] extendedTo = new int[q.length + s.length]; // subject position up to which each diagonal is extended
+		for (int i = 0; i + wordSize <= q.length; i++) {
+			long word = getWord(q, i);
+			if (word < 0) {
+				continue;
+			}
+			for (int j = heads[bucket(word, mask)]; j >= 0; j = next[j]) {
+				int diagonal = j - i + q.length;
+				if (words[j] != word || j < extendedTo[diagonal]) {
+					continue;
+				}
+
+				// Ungapped extension of the hit
+				int score = wordSize * REWARD;
+				int best = score;
+				int bestRight = 0;
+				for (int k = 0; i + wordSize + k < q.length && j + wordSize + k < s.length; k++) {
+					score += score(q[i + wordSize + k], s[j + wordSize + k]);
+					if (score > best) {
+						best = score;
+						bestRight = k + 1;
+					} else if (best - score >= XDROP_UNGAPPED) {
+						break;
+					}
+				}
+				score = best;
+				int bestLeft = 0;
+				for (int k = 1; i - k >= 0 && j - k >= 0; k++) {
+					score += score(q[i - k], s[j - k]);
+					if (score > best) {
+						best = score;
+						bestLeft = k;
+					} else if (best - score >= XDROP_UNGAPPED) {
+						break;
+					}
+				}
+				extendedTo[diagonal] = j + wordSize + bestRight;
+				if (best < GAP_TRIGGER) {
+					continue;
+				}
+
+				// Gapped extension from the middle of the ungapped alignment
+				int center = ((i - bestLeft) + (i + wordSize + bestRight)) / 2;
+				int queryCenter = center;
+				int subjectCenter = center + (j - i);
+				boolean known = false;
+				for (Hsp hsp : found) {
+					if (hsp.contains(queryCenter, subjectCenter)) {
+						known = true;
+						break;
+					}
+				}
+				if (known) {
+					continue;
+				}
+				Extension forward = extend(q, queryCenter, s, subjectCenter, 1);
+				Extension backward = extend(q, queryCenter, s, subjectCenter, -1);
+
+				Hsp hsp = new Hsp();
+				hsp.strand = strand;
+				hsp.score = forward.score + backward.score;
+				hsp.queryStart = queryCenter - backward.queryLength;
+				hsp.queryEnd = queryCenter + forward.queryLength;
+				hsp.subjectStart = subjectCenter - backward.subjectLength;
+				hsp.subjectEnd = subjectCenter + forward.subjectLength;
+				hsp.matches = forward.matches + backward.matches;
+				hsp.columns = forward.columns + backward.columns;
+				if (hsp.columns == 0 || getEValue(hsp.score, q.length, s.length) > maxEValue) {
+					continue;
+				}
+				found.add(hsp);
+			}
+		}
+		hsps.addAll(found);
+	}
+
+	/**
+	 * Gapped X-drop extension from the position in one direction, with affine gap costs;
+	 * Rows are query bases, only cells scoring within XDROP_GAPPED of the best score are kept
+	 * @param q - query codes
+	 * @param queryPos - first query position of the extension (forward) or its exclusive end (backward)
+	 * @param s - subject codes
+	 * @param subjectPos - first subject position of the extension (forward) or its exclusive end (backward)
+	 * @param direction - 1 forward, -1 backward
+	 * @return
+	 */
+	private Extension extend(byte[] q, int queryPos, byte[] s, int subjectPos, int direction) {
+		int queryLength = (direction > 0) ? q.length - queryPos : queryPos;
+		int subjectLength = (direction > 0) ? s.length - subjectPos : subjectPos;
+
+		// Scores of the previous and the current row by subject columns
+		int[] h = new int[subjectLength + 1];
+		int[] f = new int[subjectLength + 1]; // gap in the subject (vertical)
+		int[] prevH = new int[subjectLength + 1];
+		int[] prevF = new int[subjectLength + 1];
+
+		// Traceback of kept cells: bits 0-1 - source of the cell (0 diagonal, 1 gap in the query, 2 gap in the subject),
+		// bit 2 - gap in the query opened, bit 3 - gap in the subject opened
+		List<byte[]> trace = new ArrayList<byte[]>();
+		List<Integer> rowStarts = new ArrayList<Integer>();
+		byte[] sources = new byte[subjectLength + 1]; // traceback of the current row by subject columns
+
+		// First row: gaps in the query only
+		int best = 0, bestRow = 0, bestCol = 0;
+		int lo = 0, hi = 0;
+		prevH[0] = 0;
+		prevF[0] = NEG;
+		for (int col = 1; col <= subjectLength; col++) {
+			int score = -(GAP_OPEN + col*GAP_EXTEND);
+			if (score < best - XDROP_GAPPED) {
+				break;
+			}
+			prevH[col] = score;
+			prevF[col] = NEG;
+			hi = col;
+		}
+		byte[] row = new byte[hi - lo + 1];
+		for (int col = 1; col <= hi; col++) {
+			row[col] = (byte) (1 | (col == 1 ? 4 : 0));
+		}
+		trace.add(row);
+		rowStarts.add(lo);
+
+		for (int r = 1; r <= queryLength; r++) {
+			byte base = (direction > 0) ? q[queryPos + r - 1] : q[queryPos - r];
+			int newLo = -1, newHi = -1;
+			int e = NEG; // gap in the query (horizontal) of the previous cell in the row
+			int left = NEG; // score of the previous cell in the row
+			for (int col = lo; col <= subjectLength; col++) {
+				boolean inPrev = col <= hi;
+				if (!inPrev && e < best - XDROP_GAPPED) {
+					break;
+				}
+				byte source = 0;
+				int diagonal = NEG;
+				if (col > lo && col - 1 <= hi && prevH[col - 1] > NEG) {
+					byte other = (direction > 0) ? s[subjectPos + col - 1] : s[subjectPos - col];
+					diagonal = prevH[col - 1] + score(base, other);
+				}
+				// Gap in the subject from the cell above
+				int vertical = NEG;
+				if (inPrev) {
+					int open = prevH[col] - GAP_OPEN - GAP_EXTEND;
+					int extendGap = prevF[col] - GAP_EXTEND;
+					if (open >= extendGap) {
+						vertical = open;
+						source |= 8;
+					} else {
+						vertical = extendGap;
+					}
+				}
+				// Gap in the query from the cell on the left
+				int horizontal = NEG;
+				if (col > lo) {
+					int open = left - GAP_OPEN - GAP_EXTEND;
+					int extendGap = e - GAP_EXTEND;
+					if (open >= extendGap) {
+						horizontal = open;
+						source |= 4;
+					} else {
+						horizontal = extendGap;
+					}
+				}
+
+				int score = diagonal;
+				if (horizontal > score) {
+					score = horizontal;
+					source = (byte) ((source & ~3) | 1);
+				}
+				if (vertical > score) {
+					score = vertical;
+					source = (byte) ((source & ~3) | 2);
+				}
+				if (score < best - XDROP_GAPPED) {
+					score = NEG;
+					horizontal = NEG;
+					vertical = NEG;
+				} else {
+					if (newLo < 0) {
+						newLo = col;
+					}
+					newHi = col;
+					if (score > best) {
+						best = score;
+						bestRow = r;
+						bestCol = col;
+					}
+				}
+				h[col] = score;
+				f[col] = vertical;
+				e = horizontal;
+				left = score;
+				sources[col] = source;
+			}
+			if (newLo < 0) {
+				break;
+			}
+
+			// Keep the traceback of alive cells only
+			byte[] kept = new byte[newHi - newLo + 1];
+			System.arraycopy(sources, newLo, kept, 0, kept.length);
+			trace.add(kept);
+			rowStarts.add(newLo);
+
+			int[] tmp = prevH;
+			prevH = h;
+			h = tmp;
+			tmp = prevF;
+			prevF = f;
+			f = tmp;
+			lo = newLo;
+			hi = newHi;
+		}
+
+		// Traceback from the best cell
+		Extension extension = new Extension();
+		extension.score = best;
+		extension.queryLength = bestRow;
+		extension.subjectLength = bestCol;
+		int r = bestRow, col = bestCol;
+		int state = 0; // 0 - cell score, 1 - gap in the query, 2 - gap in the subject
+		while (r > 0 || col > 0) {
+			byte source = trace.get(r)[col - rowStarts.get(r)];
+			if (state == 0) {
+				state = source & 3;
+				if (state != 0) {
+					continue;
+				}
+				byte base = (direction > 0) ? q[queryPos + r - 1] : q[queryPos - r];
+				byte other = (direction > 0) ? s[subjectPos + col - 1] : s[subjectPos - col];
+				if (base == other && base != DNA.CODE_OTHER) {
+					extension.matches++;
+				}
+				r--;
+				col--;
+			} else if (state == 1) {
+				if ((source & 4) != 0) {
+					state = 0;
+				}
+				col--;
+			} else {
+				if ((source & 8) != 0) {
+					state = 0;
+				}
+				r--;
+			}
+			extension.columns++;
+		}
+		return extension;
+	}
+
+	/**
+	 * Convert the alignment into bl2seq output data
+	 */
+	private static Bl2seqOutputData toOutputData(Hsp hsp, String queryId, String subjectId, int queryLength, int subjectLength) {
+		Bl2seqOutputData data = new Bl2seqOutputData();
+		data.setHitsFound(true);
+		data.setQueryId(queryId);
+		data.setSubjectId(subjectId);
+		data.setQueryLength(queryLength);
+		data.setSubjectLength(subjectLength);
+		data.setIdentities(Math.round(10000.0 * hsp.matches / hsp.columns) / 100.0); // as bl2seq prints it
+		data.setAlignmentLength(hsp.columns);
+
+		data.setQueryStrand('+');
+		data.setQueryStart(hsp.queryStart + 1);
+		data.setQueryEnd(hsp.queryEnd);
+		data.setSubjectStrand(hsp.strand);
+		if (hsp.strand == '+') {
+			data.setSubjectStart(hsp.subjectStart + 1);
+			data.setSubjectEnd(hsp.subjectEnd);
+		} else {
+			data.setSubjectStart(subjectLength - hsp.subjectStart);
+			data.setSubjectEnd(subjectLength - hsp.subjectEnd + 1);
+		}
+		return data;
+	}
+
+	/**
+	 * Get the sequence id as bl2seq reports it - the first word of the description
+	 */
+	private static String getId(FASTASeq seq) {
+		String description = seq.getDescription().trim();
+		if (description.startsWith(">")) {
+			description = description.substring(1);
+		}
+		return PatternSplitter.PTRN_SPACES_SPLITTER.split(description)[0];
+	}
+
+	/**
+	 * Get the word at the position as 2 bits per base
+	 * @return -1 if the word has other characters than A, C, G, T
+	 */
+	private long getWord(byte[] codes, int pos) {
+		long word = 0;
+		for (int i = pos; i < pos + wordSize; i++) {
+			if (codes[i] == DNA.CODE_OTHER) {
+				return -1;
+			}
+			word = (word << 2) | codes[i];
+		}
+		return word;
+	}
+
+	private static int bucket(long word, int mask) {
+		return (int) ((word ^ (word >>> 29)) * 0x9E3779B1L >>> 7) & mask;
+	}
+
+	private static int score(byte a, byte b) {
+		return (a == b && a != DNA.CODE_OTHER) ? REWARD : PENALTY;
+	}
+}
@@ -0,0 +1,199 @@
+package com.yg.assembler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.yg.io_handlers.IOParameters;
+import com.yg.models.FASTASeq;
+import com.yg.utilities.DNA;
+import com.yg.utilities.Minimizers;
+
+/**
+ * Removes redundant reads in memory, in place of cd-hit-est: a read is redundant if it aligns over its full length
+ * within a longer (or equal) representative read, on either strand, with identity of at least PERC_IDENTITY_CDHIT
+ * (identical bases over the length of the shorter read, as cd-hit counts it);
+ * Reads are checked from the longest, candidate representatives are found through shared minimizers
+ * and checked by a banded alignment along the shared diagonal
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class ReadDeduplicator {
+
+	private static final int K = 15; // minimizer length
+	private static final int WINDOW = 5; // k-mers per minimizer window
+	private static final int MAX_CANDIDATES = 8; // diagonals verified per read
+	private static final int MIN_BAND = 4; // band of the alignment around the diagonal, at least
+	private static final byte OTHER = DNA.CODE_OTHER;
+
+	private double identity;
+
+	private List<FASTASeq> representatives = new ArrayList<FASTASeq>();
+	private List<byte[][]> codes = new ArrayList<byte[][]>(); // forward and reverse complement of representatives
+	private Map<Long, List<int[]>> index = new HashMap<Long, List<int[]>>(); // minimizer -> {representative, strand, position}
+
+	/**
+	 * Constructor
+	 * @param identity - sequence identity threshold, e.g. 0.98
+	 */
+	private ReadDeduplicator(double identity) {
+		this.identity = identity;
+	}
+
+	/**
+	 * Remove redundant reads of the list with the identity of the cd-hit step
+	 * @param reads
+	 * @return representatives, the longest first (as cd-hit sorts them)
+	 */
+	public static List<FASTASeq> removeRedundantReads(List<FASTASeq> reads) {
+		return removeRedundantReads(reads, IOParameters.PERC_IDENTITY_CDHIT);
+	}
+
+	/**
+	 * Remove redundant reads of the list
+	 * @param reads
+	 * @param identity - sequence identity threshold, e.g. 0.98
+	 * @return representatives, the longest first (as cd-hit sorts them)
+	 */
+	public static List<FASTASeq> removeRedundantReads(List<FASTASeq> reads, double identity) {
+		List<FASTASeq> sorted = new ArrayList<FASTASeq>(reads);
+		Collections.sort(sorted, new Comparator<FASTASeq>() {
+			@Override
+			public int compare(FASTASeq a, FASTASeq b) {
+				return Integer.compare(b.getNucleotideSeq().length(), a.getNucleotideSeq().length());
+			}
+		});
+		ReadDeduplicator deduplicator = new ReadDeduplicator(identity);
+		for (FASTASeq read : sorted) {
+			deduplicator.add(read);
+		}
+		return deduplicator.representatives;
+	}
+
+	/**
+	 * Add the read, it is not longer than any representative
+	 * @param read
+	 * @return true if the read is a representative, false if it is redundant
+	 */
+	private boolean add(FASTASeq read) {
+		byte[] forward = DNA.encode(read.getNucleotideSeq());
+		int id = representatives.size();
+		List<long[]> minimizers = Minimizers.getMinimizers(forward, K, WINDOW);
+
+		// Count shared minimizers with representatives per diagonal
+		Map<Long, int[]> diagonals = new HashMap<Long, int[]>();
+		for (long[] minimizer : minimizers) {
+			List<int[]> hits = index.get(minimizer[0]);
+			if (hits == null) {
+				continue;
+			}
+			for (int[] hit : hits) {
+				int shift = hit[2] - (int) minimizer[1]; // position of the read start in the representative
+				long key = ((long) (2*hit[0] + hit[1]) << 32) | (shift & 0xFFFFFFFFL);
+				int[] count = diagonals.get(key);
+				if (count == null) {
+					diagonals.put(key, new int[] {1});
+				} else {
+					count[0]++;
+				}
+			}
+		}
+		List<Map.Entry<Long, int[]>> candidates = new ArrayList<Map.Entry<Long, int[]>>(diagonals.entrySet());
+		Collections.sort(candidates, new Comparator<Map.Entry<Long, int[]>>() {
+			@Override
+			public int compare(Map.Entry<Long, int[]> a, Map.Entry<Long, int[]> b) {
+				return (a.getValue()[0] != b.getValue()[0]) ? Integer.compare(b.getValue()[0], a.getValue()[0]) : Long.compare(a.getKey(), b.getKey());
+			}
+		});
+
+		// The read is redundant if a representative covers it
+		for (int i = 0; i < candidates.size() && i < MAX_CANDIDATES; i++) {
+			long key = candidates.get(i).getKey();
+			int other = (int) (key >>> 33);
+			int strand = (int) (key >>> 32) & 1;
+			int shift = (int) key;
+			if (isCovered(forward, codes.get(other)[strand], shift)) {
+				return false;
+			}
+		}
+
+		representatives.add(read);
+		codes.add(new byte[][] {forward, DNA.reverseComplementCodes(forward)});
+		for (int strand = 0; strand < 2; strand++) {
+			List<long[]> strandMinimizers = (strand == 0) ? minimizers : Minimizers.getMinimizers(codes.get(id)[1], K, WINDOW);
+			for (long[] minimizer : strandMinimizers) {
+				List<int[]> hits = index.get(minimizer[0]);
+				if (hits == null) {
+					hits = new ArrayList<int[]>(2);
+					index.put(minimizer[0], hits);
+				}
+				hits.add(new int[] {id, strand, (int) minimizer[1]});
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check if the shorter sequence aligns over its full length within the longer one with enough identity;
+	 * Banded alignment around the diagonal, end gaps in the longer sequence are free
+	 * @param shorter
+	 * @param longer
+	 * @param shift - position of the shorter sequence start in the longer one
+	 * @return
+	 */
+	private boolean isCovered(byte[] shorter, byte[] longer, int shift) {
+		int m = shorter.length;
+		int maxDiffs = (int) Math.floor(m * (1 - identity) + 1e-9);
+		int band = Math.max(MIN_BAND, maxDiffs);
+		int width = 2*band + 1;
+
+		// row[t] - differences for shorter[0..i) ending at longer position i + shift + t - band
+		int[] row = new int[width];
+		int[] next = new int[width];
+		int infinity = m + 1;
+		for (int t = 0; t < width; t++) {
+			int j = shift + t - band;
+			row[t] = (j >= 0 && j <= longer.length) ? 0 : infinity;
+		}
+		for (int i = 1; i <= m; i++) {
+			int best = infinity;
+			for (int t = 0; t < width; t++) {
+				int j = i + shift + t - band;
+				if (j < 0 || j > longer.length) {
+					next[t] = infinity;
+					continue;
+				}
+				int value = infinity;
+				if (j > 0) {
+					byte a = shorter[i - 1];
+					byte b = longer[j - 1];
+					value = row[t] + ((a == b && a != OTHER) ? 0 : 1); // diagonal
+				}
+				if (t + 1 < width) {
+					value = Math.min(value, row[t + 1] + 1); // gap in the longer sequence
+				}
+				if (t > 0) {
+					value = Math.min(value, next[t - 1] + 1); // gap in the shorter sequence
+				}
+				next[t] = Math.min(value, infinity);
+				best = Math.min(best, next[t]);
+			}
+			if (best > maxDiffs) {
+				return false;
+			}
+			int[] tmp = row;
+			row = next;
+			next = tmp;
+		}
+		for (int t = 0; t < width; t++) {
+			if (row[t] <= maxDiffs) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
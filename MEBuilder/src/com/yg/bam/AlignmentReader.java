@@ -0,0 +1,101 @@
+package com.yg.bam;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.yg.exceptions.InputParametersException;
+
+/**
+ * Access to reads of indexed BAM files by region
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public interface AlignmentReader {
+
+	// SAM flags
+	public static final int FLAG_PAIRED = 1; // read paired
+	public static final int FLAG_PROPER_PAIR = 2; // read mapped in proper pair
+	public static final int FLAG_UNMAPPED = 4; // read unmapped
+	public static final int FLAG_MATE_UNMAPPED = 8; // mate unmapped
+	public static final int FLAG_REVERSE = 16; // read reverse strand
+	public static final int FLAG_MATE_REVERSE = 32; // mate reverse strand
+	public static final int FLAG_FIRST_IN_PAIR = 64; // first in pair
+	public static final int FLAG_SECOND_IN_PAIR = 128; // second in pair
+	public static final int FLAG_SECONDARY = 256; // not primary alignment
+	public static final int FLAG_DUPLICATE = 1024; // PCR or optical duplicate
+
+	/**
+	 * Collect reads overlapping the region, the same as 'samtools view -f required -F excluded bam chr:start-end'
+	 * @param bamFile - path to .bam file
+	 * @param chromosome
+	 * @param start - 1-based start
+	 * @param end - 1-based inclusive end
+	 * @param requiredFlags - all these flags should be set
+	 * @param excludedFlags - none of these flags should be set
+	 * @return list of SAM lines
+	 * @throws IOException
+	 * @throws InputParametersException
+	 * @throws InterruptedException
+	 */
+	public List<String> query(String bamFile, String chromosome, long start, long end, int requiredFlags, int excludedFlags) throws IOException, InputParametersException, InterruptedException;
+
+	/**
+	 * Collect reads overlapping any of the regions with a single query, the same as 'samtools view -f required -F excluded bam region1 region2 ...';
+	 * A read that overlaps several regions may be reported several times
+	 * @param bamFile - path to .bam file
+	 * @param regions - sorted non-overlapping regions
+	 * @param requiredFlags - all these flags should be set
+	 * @param excludedFlags - none of these flags should be set
+	 * @return list of SAM lines
+	 * @throws IOException
+	 * @throws InputParametersException
+	 * @throws InterruptedException
+	 */
+	public List<String> query(String bamFile, List<GenomicRegion> regions, int requiredFlags, int excludedFlags) throws IOException, InputParametersException, InterruptedException;
+
+	/**
+	 * Stream reads overlapping the region to the handler as they are read, without keeping them in memory
+	 * @param bamFile - path to .bam file
+	 * @param chromosome
+	 * @param start - 1-based start
+	 * @param end - 1-based inclusive end
+	 * @param requiredFlags - all these flags should be set
+	 * @param excludedFlags - none of these flags should be set
+	 * @param handler - receives SAM lines of the reads
+	 * @throws IOException
+	 * @throws InputParametersException
+	 * @throws InterruptedException
+	 */
+	public void query(String bamFile, String chromosome, long start, long end, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException, InterruptedException;
+
+	/**
+	 * Stream reads overlapping any of the regions to the handler as they are read, without keeping them in memory
+	 * @param bamFile - path to .bam file
+	 * @param regions - sorted non-overlapping regions
+	 * @param requiredFlags - all these flags should be set
+	 * @param excludedFlags - none of these flags should be set
+	 * @param handler - receives SAM lines of the reads
+	 * @throws IOException
+	 * @throws InputParametersException
+	 * @throws InterruptedException
+	 */
+	public void query(String bamFile, List<GenomicRegion> regions, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException, InterruptedException;
+
+	/**
+	 * Stream all reads of the file in the order they are stored, the same as 'samtools view -f required -F excluded bam'
+	 * @param bamFile - path to .bam file
+	 * @param requiredFlags - all these flags should be set
+	 * @param excludedFlags - none of these flags should be set
+	 * @param handler - receives SAM lines of the reads
+	 * @throws IOException
+	 * @throws InputParametersException
+	 * @throws InterruptedException
+	 */
+	public void scan(String bamFile, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException, InterruptedException;
+
+	/**
+	 * Release all opened files
+	 */
+	public void close();
+}
@@ -0,0 +1,153 @@
+package com.yg.bam;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.yg.exceptions.InputParametersException;
+import com.yg.io_handlers.IOParameters;
+
+/**
+ * Access to reads of BAM files without starting any subprocess;
+ * BAM files and their indexes are kept open and reused for queries, up to maxOpenFiles files:
+ * the least recently used file is closed when another one is opened (after its running queries);
+ * Different BAM files can be queried concurrently, queries to the same file are serialized
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BAMAlignmentReader implements AlignmentReader {
+
+	private static final int MIN_OPEN_FILES = 8;
+
+	private final int maxOpenFiles;
+	private Map<String, PooledReader> readers; // opened BAM files, the least recently used first
+
+	/**
+	 * Constructor - keep open as many BAM files as are read concurrently (BAM_THREADS), at least MIN_OPEN_FILES
+	 */
+	public BAMAlignmentReader() {
+		this(Math.max(MIN_OPEN_FILES, 2*IOParameters.BAM_THREADS));
+	}
+
+	/**
+	 * Constructor
+	 * @param maxOpenFiles - max number of BAM files kept open
+	 */
+	public BAMAlignmentReader(int maxOpenFiles) {
+		this.maxOpenFiles = Math.max(1, maxOpenFiles);
+		this.readers = new LinkedHashMap<String, PooledReader>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PooledReader> eldest) {
+				if (size() <= BAMAlignmentReader.this.maxOpenFiles) {
+					return false;
+				}
+				// Close the reader now or after its running queries
+				PooledReader pooled = eldest.getValue();
+				pooled.evicted = true;
+				if (pooled.users == 0) {
+					pooled.reader.close();
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Opened BAM file with the number of queries using it
+	 */
+	private static class PooledReader {
+		BAMFileReader reader;
+		int users = 0;
+		boolean evicted = false;
+
+		PooledReader(BAMFileReader reader) {
+			this.reader = reader;
+		}
+	}
+
+	@Override
+	public List<String> query(String bamFile, String chromosome, long start, long end, int requiredFlags, int excludedFlags) throws IOException, InputParametersException {
+		SamLinesCollector collector = new SamLinesCollector();
+		query(bamFile, chromosome, start, end, requiredFlags, excludedFlags, collector);
+		return collector.getSamLines();
+	}
+
+	@Override
+	public List<String> query(String bamFile, List<GenomicRegion> regions, int requiredFlags, int excludedFlags) throws IOException, InputParametersException {
+		SamLinesCollector collector = new SamLinesCollector();
+		query(bamFile, regions, requiredFlags, excludedFlags, collector);
+		return collector.getSamLines();
+	}
+
+	@Override
+	public void query(String bamFile, String chromosome, long start, long end, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException {
+		PooledReader pooled = acquire(bamFile);
+		try {
+			pooled.reader.query(chromosome, start, end, requiredFlags, excludedFlags, handler);
+		} finally {
+			release(pooled);
+		}
+	}
+
+	@Override
+	public void query(String bamFile, List<GenomicRegion> regions, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException {
+		PooledReader pooled = acquire(bamFile);
+		try {
+			for (GenomicRegion region : regions) {
+				pooled.reader.query(region.getChromosome(), region.getStart(), region.getEnd(), requiredFlags, excludedFlags, handler);
+			}
+		} finally {
+			release(pooled);
+		}
+	}
+
+	@Override
+	public void scan(String bamFile, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException {
+		PooledReader pooled = acquire(bamFile);
+		try {
+			pooled.reader.scan(requiredFlags, excludedFlags, handler);
+		} finally {
+			release(pooled);
+		}
+	}
+
+	/**
+	 * Get an opened reader for the BAM file and mark it as used by a query
+	 * @param bamFile
+	 * @return
+	 * @throws IOException
+	 * @throws InputParametersException
+	 */
+	private synchronized PooledReader acquire(String bamFile) throws IOException, InputParametersException {
+		PooledReader pooled = readers.get(bamFile);
+		if (pooled == null) {
+			pooled = new PooledReader(new BAMFileReader(bamFile));
+			readers.put(bamFile, pooled);
+		}
+		pooled.users++;
+		return pooled;
+	}
+
+	/**
+	 * Mark the reader as not used by the query, close it if it was evicted meanwhile
+	 * @param pooled
+	 */
+	private synchronized void release(PooledReader pooled) {
+		pooled.users--;
+		if (pooled.evicted && pooled.users == 0) {
+			pooled.reader.close();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		for (PooledReader pooled : readers.values()) {
+			pooled.reader.close();
+		}
+		readers.clear();
+	}
+}
@@ -0,0 +1,495 @@
+package com.yg.bam;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.yg.exceptions.InputParametersException;
+
+/**
+ * In-process reader of coordinate-sorted and indexed BAM files;
+ * Decodes BAM records into SAM text lines (the same as 'samtools view' prints)
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BAMFileReader {
+
+	private static final char[] CIGAR_OPS = "MIDNSHP=X".toCharArray();
+	private static final char[] SEQ_BASES = "=ACMGRSVTWYHKDBN".toCharArray();
+
+	private String filename;
+	private BGZFReader bgzf;
+	private BAMIndex index;
+
+	private String headerText; // SAM header
+	private List<String> refNames = new ArrayList<String>(); // reference sequences names
+	private List<Integer> refLengths = new ArrayList<Integer>(); // reference sequences lengths
+	private Map<String, Integer> refIds = new HashMap<String, Integer>(); // name -> reference index
+	private long firstRecordOffset; // virtual offset of the first read after the header
+
+	private byte[] record = new byte[1024]; // buffer for a single BAM record
+	private StringBuilder samLine = new StringBuilder(1024); // buffer for a SAM line
+
+	/**
+	 * Constructor - open the BAM file and read the header
+	 * @param filename - path to .bam file
+	 * @throws IOException
+	 * @throws InputParametersException
+	 */
+	public BAMFileReader(String filename) throws IOException, InputParametersException {
+		this.filename = filename;
+		this.bgzf = new BGZFReader(filename);
+		readHeader();
+	}
+
+	/**
+	 * Read the BAM header: magic string, SAM header text and reference sequences
+	 * @throws IOException
+	 */
+	private void readHeader() throws IOException {
+		byte[] magic = new byte[4];
+		bgzf.readFully(magic, 0, 4);
+		if (magic[0] != 'B' || magic[1] != 'A' || magic[2] != 'M' || magic[3] != 1) {
+			throw new IOException("ERROR - BAMFileReader: " + filename + " is not a BAM file");
+		}
+
+		int lText = bgzf.readInt();
+		byte[] text = new byte[lText];
+		bgzf.readFully(text, 0, lText);
+		headerText = new String(text, "US-ASCII");
+
+		int nRef = bgzf.readInt();
+		for (int i = 0; i < nRef; i++) {
+			int lName = bgzf.readInt();
+			byte[] name = new byte[lName];
+			bgzf.readFully(name, 0, lName);
+			String refName = new String(name, 0, lName - 1, "US-ASCII"); // NUL terminated
+			refNames.add(refName);
+			refLengths.add(bgzf.readInt());
+			refIds.put(refName, i);
+		}
+		firstRecordOffset = bgzf.getVirtualOffset();
+	}
+
+	/**
+	 * Load the index file if it wasn't loaded yet
+	 * @throws IOException
+	 * @throws InputParametersException
+	 */
+	private void loadIndex() throws IOException, InputParametersException {
+		if (index != null) {
+			return;
+		}
+		String indexFile = BAMIndex.findIndexFile(filename);
+		if (indexFile == null) {
+			throw new InputParametersException("BAM READER ERROR: no index file (.bai) found for " + filename);
+		}
+		index = new BAMIndex(indexFile);
+	}
+
+	/**
+	 * Collect reads overlapping the region (as 'samtools view -f required -F excluded bam chr:start-end')
+	 * @param chromosome
+	 * @param start - 1-based start
+	 * @param end - 1-based inclusive end
+	 * @param requiredFlags - all these flags should be set
+	 * @param excludedFlags - none of these flags should be set
+	 * @param handler - receives SAM lines of the reads
+	 * @throws IOException
+	 * @throws InputParametersException
+	 */
+	public synchronized void query(String chromosome, long start, long end, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException {
+		Integer refId = refIds.get(chromosome);
+		if (refId == null) {
+			// samtools view reports an unknown region and returns no reads
+			return;
+		}
+		loadIndex();
+
+		int beg = (int) Math.max(0, start - 1); // 0-based start
+		int stop = (int) Math.min(end, refLengths.get(refId)); // 0-based exclusive end
+		if (beg >= stop) {
+			return;
+		}
+
+		long[] chunks = index.getChunks(refId, beg, stop);
+		for (int c = 0; c < chunks.length; c += 2) {
+			bgzf.seek(chunks[c]);
+
+			while (bgzf.getVirtualOffset() < chunks[c+1]) {
+				int length = readRecord();
+				if (length < 0) {
+					return;
+				}
+
+				int recRefId = getInt(record, 0);
+				int pos = getInt(record, 4);
+				if (recRefId != refId || pos >= stop) {
+					// Reads are sorted, no more reads in the region
+					return;
+				}
+				if (getAlignmentEnd(pos) <= beg) {
+					continue;
+				}
+
+				int flag = getUShort(record, 14);
+				if ((flag & requiredFlags) != requiredFlags || (flag & excludedFlags) != 0) {
+					continue;
+				}
+				handler.onRecord(toSAMLine(length));
+			}
+		}
+	}
+
+	/**
+	 * Read all reads of the file sequentially (as 'samtools view -f required -F excluded bam'), the index is not used
+	 * @param requiredFlags - all these flags should be set
+	 * @param excludedFlags - none of these flags should be set
+	 * @param handler - receives SAM lines of the reads
+	 * @throws IOException
+	 */
+	public synchronized void scan(int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException {
+		bgzf.seek(firstRecordOffset);
+		int length;
+		while ((length = readRecord()) >= 0) {
+			int flag = getUShort(record, 14);
+			if ((flag & requiredFlags) != requiredFlags || (flag & excludedFlags) != 0) {
+				continue;
+			}
+			handler.onRecord(toSAMLine(length));
+		}
+	}
+
+	/**
+	 * Raw records access, used to copy reads into another BAM file;
+	 * Callers read the whole file sequentially and should not query it at the same time
+	 */
+	void seekFirstRecord() throws IOException {
+		bgzf.seek(firstRecordOffset);
+	}
+
+	byte[] getRecord() {
+		return record;
+	}
+
+	int getRecordRefId() {
+		return getInt(record, 0);
+	}
+
+	int getRecordPos() {
+		return getInt(record, 4);
+	}
+
+	int getRecordEnd() {
+		return getAlignmentEnd(getInt(record, 4));
+	}
+
+	int getRecordFlag() {
+		return getUShort(record, 14);
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the read name of the record, the same as ReadNameSet.hash()
+	 * @return
+	 */
+	long getRecordNameHash() {
+		int lReadName = record[8] & 0xFF;
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 32; i < 32 + lReadName - 1; i++) {
+			hash ^= record[i] & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return (hash == 0) ? 1 : hash;
+	}
+
+	/**
+	 * Check if the CIGAR of the record has the operation
+	 * @param op - operation code (see Cigar)
+	 * @return
+	 */
+	boolean hasRecordCigarOperation(int op) {
+		int lReadName = record[8] & 0xFF;
+		int nCigarOp = getUShort(record, 12);
+		int offset = 32 + lReadName;
+		for (int i = 0; i < nCigarOp; i++) {
+			if ((getInt(record, offset + 4*i) & 0xF) == op) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the record has the optional field
+	 * @param tag - two characters tag, e.g. 'XA'
+	 * @param length - length of the record
+	 * @return
+	 */
+	boolean hasRecordTag(String tag, int length) {
+		int lReadName = record[8] & 0xFF;
+		int nCigarOp = getUShort(record, 12);
+		int lSeq = getInt(record, 16);
+		int offset = 32 + lReadName + 4*nCigarOp + (lSeq + 1)/2 + lSeq;
+		while (offset < length) {
+			if (record[offset] == tag.charAt(0) && record[offset+1] == tag.charAt(1)) {
+				return true;
+			}
+			offset = skipTagValue((char) record[offset+2], offset + 3);
+		}
+		return false;
+	}
+
+	/**
+	 * Skip a value of the optional field
+	 * @param type - BAM type of the value
+	 * @param offset - offset of the value in the record
+	 * @return offset of the next field
+	 */
+	private int skipTagValue(char type, int offset) {
+		switch (type) {
+			case 'A': case 'c': case 'C':
+				return offset + 1;
+			case 's': case 'S':
+				return offset + 2;
+			case 'i': case 'I': case 'f':
+				return offset + 4;
+			case 'Z': case 'H':
+				while (record[offset] != 0) {
+					offset++;
+				}
+				return offset + 1;
+			case 'B':
+				char subtype = (char) record[offset];
+				int count = getInt(record, offset + 1);
+				int size = (subtype == 'c' || subtype == 'C') ? 1 : (subtype == 's' || subtype == 'S') ? 2 : 4;
+				return offset + 5 + count * size;
+			default:
+				throw new IllegalArgumentException("ERROR - BAMFileReader: unknown tag type '" + type + "' in " + filename);
+		}
+	}
+
+	/**
+	 * Read the next record into the buffer
+	 * @return length of the record or -1 at the end of file
+	 * @throws IOException
+	 */
+	int readRecord() throws IOException {
+		if (bgzf.isEOF()) {
+			return -1;
+		}
+		int blockSize = bgzf.readInt();
+		if (blockSize > record.length) {
+			record = new byte[Math.max(blockSize, 2 * record.length)];
+		}
+		bgzf.readFully(record, 0, blockSize);
+		return blockSize;
+	}
+
+	/**
+	 * Get the 0-based exclusive end of the alignment on the reference
+	 * @param pos
+	 * @return
+	 */
+	private int getAlignmentEnd(int pos) {
+		int lReadName = record[8] & 0xFF;
+		int nCigarOp = getUShort(record, 12);
+		int offset = 32 + lReadName;
+		int refLength = 0;
+		for (int i = 0; i < nCigarOp; i++) {
+			int op = getInt(record, offset + 4*i);
+			switch (op & 0xF) {
+				case 0: case 2: case 3: case 7: case 8: // M, D, N, =, X consume the reference
+					refLength += op >>> 4;
+			}
+		}
+		return pos + (refLength == 0 ? 1 : refLength);
+	}
+
+	/**
+	 * Convert the record in the buffer into the SAM line
+	 * @param length - length of the record
+	 * @return
+	 */
+	private String toSAMLine(int length) {
+		int refId = getInt(record, 0);
+		int pos = getInt(record, 4);
+		int lReadName = record[8] & 0xFF;
+		int mapq = record[9] & 0xFF;
+		int nCigarOp = getUShort(record, 12);
+		int flag = getUShort(record, 14);
+		int lSeq = getInt(record, 16);
+		int nextRefId = getInt(record, 20);
+		int nextPos = getInt(record, 24);
+		int tlen = getInt(record, 28);
+
+		samLine.setLength(0);
+
+		// QNAME
+		for (int i = 32; i < 32 + lReadName - 1; i++) {
+			samLine.append((char) record[i]);
+		}
+		// FLAG, RNAME, POS, MAPQ
+		samLine.append('\t').append(flag);
+		samLine.append('\t').append(refId < 0 ? "*" : refNames.get(refId));
+		samLine.append('\t').append(pos + 1);
+		samLine.append('\t').append(mapq);
+
+		// CIGAR
+		int offset = 32 + lReadName;
+		samLine.append('\t');
+		if (nCigarOp == 0) {
+			samLine.append('*');
+		}
+		for (int i = 0; i < nCigarOp; i++) {
+			int op = getInt(record, offset);
+			samLine.append(op >>> 4).append(CIGAR_OPS[op & 0xF]);
+			offset += 4;
+		}
+
+		// RNEXT, PNEXT, TLEN
+		samLine.append('\t');
+		if (nextRefId < 0) {
+			samLine.append('*');
+		} else if (nextRefId == refId) {
+			samLine.append('=');
+		} else {
+			samLine.append(refNames.get(nextRefId));
+		}
+		samLine.append('\t').append(nextPos + 1);
+		samLine.append('\t').append(tlen);
+
+		// SEQ
+		samLine.append('\t');
+		if (lSeq == 0) {
+			samLine.append('*');
+		}
+		for (int i = 0; i < lSeq; i++) {
+			int b = record[offset + i/2] & 0xFF;
+			samLine.append(SEQ_BASES[(i & 1) == 0 ? b >>> 4 : b & 0xF]);
+		}
+		offset += (lSeq + 1) / 2;
+
+		// QUAL
+		samLine.append('\t');
+		if (lSeq == 0 || (record[offset] & 0xFF) == 0xFF) {
+			samLine.append('*');
+		} else {
+			for (int i = 0; i < lSeq; i++) {
+				samLine.append((char) (record[offset + i] + 33));
+			}
+		}
+		offset += lSeq;
+
+		// Optional fields
+		while (offset < length) {
+			samLine.append('\t').append((char) record[offset]).append((char) record[offset+1]).append(':');
+			char type = (char) record[offset+2];
+			offset += 3;
+			offset = appendTagValue(type, offset);
+		}
+
+		return samLine.toString();
+	}
+
+	/**
+	 * Append a value of the optional field in SAM format
+	 * @param type - BAM type of the value
+	 * @param offset - offset of the value in the record
+	 * @return offset of the next field
+	 */
+	private int appendTagValue(char type, int offset) {
+		switch (type) {
+			case 'A':
+				samLine.append("A:").append((char) record[offset]);
+				return offset + 1;
+			case 'c':
+				samLine.append("i:").append(record[offset]);
+				return offset + 1;
+			case 'C':
+				samLine.append("i:").append(record[offset] & 0xFF);
+				return offset + 1;
+			case 's':
+				samLine.append("i:").append((short) getUShort(record, offset));
+				return offset + 2;
+			case 'S':
+				samLine.append("i:").append(getUShort(record, offset));
+				return offset + 2;
+			case 'i':
+				samLine.append("i:").append(getInt(record, offset));
+				return offset + 4;
+			case 'I':
+				samLine.append("i:").append(getInt(record, offset) & 0xFFFFFFFFL);
+				return offset + 4;
+			case 'f':
+				samLine.append("f:").append(Float.intBitsToFloat(getInt(record, offset)));
+				return offset + 4;
+			case 'Z':
+			case 'H':
+				samLine.append(type).append(':');
+				while (record[offset] != 0) {
+					samLine.append((char) record[offset++]);
+				}
+				return offset + 1;
+			case 'B':
+				char subtype = (char) record[offset];
+				int count = getInt(record, offset + 1);
+				offset += 5;
+				samLine.append("B:").append(subtype);
+				for (int i = 0; i < count; i++) {
+					samLine.append(',');
+					switch (subtype) {
+						case 'c': samLine.append(record[offset]); offset += 1; break;
+						case 'C': samLine.append(record[offset] & 0xFF); offset += 1; break;
+						case 's': samLine.append((short) getUShort(record, offset)); offset += 2; break;
+						case 'S': samLine.append(getUShort(record, offset)); offset += 2; break;
+						case 'i': samLine.append(getInt(record, offset)); offset += 4; break;
+						case 'I': samLine.append(getInt(record, offset) & 0xFFFFFFFFL); offset += 4; break;
+						default: samLine.append(Float.intBitsToFloat(getInt(record, offset))); offset += 4;
+					}
+				}
+				return offset;
+			default:
+				throw new IllegalArgumentException("ERROR - BAMFileReader: unknown tag type '" + type + "' in " + filename);
+		}
+	}
+
+	/**
+	 * Read little-endian values from the buffer
+	 */
+	private static int getInt(byte[] b, int offset) {
+		return (b[offset] & 0xFF) | (b[offset+1] & 0xFF) << 8 | (b[offset+2] & 0xFF) << 16 | (b[offset+3] & 0xFF) << 24;
+	}
+
+	private static int getUShort(byte[] b, int offset) {
+		return (b[offset] & 0xFF) | (b[offset+1] & 0xFF) << 8;
+	}
+
+	/**
+	 * Getters
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	public String getHeaderText() {
+		return headerText;
+	}
+
+	public List<String> getRefNames() {
+		return refNames;
+	}
+
+	public List<Integer> getRefLengths() {
+		return refLengths;
+	}
+
+	/**
+	 * Close the file
+	 */
+	public synchronized void close() {
+		bgzf.close();
+	}
+}
@@ -0,0 +1,201 @@
+package com.yg.bam;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BAM index (.bai) model;
+ * Returns chunks of the BAM file (pairs of virtual offsets) that may contain reads of a region
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BAMIndex {
+
+	public static final int PSEUDO_BIN = 37450; // bin with metadata, not chunks of reads
+	public static final int LINEAR_SHIFT = 14; // 16kb windows of the linear index
+
+	private List<Map<Integer, long[]>> bins; // for each reference: bin -> [beg1, end1, beg2, end2, ...]
+	private List<long[]> linearIndex; // for each reference: min offset of reads in each 16kb window
+
+	/**
+	 * Constructor - parse the index file
+	 * @param filename - path to .bai file
+	 * @throws IOException
+	 */
+	public BAMIndex(String filename) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16));
+		try {
+			byte[] magic = new byte[4];
+			in.readFully(magic);
+			if (magic[0] != 'B' || magic[1] != 'A' || magic[2] != 'I' || magic[3] != 1) {
+				throw new IOException("ERROR - BAMIndex: " + filename + " is not a BAM index file");
+			}
+
+			int nRef = readInt(in);
+			bins = new ArrayList<Map<Integer, long[]>>(nRef);
+			linearIndex = new ArrayList<long[]>(nRef);
+
+			for (int r = 0; r < nRef; r++) {
+				int nBin = readInt(in);
+				Map<Integer, long[]> refBins = new HashMap<Integer, long[]>(nBin * 2);
+				for (int b = 0; b < nBin; b++) {
+					int bin = readInt(in);
+					int nChunk = readInt(in);
+					long[] chunks = new long[2 * nChunk];
+					for (int c = 0; c < 2 * nChunk; c++) {
+						chunks[c] = readLong(in);
+					}
+					if (bin != PSEUDO_BIN) {
+						refBins.put(bin, chunks);
+					}
+				}
+				int nIntv = readInt(in);
+				long[] intervals = new long[nIntv];
+				for (int i = 0; i < nIntv; i++) {
+					intervals[i] = readLong(in);
+				}
+				bins.add(refBins);
+				linearIndex.add(intervals);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Find the index file for a BAM file: file.bam.bai or file.bai
+	 * @param bamFile
+	 * @return path to the index or null if not found
+	 */
+	public static String findIndexFile(String bamFile) {
+		File index = new File(bamFile + ".bai");
+		if (index.exists()) {
+			return index.getPath();
+		}
+		if (bamFile.endsWith(".bam")) {
+			index = new File(bamFile.substring(0, bamFile.length() - 4) + ".bai");
+			if (index.exists()) {
+				return index.getPath();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get sorted and merged chunks that may contain reads overlapping the region
+	 * @param refId - reference index
+	 * @param beg - 0-based start
+	 * @param end - 0-based exclusive end
+	 * @return [beg1, end1, beg2, end2, ...] virtual offsets
+	 */
+	public long[] getChunks(int refId, int beg, int end) {
+		if (refId < 0 || refId >= bins.size()) {
+			return new long[0];
+		}
+		Map<Integer, long[]> refBins = bins.get(refId);
+
+		// Reads before this offset cannot overlap the region
+		long[] intervals = linearIndex.get(refId);
+		long minOffset = 0;
+		if (intervals.length > 0) {
+			int window = beg >> LINEAR_SHIFT;
+			minOffset = intervals[Math.min(window, intervals.length - 1)];
+		}
+
+		// Collect chunks from all bins overlapping the region
+		List<long[]> chunks = new ArrayList<long[]>();
+		for (int bin : reg2bins(beg, end)) {
+			long[] binChunks = refBins.get(bin);
+			if (binChunks == null) {
+				continue;
+			}
+			for (int c = 0; c < binChunks.length; c += 2) {
+				if (binChunks[c+1] > minOffset) {
+					chunks.add(new long[] {Math.max(binChunks[c], minOffset), binChunks[c+1]});
+				}
+			}
+		}
+		if (chunks.isEmpty()) {
+			return new long[0];
+		}
+
+		// Sort and merge overlapping chunks
+		long[][] sorted = chunks.toArray(new long[chunks.size()][]);
+		Arrays.sort(sorted, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] chunk1, long[] chunk2) {
+				return Long.compare(chunk1[0], chunk2[0]);
+			}
+		});
+
+		long[] merged = new long[2 * sorted.length];
+		int n = 0;
+		merged[0] = sorted[0][0];
+		merged[1] = sorted[0][1];
+		for (int i = 1; i < sorted.length; i++) {
+			if (sorted[i][0] <= merged[2*n+1]) {
+				merged[2*n+1] = Math.max(merged[2*n+1], sorted[i][1]);
+			} else {
+				n++;
+				merged[2*n] = sorted[i][0];
+				merged[2*n+1] = sorted[i][1];
+			}
+		}
+		return Arrays.copyOf(merged, 2 * (n + 1));
+	}
+
+	/**
+	 * Get the list of bins that overlap the region (as in the SAM specification)
+	 * @param beg - 0-based start
+	 * @param end - 0-based exclusive end
+	 * @return
+	 */
+	public static List<Integer> reg2bins(int beg, int end) {
+		List<Integer> list = new ArrayList<Integer>();
+		--end;
+		list.add(0);
+		for (int k = 1 + (beg >> 26); k <= 1 + (end >> 26); ++k) list.add(k);
+		for (int k = 9 + (beg >> 23); k <= 9 + (end >> 23); ++k) list.add(k);
+		for (int k = 73 + (beg >> 20); k <= 73 + (end >> 20); ++k) list.add(k);
+		for (int k = 585 + (beg >> 17); k <= 585 + (end >> 17); ++k) list.add(k);
+		for (int k = 4681 + (beg >> 14); k <= 4681 + (end >> 14); ++k) list.add(k);
+		return list;
+	}
+
+	/**
+	 * Get the bin of a read (as in the SAM specification)
+	 * @param beg - 0-based start
+	 * @param end - 0-based exclusive end
+	 * @return
+	 */
+	public static int reg2bin(int beg, int end) {
+		--end;
+		if (beg >> 14 == end >> 14) return ((1 << 15) - 1) / 7 + (beg >> 14);
+		if (beg >> 17 == end >> 17) return ((1 << 12) - 1) / 7 + (beg >> 17);
+		if (beg >> 20 == end >> 20) return ((1 << 9) - 1) / 7 + (beg >> 20);
+		if (beg >> 23 == end >> 23) return ((1 << 6) - 1) / 7 + (beg >> 23);
+		if (beg >> 26 == end >> 26) return ((1 << 3) - 1) / 7 + (beg >> 26);
+		return 0;
+	}
+
+	/**
+	 * Read little-endian values
+	 */
+	private static int readInt(DataInputStream in) throws IOException {
+		return Integer.reverseBytes(in.readInt());
+	}
+
+	private static long readLong(DataInputStream in) throws IOException {
+		return Long.reverseBytes(in.readLong());
+	}
+}
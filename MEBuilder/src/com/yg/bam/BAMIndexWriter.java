@@ -0,0 +1,134 @@
+package com.yg.bam;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builder of BAM index (.bai) for a coordinate-sorted BAM file being written;
+ * Reads are added in the order they are written, with virtual offsets of their records
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BAMIndexWriter {
+
+	private List<Map<Integer, long[]>> bins = new ArrayList<Map<Integer, long[]>>(); // for each reference: bin -> [beg1, end1, beg2, end2, ..., number of chunks]
+	private List<long[]> linearIndex = new ArrayList<long[]>(); // for each reference: min offset of reads in each 16kb window
+	private int[] linearLength; // number of used windows of each reference
+
+	/**
+	 * Constructor
+	 * @param numOfRefs - number of reference sequences in the BAM file
+	 */
+	public BAMIndexWriter(int numOfRefs) {
+		for (int r = 0; r < numOfRefs; r++) {
+			bins.add(new TreeMap<Integer, long[]>());
+			linearIndex.add(new long[0]);
+		}
+		linearLength = new int[numOfRefs];
+	}
+
+	/**
+	 * Add the read to the index
+	 * @param refId - reference index
+	 * @param beg - 0-based start
+	 * @param end - 0-based exclusive end
+	 * @param recordStart - virtual offset of the record
+	 * @param recordEnd - virtual offset after the record
+	 */
+	public void addRead(int refId, int beg, int end, long recordStart, long recordEnd) {
+		// Chunks of the bin; the chunk continues the last one if records are adjacent
+		Map<Integer, long[]> refBins = bins.get(refId);
+		int bin = BAMIndex.reg2bin(beg, end);
+		long[] chunks = refBins.get(bin);
+		if (chunks == null) {
+			chunks = new long[5];
+			refBins.put(bin, chunks);
+		}
+		int n = (int) chunks[chunks.length - 1];
+		if (n > 0 && chunks[2*n - 1] == recordStart) {
+			chunks[2*n - 1] = recordEnd;
+		} else {
+			if (2*n + 2 > chunks.length - 1) {
+				long[] grown = Arrays.copyOf(chunks, 2 * chunks.length + 1);
+				grown[grown.length - 1] = n;
+				chunks = grown;
+				refBins.put(bin, chunks);
+			}
+			chunks[2*n] = recordStart;
+			chunks[2*n + 1] = recordEnd;
+			chunks[chunks.length - 1] = n + 1;
+		}
+
+		// Linear index: offset of the first read overlapping each window
+		int lastWindow = (end - 1) >> BAMIndex.LINEAR_SHIFT;
+		long[] intervals = linearIndex.get(refId);
+		if (lastWindow >= intervals.length) {
+			intervals = Arrays.copyOf(intervals, Math.max(lastWindow + 1, 2 * intervals.length));
+			linearIndex.set(refId, intervals);
+		}
+		for (int w = beg >> BAMIndex.LINEAR_SHIFT; w <= lastWindow; w++) {
+			if (intervals[w] == 0) { // records follow the header, so 0 is never a real offset
+				intervals[w] = recordStart;
+			}
+		}
+		linearLength[refId] = Math.max(linearLength[refId], lastWindow + 1);
+	}
+
+	/**
+	 * Write the index file
+	 * @param filename - path to .bai file
+	 * @throws IOException
+	 */
+	public void write(String filename) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+		try {
+			out.write(new byte[] {'B', 'A', 'I', 1});
+			writeInt(out, bins.size());
+			for (int r = 0; r < bins.size(); r++) {
+				Map<Integer, long[]> refBins = bins.get(r);
+				writeInt(out, refBins.size());
+				for (Map.Entry<Integer, long[]> bin : refBins.entrySet()) {
+					long[] chunks = bin.getValue();
+					int n = (int) chunks[chunks.length - 1];
+					writeInt(out, bin.getKey());
+					writeInt(out, n);
+					for (int c = 0; c < 2 * n; c++) {
+						writeLong(out, chunks[c]);
+					}
+				}
+
+				// Windows without reads get the offset of the previous window
+				long[] intervals = linearIndex.get(r);
+				writeInt(out, linearLength[r]);
+				long offset = 0;
+				for (int w = 0; w < linearLength[r]; w++) {
+					if (intervals[w] != 0) {
+						offset = intervals[w];
+					}
+					writeLong(out, offset);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write little-endian values
+	 */
+	private static void writeInt(DataOutputStream out, int value) throws IOException {
+		out.writeInt(Integer.reverseBytes(value));
+	}
+
+	private static void writeLong(DataOutputStream out, long value) throws IOException {
+		out.writeLong(Long.reverseBytes(value));
+	}
+}
@@ -0,0 +1,158 @@
+package com.yg.bam;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.yg.exceptions.InputParametersException;
+import com.yg.utilities.ReadNameSet;
+
+/**
+ * Extracts candidate reads of a BAM file into a small coordinate-sorted and indexed BAM file (sidecar);
+ * Candidates are discordant pairs, soft-clipped reads and reads with alternative alignments (XA/XS),
+ * the sidecar keeps all reads with names of candidates, so that their mates are there as well
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BAMSidecarWriter {
+
+	private String bamFile;
+	private String sidecarFile;
+	private int requiredFlags;
+	private int excludedFlags;
+
+	private long numOfReads = 0; // number of reads that passed flags
+	private long numOfSidecarReads = 0; // number of reads written to the sidecar
+
+	/**
+	 * Constructor
+	 * @param bamFile - path to the source .bam file
+	 * @param sidecarFile - path to the sidecar .bam file, the index is written next to it
+	 * @param requiredFlags - only reads with all these flags are written
+	 * @param excludedFlags - reads with any of these flags are not written
+	 */
+	public BAMSidecarWriter(String bamFile, String sidecarFile, int requiredFlags, int excludedFlags) {
+		this.bamFile = bamFile;
+		this.sidecarFile = sidecarFile;
+		this.requiredFlags = requiredFlags;
+		this.excludedFlags = excludedFlags;
+	}
+
+	/**
+	 * Read the BAM file twice: collect names of candidate reads, then copy all reads with these names;
+	 * Files are written under temporary names and renamed when complete
+	 * @throws IOException
+	 * @throws InputParametersException
+	 */
+	public void write() throws IOException, InputParametersException {
+		BAMFileReader reader = new BAMFileReader(bamFile);
+		try {
+			ReadNameSet names = collectCandidateNames(reader);
+
+			String tmpSidecar = sidecarFile + ".tmp";
+			String tmpIndex = sidecarFile + ".bai.tmp";
+			BGZFWriter out = new BGZFWriter(tmpSidecar);
+			BAMIndexWriter index = new BAMIndexWriter(reader.getRefNames().size());
+			try {
+				writeHeader(out, reader);
+
+				reader.seekFirstRecord();
+				int length;
+				while ((length = reader.readRecord()) >= 0) {
+					int flag = reader.getRecordFlag();
+					if ((flag & requiredFlags) != requiredFlags || (flag & excludedFlags) != 0 || reader.getRecordRefId() < 0) {
+						continue;
+					}
+					if (!names.containsHash(reader.getRecordNameHash())) {
+						continue;
+					}
+
+					long recordStart = out.getVirtualOffset();
+					out.writeInt(length);
+					out.write(reader.getRecord(), 0, length);
+					index.addRead(reader.getRecordRefId(), reader.getRecordPos(), reader.getRecordEnd(), recordStart, out.getVirtualOffset());
+					numOfSidecarReads++;
+				}
+			} finally {
+				out.close();
+			}
+			index.write(tmpIndex);
+
+			// The index is renamed first: the sidecar is used only if both files exist
+			if (!new File(tmpIndex).renameTo(new File(sidecarFile + ".bai")) || !new File(tmpSidecar).renameTo(new File(sidecarFile))) {
+				throw new IOException("ERROR - BAMSidecarWriter: cannot create " + sidecarFile);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Collect hashes of names of reads that can be anchoring reads or discordant reads
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 */
+	private ReadNameSet collectCandidateNames(BAMFileReader reader) throws IOException {
+		ReadNameSet names = new ReadNameSet(false); // collisions only add reads to the sidecar
+		reader.seekFirstRecord();
+		int length;
+		while ((length = reader.readRecord()) >= 0) {
+			int flag = reader.getRecordFlag();
+			if ((flag & requiredFlags) != requiredFlags || (flag & excludedFlags) != 0) {
+				continue;
+			}
+			numOfReads++;
+
+			if ((flag & AlignmentReader.FLAG_PROPER_PAIR) == 0 ||
+				reader.hasRecordCigarOperation(Cigar.OP_S) ||
+				reader.hasRecordTag("XA", length) || reader.hasRecordTag("XS", length)) {
+				names.addHash(reader.getRecordNameHash());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Copy the header of the source BAM file
+	 * @param out
+	 * @param reader
+	 * @throws IOException
+	 */
+	private static void writeHeader(BGZFWriter out, BAMFileReader reader) throws IOException {
+		out.write(new byte[] {'B', 'A', 'M', 1}, 0, 4);
+		byte[] text = reader.getHeaderText().getBytes("US-ASCII");
+		out.writeInt(text.length);
+		out.write(text, 0, text.length);
+
+		List<String> refNames = reader.getRefNames();
+		out.writeInt(refNames.size());
+		for (int i = 0; i < refNames.size(); i++) {
+			byte[] name = refNames.get(i).getBytes("US-ASCII");
+			out.writeInt(name.length + 1);
+			out.write(name, 0, name.length);
+			out.write(new byte[] {0}, 0, 1); // NUL terminated
+			out.writeInt(reader.getRefLengths().get(i));
+		}
+	}
+
+	/**
+	 * Getters
+	 */
+	public String getBamFile() {
+		return bamFile;
+	}
+
+	public String getSidecarFile() {
+		return sidecarFile;
+	}
+
+	public long getNumOfReads() {
+		return numOfReads;
+	}
+
+	public long getNumOfSidecarReads() {
+		return numOfSidecarReads;
+	}
+}
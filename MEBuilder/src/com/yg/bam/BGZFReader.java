@@ -0,0 +1,277 @@
+package com.yg.bam;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reader for BGZF (blocked gzip) files, e.g. BAM files;
+ * Supports seeking to a virtual file offset (compressed block address << 16 | offset in block)
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BGZFReader {
+
+	public static final int MAX_BLOCK_SIZE = 65536; // max size of compressed and uncompressed BGZF block
+	private static final int BLOCK_HEADER_LENGTH = 18; // gzip header with BC extra subfield
+	private static final int BLOCK_CACHE_SIZE = 64; // number of recently used uncompressed blocks to keep
+
+	private String filename;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private long fileLength;
+
+	private Inflater inflater = new Inflater(true); // raw deflate data
+	private ByteBuffer compressed = ByteBuffer.allocate(MAX_BLOCK_SIZE);
+
+	private byte[] block = new byte[0]; // current uncompressed block
+	private int blockLength = 0; // number of bytes in the current block
+	private long blockAddress = -1; // file offset of the current block
+	private long nextBlockAddress = 0; // file offset of the next block
+	private int blockOffset = 0; // position in the current block
+
+	// Cache of uncompressed blocks: index-driven queries often return to the same blocks
+	private Map<Long, byte[]> blockCache = new LinkedHashMap<Long, byte[]>(BLOCK_CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+			return size() > BLOCK_CACHE_SIZE;
+		}
+	};
+	private Map<Long, Long> nextAddressCache = new LinkedHashMap<Long, Long>();
+
+	/**
+	 * Constructor
+	 * @param filename - path to the BGZF file
+	 * @throws IOException
+	 */
+	public BGZFReader(String filename) throws IOException {
+		this.filename = filename;
+		this.file = new RandomAccessFile(filename, "r");
+		this.channel = file.getChannel();
+		this.fileLength = channel.size();
+	}
+
+	/**
+	 * Move to a virtual file offset
+	 * @param virtualOffset
+	 * @throws IOException
+	 */
+	public void seek(long virtualOffset) throws IOException {
+		long address = virtualOffset >>> 16;
+		int offset = (int) (virtualOffset & 0xFFFF);
+
+		if (address != blockAddress) {
+			loadBlock(address);
+		}
+		if (offset > blockLength) {
+			throw new IOException("ERROR - BGZFReader: invalid virtual offset " + virtualOffset + " in " + filename);
+		}
+		blockOffset = offset;
+	}
+
+	/**
+	 * Get the virtual file offset of the next byte to read
+	 * @return
+	 */
+	public long getVirtualOffset() {
+		if (blockAddress < 0) {
+			return 0;
+		}
+		if (blockOffset == blockLength) {
+			// Next read starts at the beginning of the next block
+			return nextBlockAddress << 16;
+		}
+		return (blockAddress << 16) | blockOffset;
+	}
+
+	/**
+	 * Read up to len bytes
+	 * @param buffer
+	 * @param off
+	 * @param len
+	 * @return number of bytes read or -1 at the end of file
+	 * @throws IOException
+	 */
+	public int read(byte[] buffer, int off, int len) throws IOException {
+		int total = 0;
+		while (total < len) {
+			if (!ensureAvailable()) {
+				return total == 0 ? -1 : total;
+			}
+			int n = Math.min(len - total, blockLength - blockOffset);
+			System.arraycopy(block, blockOffset, buffer, off + total, n);
+			blockOffset += n;
+			total += n;
+		}
+		return total;
+	}
+
+	/**
+	 * Read exactly len bytes
+	 * @param buffer
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	public void readFully(byte[] buffer, int off, int len) throws IOException {
+		int n = read(buffer, off, len);
+		if (n != len) {
+			throw new EOFException("ERROR - BGZFReader: unexpected end of file " + filename);
+		}
+	}
+
+	/**
+	 * Read a little-endian 32-bit integer
+	 * @return
+	 * @throws IOException
+	 */
+	public int readInt() throws IOException {
+		byte[] b = new byte[4];
+		readFully(b, 0, 4);
+		return (b[0] & 0xFF) | (b[1] & 0xFF) << 8 | (b[2] & 0xFF) << 16 | (b[3] & 0xFF) << 24;
+	}
+
+	/**
+	 * Check if the end of file is reached
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean isEOF() throws IOException {
+		return !ensureAvailable();
+	}
+
+	/**
+	 * Close the file
+	 */
+	public void close() {
+		try {
+			inflater.end();
+			channel.close();
+			file.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Make sure there are unread bytes in the current block, loading next blocks if needed
+	 * @return false at the end of file
+	 * @throws IOException
+	 */
+	private boolean ensureAvailable() throws IOException {
+		if (blockAddress < 0) {
+			loadBlock(0);
+		}
+		while (blockOffset >= blockLength) {
+			if (nextBlockAddress >= fileLength) {
+				return false;
+			}
+			loadBlock(nextBlockAddress);
+		}
+		return true;
+	}
+
+	/**
+	 * Read and decompress the block that starts at the given file offset
+	 * @param address
+	 * @throws IOException
+	 */
+	private void loadBlock(long address) throws IOException {
+		byte[] cached = blockCache.get(address);
+		if (cached != null) {
+			block = cached;
+			blockLength = cached.length;
+			blockAddress = address;
+			nextBlockAddress = nextAddressCache.get(address);
+			blockOffset = 0;
+			return;
+		}
+
+		// Read the header
+		compressed.clear();
+		compressed.limit(BLOCK_HEADER_LENGTH);
+		readChannel(address);
+		byte[] data = compressed.array();
+		if ((data[0] & 0xFF) != 31 || (data[1] & 0xFF) != 139 || (data[3] & 4) == 0) {
+			throw new IOException("ERROR - BGZFReader: " + filename + " is not a BGZF file or is corrupted at " + address);
+		}
+		int xlen = (data[10] & 0xFF) | (data[11] & 0xFF) << 8;
+		int blockSize = -1;
+
+		// Read extra subfields to get the block size
+		compressed.limit(12 + xlen);
+		readChannel(address);
+		for (int i = 12; i + 4 <= 12 + xlen; ) {
+			int subLength = (data[i+2] & 0xFF) | (data[i+3] & 0xFF) << 8;
+			if (data[i] == 'B' && data[i+1] == 'C' && subLength == 2) {
+				blockSize = ((data[i+4] & 0xFF) | (data[i+5] & 0xFF) << 8) + 1;
+			}
+			i += 4 + subLength;
+		}
+		if (blockSize < 0) {
+			throw new IOException("ERROR - BGZFReader: no BC subfield in block at " + address + " in " + filename);
+		}
+
+		// Read the whole block
+		compressed.limit(blockSize);
+		readChannel(address);
+
+		int cdataOffset = 12 + xlen;
+		int cdataLength = blockSize - xlen - 19;
+		int isize = (data[blockSize-4] & 0xFF) | (data[blockSize-3] & 0xFF) << 8 | (data[blockSize-2] & 0xFF) << 16 | (data[blockSize-1] & 0xFF) << 24;
+
+		byte[] uncompressed = new byte[isize];
+		inflater.reset();
+		inflater.setInput(data, cdataOffset, cdataLength);
+		try {
+			int n = 0;
+			while (n < isize && !inflater.finished()) {
+				int m = inflater.inflate(uncompressed, n, isize - n);
+				if (m == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				n += m;
+			}
+			if (n != isize) {
+				throw new IOException("ERROR - BGZFReader: corrupted block at " + address + " in " + filename);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("ERROR - BGZFReader: corrupted block at " + address + " in " + filename, e);
+		}
+
+		block = uncompressed;
+		blockLength = isize;
+		blockAddress = address;
+		nextBlockAddress = address + blockSize;
+		blockOffset = 0;
+
+		blockCache.put(address, uncompressed);
+		nextAddressCache.put(address, nextBlockAddress);
+		if (nextAddressCache.size() > BLOCK_CACHE_SIZE) {
+			nextAddressCache.keySet().retainAll(blockCache.keySet());
+		}
+	}
+
+	/**
+	 * Fill the compressed buffer from the given file offset up to its limit
+	 * @param address
+	 * @throws IOException
+	 */
+	private void readChannel(long address) throws IOException {
+		compressed.position(0);
+		while (compressed.hasRemaining()) {
+			int n = channel.read(compressed, address + compressed.position());
+			if (n < 0) {
+				throw new EOFException("ERROR - BGZFReader: truncated block at " + address + " in " + filename);
+			}
+		}
+	}
+}
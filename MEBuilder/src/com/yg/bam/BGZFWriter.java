@@ -0,0 +1,163 @@
+package com.yg.bam;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writer of BGZF (blocked gzip) files, e.g. BAM files;
+ * Reports virtual file offsets of written data, so that the file can be indexed
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BGZFWriter {
+
+	private static final int MAX_INPUT_SIZE = 65280; // uncompressed bytes per block, so that compressed block fits 64kb
+	private static final int BLOCK_HEADER_LENGTH = 18; // gzip header with BC extra subfield
+	private static final int BLOCK_FOOTER_LENGTH = 8; // CRC32 and uncompressed size
+	private static final byte[] EOF_BLOCK = { // empty block at the end of file
+		0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43,
+		0x02, 0x00, 0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+	};
+
+	private String filename;
+	private OutputStream out;
+	private Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true); // raw deflate data
+	private Deflater noCompression = new Deflater(Deflater.NO_COMPRESSION, true); // for data that doesn't shrink
+	private CRC32 crc = new CRC32();
+
+	private byte[] buffer = new byte[MAX_INPUT_SIZE]; // uncompressed data of the current block
+	private int bufferLength = 0;
+	private byte[] compressed = new byte[BGZFReader.MAX_BLOCK_SIZE];
+	private long blockAddress = 0; // file offset of the current block
+
+	/**
+	 * Constructor
+	 * @param filename - path to the BGZF file
+	 * @throws IOException
+	 */
+	public BGZFWriter(String filename) throws IOException {
+		this.filename = filename;
+		this.out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
+	}
+
+	/**
+	 * Get the virtual file offset of the next byte to write
+	 * @return
+	 */
+	public long getVirtualOffset() {
+		return (blockAddress << 16) | bufferLength;
+	}
+
+	/**
+	 * Write len bytes
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	public void write(byte[] data, int off, int len) throws IOException {
+		while (len > 0) {
+			int n = Math.min(len, MAX_INPUT_SIZE - bufferLength);
+			System.arraycopy(data, off, buffer, bufferLength, n);
+			bufferLength += n;
+			off += n;
+			len -= n;
+			if (bufferLength == MAX_INPUT_SIZE) {
+				// Full block - the next byte starts a new block
+				flushBlock();
+			}
+		}
+	}
+
+	/**
+	 * Write a little-endian 32-bit integer
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeInt(int value) throws IOException {
+		byte[] b = {(byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24)};
+		write(b, 0, 4);
+	}
+
+	/**
+	 * Compress and write the current block
+	 * @throws IOException
+	 */
+	private void flushBlock() throws IOException {
+		if (bufferLength == 0) {
+			return;
+		}
+
+		int maxDataLength = compressed.length - BLOCK_HEADER_LENGTH - BLOCK_FOOTER_LENGTH;
+		int dataLength = deflate(deflater, maxDataLength);
+		if (dataLength < 0) {
+			// Data doesn't shrink - store it
+			dataLength = deflate(noCompression, maxDataLength);
+			if (dataLength < 0) {
+				throw new IOException("ERROR - BGZFWriter: block doesn't fit in " + filename);
+			}
+		}
+		crc.reset();
+		crc.update(buffer, 0, bufferLength);
+
+		int blockSize = BLOCK_HEADER_LENGTH + dataLength + BLOCK_FOOTER_LENGTH;
+		byte[] header = {
+			0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+			(byte) (blockSize - 1), (byte) ((blockSize - 1) >>> 8)
+		};
+		out.write(header);
+		out.write(compressed, 0, dataLength);
+		writeIntTo(out, (int) crc.getValue());
+		writeIntTo(out, bufferLength);
+
+		blockAddress += blockSize;
+		bufferLength = 0;
+	}
+
+	/**
+	 * Deflate the current block
+	 * @param compressor
+	 * @param maxLength - max length of compressed data
+	 * @return length of compressed data or -1 if it is longer than max length
+	 */
+	private int deflate(Deflater compressor, int maxLength) {
+		compressor.reset();
+		compressor.setInput(buffer, 0, bufferLength);
+		compressor.finish();
+		int length = 0;
+		while (!compressor.finished() && length < maxLength) {
+			length += compressor.deflate(compressed, length, maxLength - length);
+		}
+		return compressor.finished() ? length : -1;
+	}
+
+	/**
+	 * Write a little-endian 32-bit integer to the stream
+	 */
+	private static void writeIntTo(OutputStream stream, int value) throws IOException {
+		stream.write(value);
+		stream.write(value >>> 8);
+		stream.write(value >>> 16);
+		stream.write(value >>> 24);
+	}
+
+	/**
+	 * Write the last block and the end of file marker, close the file
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		try {
+			flushBlock();
+			out.write(EOF_BLOCK);
+		} finally {
+			out.close();
+			deflater.end();
+			noCompression.end();
+		}
+	}
+}
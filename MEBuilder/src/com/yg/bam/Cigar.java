@@ -0,0 +1,200 @@
+package com.yg.bam;
+
+/**
+ * CIGAR of an aligned read decoded once into a packed array of operations;
+ * Every operation is stored as (length << 4 | op), the same way as in BAM files
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class Cigar {
+
+	// Operations codes
+	public static final int OP_M = 0; // alignment match
+	public static final int OP_I = 1; // insertion to the reference
+	public static final int OP_D = 2; // deletion from the reference
+	public static final int OP_N = 3; // skipped region from the reference
+	public static final int OP_S = 4; // soft clipping
+	public static final int OP_H = 5; // hard clipping
+	public static final int OP_P = 6; // padding
+	public static final int OP_EQ = 7; // sequence match
+	public static final int OP_X = 8; // sequence mismatch
+
+	public static final String OPERATIONS = "MIDNSHP=X";
+
+	private static final Cigar EMPTY = new Cigar(new int[0]);
+
+	private final int[] operations;
+
+	private Cigar(int[] operations) {
+		this.operations = operations;
+	}
+
+	/**
+	 * Decode CIGAR string, e.g. '20S81M'; '*' is an empty CIGAR
+	 * @param cigarString
+	 * @return
+	 */
+	public static Cigar decode(String cigarString) {
+		if (cigarString.equals("*")) {
+			return EMPTY;
+		}
+
+		// Count operations
+		int numOfOperations = 0;
+		for (int i = 0; i < cigarString.length(); i++) {
+			char c = cigarString.charAt(i);
+			if (c < '0' || c > '9') {
+				numOfOperations++;
+			}
+		}
+
+		int[] operations = new int[numOfOperations];
+		int length = 0;
+		boolean hasLength = false;
+		int idx = 0;
+		for (int i = 0; i < cigarString.length(); i++) {
+			char c = cigarString.charAt(i);
+			if (c >= '0' && c <= '9') {
+				length = length * 10 + (c - '0');
+				hasLength = true;
+				continue;
+			}
+			int op = OPERATIONS.indexOf(c);
+			if (op == -1 || !hasLength) {
+				throw new IllegalArgumentException("ERROR - Cigar: invalid CIGAR " + cigarString);
+			}
+			operations[idx++] = length << 4 | op;
+			length = 0;
+			hasLength = false;
+		}
+		if (hasLength) {
+			throw new IllegalArgumentException("ERROR - Cigar: invalid CIGAR " + cigarString);
+		}
+		return new Cigar(operations);
+	}
+
+	/**
+	 * Operations access
+	 */
+	public int getNumOfOperations() {
+		return operations.length;
+	}
+
+	public int getOperation(int idx) {
+		return operations[idx] & 0xf;
+	}
+
+	public int getLength(int idx) {
+		return operations[idx] >>> 4;
+	}
+
+	/**
+	 * Index of the first operation of the type
+	 * @param op
+	 * @return index or -1 if there is no such operation
+	 */
+	public int indexOf(int op) {
+		for (int i = 0; i < operations.length; i++) {
+			if ((operations[i] & 0xf) == op) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Length of soft clipping at the start of the read (after hard clipping)
+	 * @return length or 0 if the start is not clipped
+	 */
+	public int getLeadingSoftClip() {
+		for (int i = 0; i < operations.length; i++) {
+			int op = operations[i] & 0xf;
+			if (op == OP_S) {
+				return operations[i] >>> 4;
+			} else if (op != OP_H) {
+				break;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Length of soft clipping at the end of the read (before hard clipping)
+	 * @return length or 0 if the end is not clipped
+	 */
+	public int getTrailingSoftClip() {
+		for (int i = operations.length - 1; i >= 0; i--) {
+			int op = operations[i] & 0xf;
+			if (op == OP_S) {
+				return operations[i] >>> 4;
+			} else if (op != OP_H) {
+				break;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Number of reference bases covered by the alignment
+	 * @return
+	 */
+	public int getAlignedLength() {
+		int length = 0;
+		for (int i = 0; i < operations.length; i++) {
+			switch (operations[i] & 0xf) {
+				case OP_M: case OP_D: case OP_N: case OP_EQ: case OP_X:
+					length += operations[i] >>> 4;
+					break;
+				default:
+					break;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Read is fully matched, e.g. '101M'
+	 * @return
+	 */
+	public boolean isFullMatch() {
+		return operations.length == 1 && getOperation(0) == OP_M;
+	}
+
+	/**
+	 * Read ends with a match followed by soft clipping, e.g. '90M11S'
+	 * @return
+	 */
+	public boolean isSoftClippedAtEnd() {
+		int n = operations.length;
+		return n >= 2 && getOperation(n - 1) == OP_S && getOperation(n - 2) == OP_M;
+	}
+
+	/**
+	 * Read starts with soft clipping followed by a match, e.g. '20S81M'
+	 * @return
+	 */
+	public boolean isSoftClippedAtStart() {
+		return operations.length >= 2 && getOperation(0) == OP_S && getOperation(1) == OP_M;
+	}
+
+	/**
+	 * Read has soft clipping anywhere
+	 * @return
+	 */
+	public boolean hasSoftClip() {
+		return indexOf(OP_S) != -1;
+	}
+
+	@Override
+	public String toString() {
+		if (operations.length == 0) {
+			return "*";
+		}
+		StringBuilder cigar = new StringBuilder();
+		for (int i = 0; i < operations.length; i++) {
+			cigar.append(getLength(i)).append(OPERATIONS.charAt(getOperation(i)));
+		}
+		return cigar.toString();
+	}
+}
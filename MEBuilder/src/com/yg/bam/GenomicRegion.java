@@ -0,0 +1,91 @@
+package com.yg.bam;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Region of the reference genome (1-based, inclusive end) to query reads from
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class GenomicRegion {
+
+	private String chromosome;
+	private long start;
+	private long end;
+
+	/**
+	 * Constructor
+	 * @param chromosome
+	 * @param start - 1-based start
+	 * @param end - 1-based inclusive end
+	 */
+	public GenomicRegion(String chromosome, long start, long end) {
+		this.chromosome = chromosome;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Sort regions by chromosome and start and merge those that overlap or are closer than maxGap;
+	 * Chromosomes keep the order of their first appearance in the list
+	 * @param regions
+	 * @param maxGap - max distance between two regions to merge them
+	 * @return minimal list of sorted non-overlapping regions
+	 */
+	public static List<GenomicRegion> mergeRegions(List<GenomicRegion> regions, long maxGap) {
+		final List<String> chromosomes = new ArrayList<String>();
+		for (GenomicRegion region : regions) {
+			if (!chromosomes.contains(region.getChromosome())) {
+				chromosomes.add(region.getChromosome());
+			}
+		}
+
+		List<GenomicRegion> sorted = new ArrayList<GenomicRegion>(regions);
+		Collections.sort(sorted, new Comparator<GenomicRegion>() {
+			@Override
+			public int compare(GenomicRegion r1, GenomicRegion r2) {
+				int res = Integer.compare(chromosomes.indexOf(r1.getChromosome()), chromosomes.indexOf(r2.getChromosome()));
+				if (res != 0) {
+					return res;
+				}
+				return Long.compare(r1.getStart(), r2.getStart());
+			}
+		});
+
+		List<GenomicRegion> merged = new ArrayList<GenomicRegion>();
+		GenomicRegion last = null;
+		for (GenomicRegion region : sorted) {
+			if (last != null && last.getChromosome().equals(region.getChromosome()) && region.getStart() <= last.getEnd() + maxGap) {
+				last.end = Math.max(last.getEnd(), region.getEnd());
+			} else {
+				last = new GenomicRegion(region.getChromosome(), region.getStart(), region.getEnd());
+				merged.add(last);
+			}
+		}
+		return merged;
+	}
+
+	@Override
+	public String toString() {
+		return chromosome + ":" + start + "-" + end;
+	}
+
+	/**
+	 * Getters
+	 */
+	public String getChromosome() {
+		return chromosome;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+}
@@ -0,0 +1,24 @@
+package com.yg.bam;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handler that keeps all received reads in a list
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class SamLinesCollector implements SamRecordHandler {
+
+	private List<String> samLines = new ArrayList<String>();
+
+	@Override
+	public void onRecord(String samLine) {
+		samLines.add(samLine);
+	}
+
+	public List<String> getSamLines() {
+		return samLines;
+	}
+}
@@ -0,0 +1,308 @@
+package com.yg.bam;
+
+/**
+ * Reusable view of a read in SAM format;
+ * Fields are located with a single pass over the line, numbers are parsed in place
+ * and every field is decoded at most once per read
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class SamRecord {
+
+	// Mandatory fields
+	public static final int QNAME = 0;
+	public static final int FLAG = 1;
+	public static final int RNAME = 2;
+	public static final int POS = 3;
+	public static final int MAPQ = 4;
+	public static final int CIGAR = 5;
+	public static final int RNEXT = 6;
+	public static final int PNEXT = 7;
+	public static final int TLEN = 8;
+	public static final int SEQ = 9;
+	public static final int QUAL = 10;
+	public static final int MANDATORY_FIELDS = 11;
+
+	private String line; // read in SAM format
+	private int[] fieldStarts = new int[32]; // start of each field in the line, and the end of the line + 1
+	private int numOfFields = 0;
+
+	private int decoded = 0; // bit mask of decoded fields
+	private int flag;
+	private int pos;
+	private int mapq;
+	private int matePos;
+	private int tlen;
+	private String readName;
+	private String refName;
+	private String cigarString;
+	private Cigar cigar;
+	private String mateRefName;
+	private String seq;
+	private String qual;
+
+	/**
+	 * Point the view to a new read
+	 * @param samLine - read in SAM format
+	 * @return this view
+	 */
+	public SamRecord wrap(String samLine) {
+		this.line = samLine;
+		this.decoded = 0;
+		this.readName = null;
+		this.refName = null;
+		this.cigarString = null;
+		this.cigar = null;
+		this.mateRefName = null;
+		this.seq = null;
+		this.qual = null;
+
+		// Locate fields
+		numOfFields = 0;
+		fieldStarts[numOfFields++] = 0;
+		for (int i = 0; i < samLine.length(); i++) {
+			if (samLine.charAt(i) == '\t') {
+				if (numOfFields == fieldStarts.length - 1) {
+					int[] starts = new int[2 * fieldStarts.length];
+					System.arraycopy(fieldStarts, 0, starts, 0, numOfFields);
+					fieldStarts = starts;
+				}
+				fieldStarts[numOfFields++] = i + 1;
+			}
+		}
+		fieldStarts[numOfFields] = samLine.length() + 1;
+
+		if (numOfFields < MANDATORY_FIELDS) {
+			throw new IllegalArgumentException("ERROR - SamRecord: not a SAM line: " + samLine);
+		}
+		return this;
+	}
+
+	/**
+	 * Create an independent copy of the view, that can be kept after the view is pointed to another read
+	 * @return
+	 */
+	public SamRecord copy() {
+		SamRecord copy = new SamRecord();
+		copy.line = line;
+		copy.fieldStarts = new int[numOfFields + 1];
+		System.arraycopy(fieldStarts, 0, copy.fieldStarts, 0, numOfFields + 1);
+		copy.numOfFields = numOfFields;
+		copy.decoded = decoded;
+		copy.flag = flag;
+		copy.pos = pos;
+		copy.mapq = mapq;
+		copy.matePos = matePos;
+		copy.tlen = tlen;
+		copy.readName = readName;
+		copy.refName = refName;
+		copy.cigarString = cigarString;
+		copy.cigar = cigar;
+		copy.mateRefName = mateRefName;
+		copy.seq = seq;
+		copy.qual = qual;
+		return copy;
+	}
+
+	/**
+	 * Get the field as a string
+	 * @param field - index of the field
+	 * @return
+	 */
+	public String getField(int field) {
+		return line.substring(fieldStarts[field], fieldStarts[field + 1] - 1);
+	}
+
+	/**
+	 * Get the start of the field in the line (see toString())
+	 * @param field - index of the field
+	 * @return
+	 */
+	public int getFieldStart(int field) {
+		return fieldStarts[field];
+	}
+
+	/**
+	 * Get the length of the field without creating a string
+	 * @param field - index of the field
+	 * @return
+	 */
+	public int getFieldLength(int field) {
+		return fieldStarts[field + 1] - 1 - fieldStarts[field];
+	}
+
+	/**
+	 * Parse the integer field in place
+	 * @param field - index of the field
+	 * @return
+	 */
+	private int parseIntField(int field) {
+		int i = fieldStarts[field];
+		int end = fieldStarts[field + 1] - 1;
+		boolean negative = false;
+		if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+			negative = line.charAt(i) == '-';
+			i++;
+		}
+		if (i == end) {
+			throw new NumberFormatException("ERROR - SamRecord: empty number in field " + field + " of " + line);
+		}
+		int value = 0;
+		for (; i < end; i++) {
+			int digit = line.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("ERROR - SamRecord: not a number in field " + field + " of " + line);
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Check if the field was decoded; mark it as decoded otherwise
+	 * @param field
+	 * @return
+	 */
+	private boolean isDecoded(int field) {
+		if ((decoded & (1 << field)) != 0) {
+			return true;
+		}
+		decoded |= 1 << field;
+		return false;
+	}
+
+	/**
+	 * Typed accessors
+	 */
+	public String getReadName() {
+		if (readName == null) {
+			readName = getField(QNAME);
+		}
+		return readName;
+	}
+
+	public int getFlag() {
+		if (!isDecoded(FLAG)) {
+			flag = parseIntField(FLAG);
+		}
+		return flag;
+	}
+
+	public String getRefName() {
+		if (refName == null) {
+			refName = getField(RNAME);
+		}
+		return refName;
+	}
+
+	public int getPos() {
+		if (!isDecoded(POS)) {
+			pos = parseIntField(POS);
+		}
+		return pos;
+	}
+
+	public int getMapq() {
+		if (!isDecoded(MAPQ)) {
+			mapq = parseIntField(MAPQ);
+		}
+		return mapq;
+	}
+
+	public String getCigarString() {
+		if (cigarString == null) {
+			cigarString = getField(CIGAR);
+		}
+		return cigarString;
+	}
+
+	public Cigar getCigar() {
+		if (cigar == null) {
+			cigar = Cigar.decode(getCigarString());
+		}
+		return cigar;
+	}
+
+	/**
+	 * Reference name of the mate, '=' is replaced with the reference name of the read
+	 * @return
+	 */
+	public String getMateRefName() {
+		if (mateRefName == null) {
+			if (getFieldLength(RNEXT) == 1 && line.charAt(fieldStarts[RNEXT]) == '=') {
+				mateRefName = getRefName();
+			} else {
+				mateRefName = getField(RNEXT);
+			}
+		}
+		return mateRefName;
+	}
+
+	public int getMatePos() {
+		if (!isDecoded(PNEXT)) {
+			matePos = parseIntField(PNEXT);
+		}
+		return matePos;
+	}
+
+	public int getTlen() {
+		if (!isDecoded(TLEN)) {
+			tlen = parseIntField(TLEN);
+		}
+		return tlen;
+	}
+
+	public String getSeq() {
+		if (seq == null) {
+			seq = getField(SEQ);
+		}
+		return seq;
+	}
+
+	public int getSeqLength() {
+		return getFieldLength(SEQ);
+	}
+
+	public String getQual() {
+		if (qual == null) {
+			qual = getField(QUAL);
+		}
+		return qual;
+	}
+
+	/**
+	 * Check if all given flags are set
+	 * @param flags
+	 * @return
+	 */
+	public boolean hasFlags(int flags) {
+		return (getFlag() & flags) == flags;
+	}
+
+	/**
+	 * Get the optional field with the tag, e.g. 'XA:Z:chr14,+72141313,80M20S,5;'; the last one if repeated
+	 * @param tag - two characters tag
+	 * @return the whole field or null if there is no such field
+	 */
+	public String getTagField(String tag) {
+		for (int field = numOfFields - 1; field >= MANDATORY_FIELDS; field--) {
+			if (line.startsWith(tag, fieldStarts[field]) && getFieldLength(field) > tag.length() && line.charAt(fieldStarts[field] + tag.length()) == ':') {
+				return getField(field);
+			}
+		}
+		return null;
+	}
+
+	public int getNumOfFields() {
+		return numOfFields;
+	}
+
+	/**
+	 * Get the read in SAM format
+	 */
+	@Override
+	public String toString() {
+		return line;
+	}
+}
@@ -0,0 +1,17 @@
+package com.yg.bam;
+
+/**
+ * Receives reads of a query one by one, as soon as they are read from the BAM file;
+ * A handler must not query the same BAM file while it receives reads
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public interface SamRecordHandler {
+
+	/**
+	 * Process a single read
+	 * @param samLine - read in SAM format
+	 */
+	public void onRecord(String samLine);
+}
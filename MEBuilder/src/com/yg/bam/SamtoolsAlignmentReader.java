@@ -0,0 +1,129 @@
+package com.yg.bam;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.yg.exceptions.InputParametersException;
+import com.yg.io_handlers.IOParameters;
+import com.yg.utilities.ProcessStream;
+
+/**
+ * Access to reads of BAM files by running 'samtools view';
+ * Reads are passed on as soon as samtools prints them, the pipe blocks samtools while reads are processed
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class SamtoolsAlignmentReader implements AlignmentReader {
+
+	@Override
+	public List<String> query(String bamFile, String chromosome, long start, long end, int requiredFlags, int excludedFlags) throws IOException, InputParametersException, InterruptedException {
+		SamLinesCollector collector = new SamLinesCollector();
+		query(bamFile, chromosome, start, end, requiredFlags, excludedFlags, collector);
+		return collector.getSamLines();
+	}
+
+	@Override
+	public List<String> query(String bamFile, List<GenomicRegion> regions, int requiredFlags, int excludedFlags) throws IOException, InputParametersException, InterruptedException {
+		SamLinesCollector collector = new SamLinesCollector();
+		query(bamFile, regions, requiredFlags, excludedFlags, collector);
+		return collector.getSamLines();
+	}
+
+	@Override
+	public void query(String bamFile, String chromosome, long start, long end, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException, InterruptedException {
+		List<String> regions = new ArrayList<String>();
+		regions.add(chromosome + ":" + start + "-" + end);
+		runSamtoolsView(bamFile, regions, requiredFlags, excludedFlags, handler);
+	}
+
+	@Override
+	public void query(String bamFile, List<GenomicRegion> regions, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException, InterruptedException {
+		if (regions.isEmpty()) {
+			return;
+		}
+		List<String> regionStrings = new ArrayList<String>();
+		for (GenomicRegion region : regions) {
+			regionStrings.add(region.toString());
+		}
+		runSamtoolsView(bamFile, regionStrings, requiredFlags, excludedFlags, handler);
+	}
+
+	@Override
+	public void scan(String bamFile, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException, InterruptedException {
+		runSamtoolsView(bamFile, new ArrayList<String>(), requiredFlags, excludedFlags, handler);
+	}
+
+	/**
+	 * Run 'samtools view' for the list of regions (the whole file if the list is empty) and pass its output to the handler line by line
+	 * @param bamFile
+	 * @param regions - regions in 'chr:start-end' format
+	 * @param requiredFlags
+	 * @param excludedFlags
+	 * @param handler
+	 * @throws IOException
+	 * @throws InputParametersException
+	 * @throws InterruptedException
+	 */
+	private void runSamtoolsView(String bamFile, List<String> regions, int requiredFlags, int excludedFlags, SamRecordHandler handler) throws IOException, InputParametersException, InterruptedException {
+		// Commands for running SAM tools
+		List<String> command = new ArrayList<String>();
+		command.add(IOParameters.SAMTOOLS_PATH  + "samtools");
+		command.add("view");
+		if (requiredFlags != 0) {
+			command.add("-f");
+			command.add(String.valueOf(requiredFlags));
+		}
+		if (excludedFlags != 0) {
+			command.add("-F");
+			command.add(String.valueOf(excludedFlags));
+		}
+		command.add(bamFile);
+		command.addAll(regions);
+
+		ProcessBuilder processBuilder = new ProcessBuilder(command);
+		Process process = processBuilder.start();
+
+		// Collect error messages
+		ProcessStream errStream = new ProcessStream(process.getErrorStream(), "ERROR");
+		errStream.start();
+
+		// Process SAM tools output as it arrives
+		BufferedReader outReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		boolean completed = false;
+		try {
+			String samLine;
+			while ((samLine = outReader.readLine()) != null) {
+				if (samLine.isEmpty()) {
+					continue;
+				}
+				handler.onRecord(samLine);
+			}
+			completed = true;
+		} finally {
+			outReader.close();
+			// Stop SAM tools if the output was not read to the end, e.g. the handler failed
+			if (!completed) {
+				process.destroy();
+			}
+		}
+
+		process.waitFor();
+		errStream.join(); // make sure the whole error output is read
+
+		// Catch error
+		if (process.exitValue() != 0) {
+			throw new InputParametersException("SAM TOOLS ERROR:\n" + errStream.getOutput());
+		} else {
+			errStream.cleanBuffer();
+		}
+	}
+
+	@Override
+	public void close() {
+		// nothing to release - a new process is started for every query
+	}
+}
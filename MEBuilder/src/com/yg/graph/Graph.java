@@ -1,11 +1,15 @@
 package com.yg.graph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * This class represents a graph structure, 
- * and gets all paths between any two nodes
+ * and gets the best paths between any two nodes, ranked by weights of their edges (Yen's k shortest paths)
  * 
  * @author Yaroslava Girilishena
  *
@@ -16,6 +20,7 @@ public class Graph {
     private List<Edge> edges; // list of edges
     
     public List<List<Integer>> adj = new ArrayList<List<Integer>>(); // list of adjacent vertices for each vertex
+    public List<List<Integer>> weights = new ArrayList<List<Integer>>(); // weights of edges to adjacent vertices
     public List<List<Vertex>> paths = new ArrayList<List<Vertex>>(); // built paths between specified nodes
     
     
@@ -53,6 +58,7 @@ public class Graph {
     	// Init list of adjacent vertices
     	for (int i=0; i < this.vertices.size(); i++) {
     		adj.add(new ArrayList<Integer>());
+    		weights.add(new ArrayList<Integer>());
     	}
     }
     
@@ -86,9 +92,21 @@ public class Graph {
      * @param v - to vertex
      */
     public void addNewEdge(int u, int v) { 
+    	addNewEdge(u, v, 1);
+    }
+    
+    /**
+     * Add an edge with a weight
+     * @param u - from vertex
+     * @param v - to vertex
+     * @param weight - positive weight, e.g. overlap length; edges of larger weights are preferred in paths
+     */
+    public void addNewEdge(int u, int v, int weight) { 
     	// Add adjacent vertex v to list of adjacent vertices of u
     	adj.get(u).add(v);
     	adj.get(v).add(u);
+    	weights.get(u).add(Math.max(1, weight));
+    	weights.get(v).add(Math.max(1, weight));
     }
     
     /**
@@ -100,56 +118,182 @@ public class Graph {
     }
     
     /**
-     * Get all possible paths between a source and a destination
+     * Get the best paths between a source and a destination, best first (Yen's k shortest paths):
+     * the cost of an edge is 1 plus the inverse of its weight, so paths of fewer edges go first (for weights above the number of edges,
+     * as overlap lengths are) and paths of the same number of edges are ranked by their weights, the largest first
      * @param s - index of source vertex
      * @param d - index of destination vertex
+     * @param k - max number of paths
+     * @param timeLimit - time budget in ms, the search stops after it with paths found so far
      * @return list of paths
      */
-    public List<List<Vertex>> getAllPaths(int s, int d) {
-        // Mark all the vertices as not visited
-    	boolean[] visited = new boolean[d+1];
-    	for (int i=0; i<d+1; i++) {
-    		visited[i] = false;
-    	}
+    public List<List<Vertex>> getBestPaths(int s, int d, int k, long timeLimit) {
+    	long deadline = System.currentTimeMillis() + timeLimit;
+    	paths = new ArrayList<List<Vertex>>();
     	
-    	// Create a list to store paths
-    	List<Vertex> newPath = new ArrayList<Vertex>();
-    	for (int i=0; i<this.vertices.size(); i++) {
-    		newPath.add(null);
+    	List<Path> found = new ArrayList<Path>();
+    	PriorityQueue<Path> candidates = new PriorityQueue<Path>();
+    	Set<List<Integer>> seen = new HashSet<List<Integer>>();
+    	
+    	Path shortest = getShortestPath(s, d, new boolean[vertices.size()], new HashSet<Long>());
+    	if (shortest != null) {
+    		candidates.add(shortest);
+    		seen.add(shortest.vertices);
     	}
-    	int pathIndex = 0; // init path as empty
     	
-    	// Call the recursive helper function to store all paths
-    	getAllPathsUtil(s, d, visited, newPath, pathIndex);
+    	while (found.size() < k && !candidates.isEmpty()) {
+    		Path path = candidates.poll();
+    		found.add(path);
+    		if (found.size() == k || System.currentTimeMillis() > deadline) {
+    			break;
+    		}
+    		
+    		// Deviate from the path at each of its vertices
+    		for (int i=0; i < path.vertices.size() - 1 && System.currentTimeMillis() <= deadline; i++) {
+    			int spur = path.vertices.get(i);
+    			List<Integer> root = path.vertices.subList(0, i + 1);
+    			
+    			// Remove edges of found paths with the same root and vertices of the root
+    			Set<Long> removedEdges = new HashSet<Long>();
+    			for (Path other : found) {
+    				if (other.vertices.size() > i + 1 && other.vertices.subList(0, i + 1).equals(root)) {
+    					removedEdges.add(edgeKey(other.vertices.get(i), other.vertices.get(i + 1)));
+    				}
+    			}
+    			boolean[] removedVertices = new boolean[vertices.size()];
+    			for (int j=0; j < i; j++) {
+    				removedVertices[root.get(j)] = true;
+    			}
+    			
+    			Path spurPath = getShortestPath(spur, d, removedVertices, removedEdges);
+    			if (spurPath == null) {
+    				continue;
+    			}
+    			List<Integer> candidate = new ArrayList<Integer>(root);
+    			candidate.addAll(spurPath.vertices.subList(1, spurPath.vertices.size()));
+    			if (seen.add(candidate)) {
+    				candidates.add(new Path(candidate, getCost(candidate)));
+    			}
+    		}
+    	}
     	
+    	for (Path path : found) {
+    		List<Vertex> vertexPath = new ArrayList<Vertex>();
+    		for (int v : path.vertices) {
+    			vertexPath.add(vertices.get(v));
+    		}
+    		paths.add(vertexPath);
+    	}
     	return paths;
     }
     
-    public void getAllPathsUtil(int u, int d, boolean visited[], List<Vertex> path, int pathIndex) {
-    	// Mark the current node and store it in a path
-    	visited[u] = true;
-    	path.set(pathIndex, vertices.get(u));
-    	pathIndex++;
+    /**
+     * Path between two vertices with its cost, ordered by cost, then by vertices
+     */
+    private static class Path implements Comparable<Path> {
+    	List<Integer> vertices;
+    	double cost;
     	
-    	// If current vertex is same as destination, then store current path
-    	if (u == d) {
-    		if (path.indexOf(null) != -1) {
-    			paths.add(new ArrayList<Vertex>(path.subList(0, path.indexOf(null))));
-    		} else {
-    			paths.add(new ArrayList<Vertex>(path.subList(0, path.size())));
+    	Path(List<Integer> vertices, double cost) {
+    		this.vertices = vertices;
+    		this.cost = cost;
+    	}
+    	
+    	@Override
+    	public int compareTo(Path other) {
+    		if (cost != other.cost) {
+    			return Double.compare(cost, other.cost);
+    		}
+    		if (vertices.size() != other.vertices.size()) {
+    			return Integer.compare(vertices.size(), other.vertices.size());
+    		}
+    		for (int i=0; i < vertices.size(); i++) {
+    			if (!vertices.get(i).equals(other.vertices.get(i))) {
+    				return Integer.compare(vertices.get(i), other.vertices.get(i));
+    			}
     		}
-    	} else { // If current vertex is not a destination
-    		// Recur for all the vertices adjacent to the current vertex
+    		return 0;
+    	}
+    }
+    
+    /**
+     * Dijkstra's shortest path avoiding removed vertices and edges
+     * @return null if there is no path
+     */
+    private Path getShortestPath(int s, int d, boolean[] removedVertices, Set<Long> removedEdges) {
+    	int n = vertices.size();
+    	double[] dist = new double[n];
+    	int[] prev = new int[n];
+    	boolean[] done = new boolean[n];
+    	Arrays.fill(dist, Double.POSITIVE_INFINITY);
+    	Arrays.fill(prev, -1);
+    	dist[s] = 0;
+    	
+    	for (int step=0; step < n; step++) {
+    		// The closest vertex not done yet, the lowest index on ties
+    		int u = -1;
+    		for (int v=0; v < n; v++) {
+    			if (!done[v] && !removedVertices[v] && dist[v] < Double.POSITIVE_INFINITY && (u == -1 || dist[v] < dist[u])) {
+    				u = v;
+    			}
+    		}
+    		if (u == -1 || u == d) {
+    			break;
+    		}
+    		done[u] = true;
     		for (int i=0; i < adj.get(u).size(); i++) {
-    	    	if (visited[adj.get(u).get(i)] == false) {
-    				getAllPathsUtil(adj.get(u).get(i), d, visited, path, pathIndex);
+    			int v = adj.get(u).get(i);
+    			if (done[v] || removedVertices[v] || removedEdges.contains(edgeKey(u, v))) {
+    				continue;
+    			}
+    			double cost = dist[u] + getEdgeCost(weights.get(u).get(i));
+    			if (cost < dist[v]) {
+    				dist[v] = cost;
+    				prev[v] = u;
     			}
     		}
     	}
+    	if (dist[d] == Double.POSITIVE_INFINITY) {
+    		return null;
+    	}
     	
-    	// Remove current vertex from the path and mark it as unvisited
-    	pathIndex--;
-    	path.set(pathIndex, null);
-    	visited[u] = false;
+    	List<Integer> path = new ArrayList<Integer>();
+    	for (int v = d; v != -1; v = prev[v]) {
+    		path.add(0, v);
+    	}
+    	return new Path(path, getCost(path));
+    }
+    
+    /**
+     * Get the cost of a path - the sum of costs of its edges
+     */
+    private double getCost(List<Integer> path) {
+    	double cost = 0;
+    	for (int i=0; i < path.size() - 1; i++) {
+    		int u = path.get(i);
+    		int v = path.get(i + 1);
+    		double best = Double.POSITIVE_INFINITY;
+    		for (int j=0; j < adj.get(u).size(); j++) {
+    			if (adj.get(u).get(j) == v) {
+    				best = Math.min(best, getEdgeCost(weights.get(u).get(j)));
+    			}
+    		}
+    		cost += best;
+    	}
+    	return cost;
+    }
+    
+    /**
+     * Get the cost of an edge - a penalty of 1 per edge plus the inverse of its weight (less than 1)
+     */
+    private static double getEdgeCost(int weight) {
+    	return 1.0 + 1.0 / weight;
+    }
+    
+    /**
+     * Key of an undirected edge
+     */
+    private static long edgeKey(int u, int v) {
+    	return ((long) Math.min(u, v) << 32) | Math.max(u, v);
     }
 }
@@ -0,0 +1,684 @@
+package com.yg.io_handlers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+
+import com.yg.bam.AlignmentReader;
+import com.yg.bam.GenomicRegion;
+import com.yg.bam.SamRecord;
+import com.yg.bam.SamRecordHandler;
+import com.yg.exceptions.InputParametersException;
+import com.yg.io_handlers.LocusPlanner.LocusCluster;
+import com.yg.utilities.PatternSplitter;
+import com.yg.utilities.ReadNameSet;
+
+/**
+ * Collects discordant reads and split-reads of clusters of loci from a single .bam file;
+ * Reads of each cluster are queried once, or the whole file is read sequentially in the scan mode,
+ * and split between flanking regions of the loci;
+ * Keeps all its state, so that several .bam files can be processed concurrently
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BAMReadsCollector implements Callable<BAMReadsCollector> {
+
+	static final int DISC_EXCLUDED_FLAGS = AlignmentReader.FLAG_UNMAPPED | AlignmentReader.FLAG_MATE_UNMAPPED | AlignmentReader.FLAG_SECONDARY | AlignmentReader.FLAG_DUPLICATE;
+	private static final long MATE_REGIONS_MAX_GAP = 1000; // mates positions closer than this are read with one region
+	private static final long MAX_ANCHOR_SPAN = 1000; // reads in the scan are kept as possible mates if their mate starts closer than this to a flanking region
+
+	private String bamfile;
+	private String sample; // name of the .bam file without extension
+	private List<LocusCluster> clusters; // loci to collect reads for
+	private boolean scan; // read the whole file sequentially instead of querying regions of clusters
+	private AlignmentReader alignmentReader; // reads of BAM files by region
+
+	private QualityFilter qualityFilter = new QualityFilter(); // stats of base qualities of reads
+
+	private List<LocusReads> loci = new ArrayList<LocusReads>(); // reads of each locus of all clusters
+	private LocusIndex locusIndex; // flanking regions of loci
+	private List<LocusReads> overlappingLoci = new ArrayList<LocusReads>(); // loci of the read being processed
+	private List<SamRecord> anchorReads = new ArrayList<SamRecord>(); // anchoring reads of all loci in the order they are read
+	private Set<String> anchorKeys = new HashSet<String>(); // read names and mates positions of anchoring reads
+	private Map<String, List<String>> mates = new HashMap<String, List<String>>(); // reads at mates positions by read name and position
+
+	// Scan mode: reads that can be mates of anchoring reads not read yet
+	private String scanChromosome; // chromosome being read
+	private Set<String> scannedChromosomes = new HashSet<String>(); // chromosomes read completely
+	private Map<String, PriorityQueue<MateCandidate>> mateCandidates = new HashMap<String, PriorityQueue<MateCandidate>>(); // by chromosome of their mates
+
+	private SamRecord data = new SamRecord(); // first read data
+	private SamRecord dataOther = new SamRecord(); // second read data
+
+	// Stats of the read pair being processed
+	private int leftNumOfSplitReads = 0; // number of split-reads on the left side of insertion
+	private int rightNumOfSplitReads = 0; // number of split-reads on the right side of insertion
+	private int numOfDiscReads = 0; // number of discordant reads that cover insertion
+	private int readLengthLeftRegion = 0; // length of qualified reads in the left region
+	private int readLengthRightRegion = 0; // length of qualified reads in the right region
+
+	/**
+	 * Contribution of a single read pair to the collected reads
+	 */
+	public static class ReadPair {
+		public String readID;
+		public int leftNumOfSplitReads;
+		public int rightNumOfSplitReads;
+		public int numOfDiscReads;
+		public int readLengthLeftRegion;
+		public int readLengthRightRegion;
+		public int qualifiedPair = -1; // index of the ID, seq, quality, and read1/2 info in the locus buffer; -1 if the pair is not qualified
+	}
+
+	/**
+	 * Read of the scan that can be a mate of an anchoring read further in the file
+	 */
+	private static class MateCandidate implements Comparable<MateCandidate> {
+		private String key; // read name and position
+		private String samLine;
+		private long matePos;
+
+		public MateCandidate(String key, String samLine, long matePos) {
+			this.key = key;
+			this.samLine = samLine;
+			this.matePos = matePos;
+		}
+
+		@Override
+		public int compareTo(MateCandidate other) {
+			return Long.compare(matePos, other.matePos);
+		}
+	}
+
+	/**
+	 * Reads collected for a single locus
+	 */
+	public static class LocusReads {
+		private String chromosome;
+		private long position;
+		private long start; // start of flanking region
+		private long end; // end of flanking region
+
+		private int raw = 0; // number of raw reads
+		private ReadNameSet seenID = new ReadNameSet(true); // processed reads IDs
+		private List<SamRecord> anchors = new ArrayList<SamRecord>(); // anchoring reads that passed filters
+		private List<ReadPair> pairs = new ArrayList<ReadPair>(); // read pairs that qualified or changed stats
+		private ReadPairBuffer qualifiedPairs = new ReadPairBuffer(); // data of qualified read pairs
+
+		public LocusReads(String chromosome, long position) {
+			this.chromosome = chromosome;
+			this.position = position;
+			this.start = position - IOParameters.FLANKING_REGION;
+			this.end = position + IOParameters.FLANKING_REGION;
+		}
+
+		/**
+		 * Getters
+		 */
+		public String getChromosome() {
+			return chromosome;
+		}
+
+		public long getPosition() {
+			return position;
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public long getEnd() {
+			return end;
+		}
+
+		public int getNumOfReads() {
+			return raw;
+		}
+
+		public ReadNameSet getSeenReads() {
+			return seenID;
+		}
+
+		public List<ReadPair> getPairs() {
+			return pairs;
+		}
+
+		public ReadPairBuffer getQualifiedPairs() {
+			return qualifiedPairs;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param bamfile
+	 * @param clusters
+	 * @param scan - read the whole file sequentially
+	 * @param alignmentReader
+	 */
+	public BAMReadsCollector(String bamfile, List<LocusCluster> clusters, boolean scan, AlignmentReader alignmentReader) {
+		this.bamfile = bamfile;
+		this.sample = getSampleName(bamfile);
+		this.clusters = clusters;
+		this.scan = scan;
+		this.alignmentReader = alignmentReader;
+
+		Map<String, List<LocusReads>> lociByChromosome = new HashMap<String, List<LocusReads>>();
+		for (LocusCluster cluster : clusters) {
+			if (!lociByChromosome.containsKey(cluster.getChromosome())) {
+				lociByChromosome.put(cluster.getChromosome(), new ArrayList<LocusReads>());
+			}
+			for (Long position : cluster.getPositions()) {
+				LocusReads locus = new LocusReads(cluster.getChromosome(), position);
+				loci.add(locus);
+				lociByChromosome.get(cluster.getChromosome()).add(locus);
+			}
+		}
+		this.locusIndex = new LocusIndex(lociByChromosome);
+	}
+
+	/**
+	 * Collect discordant reads and split-reads within flanking regions of the loci in the .bam file
+	 * @return this collector with results
+	 * @throws IOException
+	 * @throws InputParametersException
+	 * @throws InterruptedException
+	 */
+	@Override
+	public BAMReadsCollector call() throws IOException, InputParametersException, InterruptedException {
+		// ---------------------------------------------------------------
+		// READ BAM FILE
+		// ---------------------------------------------------------------
+
+		// Collect discordant & split-reads reads:
+		// read paired (include only); unmapped read 1, unmapped read 2, non-primary matches, duplicates (exclude)
+		// proper pairs are not excluded in order to collect split-reads (which are on a normal distance)
+		if (scan) {
+			// Read the whole file once; keep reads that can be mates of anchoring reads on the way
+			alignmentReader.scan(bamfile, AlignmentReader.FLAG_PAIRED, DISC_EXCLUDED_FLAGS, new SamRecordHandler() {
+				@Override
+				public void onRecord(String samLine) {
+					demultiplexRead(samLine);
+					collectMateCandidate(samLine);
+				}
+			});
+			for (String chromosome : mateCandidates.keySet()) {
+				resolveMateCandidates(chromosome, Long.MAX_VALUE);
+			}
+			mateCandidates.clear();
+		} else {
+			for (LocusCluster cluster : clusters) {
+				alignmentReader.query(bamfile, cluster.getChromosome(), cluster.getStart(), cluster.getEnd(), AlignmentReader.FLAG_PAIRED, DISC_EXCLUDED_FLAGS, new SamRecordHandler() {
+					@Override
+					public void onRecord(String samLine) {
+						demultiplexRead(samLine);
+					}
+				});
+			}
+		}
+
+		if (anchorReads.isEmpty()) {
+			return this;
+		}
+
+		// ---------------------------------------------------------------
+		// RETRIEVE MATES
+		// ---------------------------------------------------------------
+
+		// Positions of mates that were not found yet by read name
+		final Set<String> mateKeys = new HashSet<String>();
+		List<GenomicRegion> mateRegions = new ArrayList<GenomicRegion>();
+		for (SamRecord anchor : anchorReads) {
+			String key = anchor.getReadName() + "\t" + anchor.getMatePos();
+			if (!mates.containsKey(key)) {
+				mateKeys.add(key);
+				mateRegions.add(new GenomicRegion(anchor.getMateRefName(), anchor.getMatePos(), anchor.getMatePos()));
+			}
+		}
+
+		// Retrieve the other reads from the BAM file with a single query over merged mates positions of all loci;
+		// keep only mates of anchoring reads, indexed by read name and position
+		if (!mateRegions.isEmpty()) {
+			alignmentReader.query(bamfile, GenomicRegion.mergeRegions(mateRegions, MATE_REGIONS_MAX_GAP), AlignmentReader.FLAG_PAIRED, DISC_EXCLUDED_FLAGS, new SamRecordHandler() {
+				@Override
+				public void onRecord(String otherReadLine) {
+					String key = getMateKey(otherReadLine);
+					if (!mateKeys.contains(key)) {
+						return;
+					}
+					if (!mates.containsKey(key)) {
+						mates.put(key, new ArrayList<String>());
+					}
+					if (!mates.get(key).contains(otherReadLine)) { // a read that overlaps several regions is reported several times
+						mates.get(key).add(otherReadLine);
+					}
+				}
+			});
+		}
+
+		for (LocusReads locus : loci) {
+			for (SamRecord anchor : locus.anchors) {
+				// Reset stats of the pair
+				leftNumOfSplitReads = 0;
+				rightNumOfSplitReads = 0;
+				numOfDiscReads = 0;
+				readLengthLeftRegion = 0;
+				readLengthRightRegion = 0;
+
+				int qualifiedPair = processPair(locus, anchor, mates);
+
+				if (qualifiedPair >= 0 || leftNumOfSplitReads + rightNumOfSplitReads + numOfDiscReads > 0) {
+					ReadPair pair = new ReadPair();
+					pair.readID = anchor.getReadName();
+					pair.leftNumOfSplitReads = leftNumOfSplitReads;
+					pair.rightNumOfSplitReads = rightNumOfSplitReads;
+					pair.numOfDiscReads = numOfDiscReads;
+					pair.readLengthLeftRegion = readLengthLeftRegion;
+					pair.readLengthRightRegion = readLengthRightRegion;
+					pair.qualifiedPair = qualifiedPair;
+					locus.pairs.add(pair);
+				}
+			}
+			locus.anchors.clear();
+		}
+		anchorReads.clear();
+		anchorKeys.clear();
+		mates.clear();
+
+		return this;
+	}
+
+	/**
+	 * Pass the read to every locus whose flanking region it overlaps
+	 * @param samLine
+	 */
+	private void demultiplexRead(String samLine) {
+		// Get data for each read - SAM line for reads in the flanking region of predicted MEI
+		data.wrap(samLine);
+
+		// Reference span of the read, as used by the region query
+		long readStart = data.getPos();
+		long readEnd = readStart + Math.max(1, data.getCigar().getAlignedLength()) - 1;
+
+		overlappingLoci.clear();
+		locusIndex.findOverlapping(data.getRefName(), readStart, readEnd, overlappingLoci);
+
+		SamRecord anchor = null;
+		Boolean qualified = null; // result of filters of the read, the same for all loci
+		for (LocusReads locus : overlappingLoci) {
+			if (!collectRead(locus)) {
+				continue;
+			}
+			if (qualified == null) {
+				qualified = isAnchorQualified();
+			}
+			if (!qualified) {
+				continue;
+			}
+
+			// Keep the anchoring read and the position of its mate (second read mapped to the same chromosome is resolved by the record)
+			if (anchor == null) {
+				anchor = data.copy();
+				anchorReads.add(anchor);
+				anchorKeys.add(anchor.getReadName() + "\t" + anchor.getMatePos());
+			}
+			locus.anchors.add(anchor);
+		}
+	}
+
+	/**
+	 * Keep the read of the scan if it can be a mate of an anchoring read, i.e. its mate starts close to a flanking region;
+	 * It is matched with anchoring reads as soon as all reads at its mate position are read
+	 * @param samLine
+	 */
+	private void collectMateCandidate(String samLine) {
+		String chromosome = data.getRefName();
+		if (!chromosome.equals(scanChromosome)) {
+			// All reads of the previous chromosome are read
+			if (scanChromosome != null) {
+				resolveMateCandidates(scanChromosome, Long.MAX_VALUE);
+				scannedChromosomes.add(scanChromosome);
+			}
+			scanChromosome = chromosome;
+		}
+		// Reads are sorted - all anchoring reads before this position are read
+		resolveMateCandidates(chromosome, data.getPos());
+
+		String mateChromosome = data.getMateRefName();
+		long matePos = data.getMatePos();
+		if (!locusIndex.overlaps(mateChromosome, matePos, matePos + MAX_ANCHOR_SPAN - 1)) {
+			return;
+		}
+
+		MateCandidate candidate = new MateCandidate(data.getReadName() + "\t" + data.getPos(), samLine, matePos);
+		if (scannedChromosomes.contains(mateChromosome) || (mateChromosome.equals(chromosome) && matePos < data.getPos())) {
+			resolveMateCandidate(candidate);
+		} else {
+			if (!mateCandidates.containsKey(mateChromosome)) {
+				mateCandidates.put(mateChromosome, new PriorityQueue<MateCandidate>());
+			}
+			mateCandidates.get(mateChromosome).add(candidate);
+		}
+	}
+
+	/**
+	 * Match candidates with mates on the chromosome before the position with anchoring reads
+	 * @param chromosome
+	 * @param position
+	 */
+	private void resolveMateCandidates(String chromosome, long position) {
+		PriorityQueue<MateCandidate> candidates = mateCandidates.get(chromosome);
+		while (candidates != null && !candidates.isEmpty() && candidates.peek().matePos < position) {
+			resolveMateCandidate(candidates.poll());
+		}
+	}
+
+	/**
+	 * Keep the candidate as a mate if there is an anchoring read with its name at its position
+	 * @param candidate
+	 */
+	private void resolveMateCandidate(MateCandidate candidate) {
+		if (!anchorKeys.contains(candidate.key)) {
+			return;
+		}
+		if (!mates.containsKey(candidate.key)) {
+			mates.put(candidate.key, new ArrayList<String>());
+		}
+		mates.get(candidate.key).add(candidate.samLine);
+	}
+
+	/**
+	 * Count the read in the locus and check if it was seen in the locus before
+	 * @param locus
+	 * @return true if the read should be checked as an anchoring read of the locus
+	 */
+	private boolean collectRead(LocusReads locus) {
+		// Example (consider in 1 line): SRR799394.13611051	65	chr1	10014390	60	90M11S	chr9	104466719	0	CCCAAGTAGCAGGGACTACAGGTGCATGACACCATGCCCAGCTAACTTCTTCTATTTTTTGTAGAGATGATGTCTCACCATGTTGCCCAGCATGGCAAAAG
+		// @@?DFFDFDFFHHJJJJJJJGCABFFDHIIGGIIIJJJJIIIIIJGJJJJJJIHIGIEHIEHJIJJHHHGHHECEDBDDCEEADEEDCCA?CDDBBCCBDC	MD:Z:90	PG:Z:MarkDuplicates.S	NM:i:0	AS:i:90	XS:i:39
+
+		locus.raw++; // count the number of reads
+
+		// Exclude random chromosome
+		if (IOParameters.EXCLUDE_RANDOM && !PatternSplitter.CHROMOSOME_VALID.matcher(data.getField(SamRecord.RNEXT)).find()) {
+			return false;
+		}
+
+		// Check for repeated reads; save read ID
+		return locus.seenID.add(data.toString(), 0, data.getFieldLength(SamRecord.QNAME));
+	}
+
+	/**
+	 * Apply filters to the read to use it as an anchoring read
+	 * @return
+	 */
+	private boolean isAnchorQualified() {
+		// Skip poor sequences
+		if (data.getSeqLength() < IOParameters.MIN_READ_LENGTH || PatternSplitter.POOR_SEQUENCE_N.matcher(data.getSeq()).find()) {
+			//LOGGER.info("SKIPPED - first read bad base quality");
+			return false;
+		}
+
+		// Check quality if requested
+		if (IOParameters.CHECK_QUAL) {
+			int qualStart = data.getFieldStart(SamRecord.QUAL);
+			// Filter using quality matrix
+			if (!qualityFilter.check(data.toString(), qualStart, qualStart + data.getFieldLength(SamRecord.QUAL))) {
+				//LOGGER.info("SKIPPED - first read bad quality");
+				return false;
+			}
+		}
+
+		if (!data.getCigar().isSoftClippedAtEnd() && !data.getCigar().isSoftClippedAtStart()) {
+			// If 'XA' flag doesn't exist or number of alternative alignments < 2 && 'XS' doesn't exist or suboptimal alignments < 5 - skip read pair
+			if (!hasAlternativeAlignments(data)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Find the mate of the anchoring read, apply filters to the pair and update stats of the pair
+	 * @param locus - locus of the anchoring read
+	 * @param data - the anchoring read
+	 * @param mates - reads at mates positions by read name and position
+	 * @return index of the qualified pair in the locus buffer or -1
+	 */
+	private int processPair(LocusReads locus, SamRecord data, Map<String, List<String>> mates) {
+		long position = locus.getPosition();
+		long start = locus.getStart();
+		long end = locus.getEnd();
+
+		// Get the read with the same sequence ID at the mate position (not the anchoring read itself)
+		String samLine = data.toString();
+		String samLine2 = null;
+		List<String> mateLines = mates.get(data.getReadName() + "\t" + data.getMatePos());
+		if (mateLines != null) {
+			for (String otherReadLine : mateLines) {
+				if (!otherReadLine.equals(samLine)) {
+					samLine2 = otherReadLine;
+					break;
+				}
+			}
+		}
+
+		// No second read found
+		if (samLine2 == null) {
+			return -1;
+		}
+		dataOther.wrap(samLine2);
+
+		// Skip poor sequences
+		if (dataOther.getSeqLength() < IOParameters.MIN_READ_LENGTH || PatternSplitter.POOR_SEQUENCE_N.matcher(dataOther.getSeq()).find()) {
+			return -1;
+		}
+
+		// Check quality if requested
+		if (IOParameters.CHECK_QUAL) {
+			int qualStart = dataOther.getFieldStart(SamRecord.QUAL);
+			// Filter using quality matrix
+			if (!qualityFilter.check(dataOther.toString(), qualStart, qualStart + dataOther.getFieldLength(SamRecord.QUAL))) {
+				return -1;
+			}
+		}
+
+		// Filter out reads that are not part of MEI (for non-anchoring)
+		// Example of alternative alignments: XA:Z:chr14,+72141313,80M20S,5;chr10,-65036133,20S80M,7;chr2,-208658288,38S58M4S,2;chr11,+73350796,47M53S,1;
+		// Example of suboptimal alignments: XS:i:59
+
+		if (!dataOther.getCigar().isSoftClippedAtEnd() && !dataOther.getCigar().isSoftClippedAtStart()) {
+			// If 'XA' flag doesn't exist or number of alternative alignments < 2 && 'XS' doesn't exist or suboptimal alignments < 5 - skip read pair
+			if (!hasAlternativeAlignments(dataOther)) {
+				return -1;
+			}
+		}
+
+
+		// ---------------------------------------------
+		// FULLY CONCORDANT - FILTER OUT
+		// ---------------------------------------------
+
+		// Filter out fully concordant reads
+		if ((data.getFlag() & 2) > 0) { // read mapped in proper pair
+			// Positions of the cases exclude each other, so soft clipping is checked once per pair, after the positions
+			// the entire pair is before the insertion
+			if (data.getPos() + data.getSeqLength() <= position && dataOther.getPos() + dataOther.getSeqLength() <= position &&
+					!data.getCigar().hasSoftClip() && !dataOther.getCigar().hasSoftClip()) {
+				return -1;
+			}
+			// the entire pair is after the insertion
+			if (data.getPos() > position && dataOther.getPos() > position &&
+					!data.getCigar().hasSoftClip() && !dataOther.getCigar().hasSoftClip()) {
+				return -1;
+			}
+
+			// pair reads flanking the insertion site with no soft clipping
+			// for allowing insertion aneil for shorter insertion > 200
+			if (data.getPos() < position && dataOther.getPos() > position &&
+					data.getTlen() >= 200 && !data.getCigar().hasSoftClip() && !dataOther.getCigar().hasSoftClip()) {
+				return -1;
+			}
+			if (data.getPos() > position && dataOther.getPos() < position &&
+					data.getTlen() <= -200 && !data.getCigar().hasSoftClip() && !dataOther.getCigar().hasSoftClip()) {
+				return -1;
+			}
+		}
+
+		if (IOParameters.FILTERS_APPLY) {
+			// Apply split-read and discordant rules in order; a rule that applies but fails its checks filters out the whole pair
+			boolean qualifiedPair = false;
+			for (ReadPairRule rule : ReadPairRule.RULES) {
+				if (!rule.applies(data, dataOther, position, start, end)) {
+					continue;
+				}
+				if (!rule.qualifies(data, dataOther, position)) {
+					return -1;
+				}
+				leftNumOfSplitReads += rule.getLeftNumOfSplitReads();
+				rightNumOfSplitReads += rule.getRightNumOfSplitReads();
+				numOfDiscReads += rule.getNumOfDiscReads();
+				qualifiedPair = true;
+			}
+
+			if (!qualifiedPair) { return -1; }
+		}
+
+		// Calculate the coverage of each region
+		if (data.getPos() < position ) {
+			readLengthLeftRegion += data.getSeqLength();
+		} else {
+			readLengthRightRegion += data.getSeqLength();
+		}
+
+		char r1, r2;
+		String n1 = ""; String n2 = ""; String S1 = ""; String S2 = ""; String Q1 = ""; String Q2 = "";
+		int N = 0;
+		String bam1 = ""; String bam2 = "";
+
+		String seq1 = data.getSeq();
+		String seq2 = dataOther.getSeq();
+
+		// Orientation of the anchoring read
+		if ((data.getFlag() & 16) > 0) {
+			r1 = '-';
+			seq1 = InputDataHandler.reverseCompDNA(seq1);
+		} else {
+			r1 = '+';
+		}
+		// Orientation of the MEI read
+		if ((data.getFlag() & 32) > 0) {
+			r2 = '-';
+			seq2 = InputDataHandler.reverseCompDNA(seq2);
+		} else {
+			r2 = '+';
+		}
+
+		// read1 and 2 in a pair
+		if ((data.getFlag() & 64) > 0) {
+			// Read #1 is first in pair
+			n1 = data.getReadName() + "_1 " + data.getRefName() + ":" + data.getPos() + "|" + r1;
+			S1 = seq1;
+			Q1 = data.getQual();
+			bam1 = samLine;
+
+			n2 = data.getReadName() + "_2 " + dataOther.getRefName() + ":" + dataOther.getPos() + "|" + r2;
+			S2 = seq2;
+			Q2 = dataOther.getQual();
+			bam2 = samLine2;
+
+			N = 1;
+		} else if ((data.getFlag() & 128) > 0) {
+			// Read #1 is second in pair
+			n2 = data.getReadName() + "_1 " + data.getRefName() + ":" + data.getPos() + "|" + r1;
+			S2 = seq1;
+			Q2 = data.getQual();
+			bam2 = samLine;
+
+			n1 = data.getReadName() + "_2 " + dataOther.getRefName() + ":" + dataOther.getPos() + "|" + r2;
+			S1 = seq2;
+			Q1 = dataOther.getQual();
+			bam1 = samLine2;
+
+			N = 2;
+		}
+
+		// Record the ID, seq, quality, and read1/2 info for each pair with read1 first
+		return locus.qualifiedPairs.add(n1, S1, Q1, n2, S2, Q2, sample, N, bam1, bam2);
+	}
+
+	/**
+	 * Check if the read has at least 2 alternative alignments ('XA' flag) or a suboptimal alignment score >= 5 ('XS' flag)
+	 * Example of alternative alignments: XA:Z:chr14,+72141313,80M20S,5;chr10,-65036133,20S80M,7;
+	 * Example of suboptimal alignments: XS:i:59
+	 * @param read
+	 * @return
+	 */
+	private static boolean hasAlternativeAlignments(SamRecord read) {
+		String xaField = read.getTagField("XA");
+		if (xaField != null) {
+			// Count alternative alignments separated by ';', ignoring trailing separators
+			int fieldEnd = xaField.length();
+			while (fieldEnd > 0 && xaField.charAt(fieldEnd - 1) == ';') {
+				fieldEnd--;
+			}
+			int numOfAlignments = 1;
+			for (int i = 0; i < fieldEnd; i++) {
+				if (xaField.charAt(i) == ';') {
+					numOfAlignments++;
+				}
+			}
+			if (numOfAlignments >= 2) {
+				return true;
+			}
+		}
+		String xsField = read.getTagField("XS");
+		return xsField != null && Integer.parseInt(xsField.substring(xsField.lastIndexOf(':') + 1)) >= 5;
+	}
+
+	/**
+	 * Get the sample name from the path to .bam file
+	 * @param bamfile
+	 * @return
+	 */
+	public static String getSampleName(String bamfile) {
+		Matcher matcher = PatternSplitter.BAM_SAMPLE_NAME.matcher(bamfile);
+		if (matcher.find()) {
+			return matcher.group(1);
+		}
+		return bamfile;
+	}
+
+	/**
+	 * Get the key of the read to match it with anchoring reads: read name and position
+	 * @param samLine
+	 * @return
+	 */
+	private static String getMateKey(String samLine) {
+		int nameEnd = samLine.indexOf('\t');
+		int posStart = samLine.indexOf('\t', samLine.indexOf('\t', nameEnd + 1) + 1) + 1;
+		int posEnd = samLine.indexOf('\t', posStart);
+		return samLine.substring(0, nameEnd) + "\t" + samLine.substring(posStart, posEnd);
+	}
+
+	/**
+	 * Getters
+	 */
+	public String getBamfile() {
+		return bamfile;
+	}
+
+	public List<LocusCluster> getClusters() {
+		return clusters;
+	}
+
+	public List<LocusReads> getLoci() {
+		return loci;
+	}
+}
@@ -93,6 +93,8 @@ public class IOParameters {
 	public static String REFERENCE_END = ".BED";
 	
 	public static String REF_SEQ_DIR = "/work/lianglab/DB/genomeSeq/hg19/"; //"./input_ref/"; // chromosome sequences
+	public static boolean PREPARE_REF = false; // split, index and pack REFERENCE_SEQ_FA into REF_SEQ_DIR instead of running the pipeline
+	public static String REF_PACK_FILE = ""; // packed reference genome (.pack), loaded once for all loci; built from REF_SEQ_DIR if it does not exist; not used if empty
 	public static String REFERENCE_SEQ_FA =  System.getProperty("user.dir") + "/src/com/yg/input/ref/hg19.fa"; // all chromosomes in one file (removed for now)
 	
 	// Non-referenced MEIs
@@ -111,6 +113,10 @@ public class IOParameters {
 	public static String BAM_INPUT_PATH = "/work/lianglab/wgs/human/BAM/";
 	public static List<String> LIST_OF_BAM_FILES = new ArrayList<String>(); // list of .bam files collected from folder
 	
+	public static boolean BAM_READER_IN_PROCESS = true; // read BAM files through the index in-process (true) or with SAMtools (false)
+	public static String BAM_SIDECAR_PATH = ""; // folder with sidecar .bam files of candidate reads; not used if empty
+	public static boolean BAM_SCAN = false; // collect reads of all loci with one sequential pass over each BAM file (true) or query regions of loci (false)
+	
 	// SAMTOOLS
 	public static String SAMTOOLS_PATH = ""; //"/usr/local/bin/"; // path to SAMtools
 	// Parameters for running
@@ -134,16 +140,16 @@ public class IOParameters {
 	public static int MIN_READ_LENGTH = 50; // -l minimal read length, default: 50
 	public static int MIN_NUM_OF_BASES_ABOVE_QUAL = 48; // -L minimal number of bases with quality above -q N, default: 48
 
-	// VELVET
-	public static String VELVET_TOOL_PATH = "/work/lianglab/bin"; //"/usr/local/bin"; // path to velvet
-	public static Integer HASH_LENGTH = 21; // k-mer length
+	// DE BRUIJN ASSEMBLY
+	public static int[] HASH_LENGTHS = {21, 25, 31}; // k-mer lengths assembled in parallel, the best assembly is kept
 	public static Integer MIN_CONTIG_LENGTH_TO_KEEP = 200;
-	public static Integer INS_LENGTH = 300;
 	
-	// CDHIT
-	public static String CDHIT_TOOL_PATH = "/work/lianglab/bin/cdhit/"; //"/usr/local/bin"; // path to cd-hit
+	// REDUNDANT READS (as cd-hit-est -c)
 	public static Double PERC_IDENTITY_CDHIT = 0.98; // percentage of identity 
 
+	// ASSEMBLY
+	public static String ASSEMBLER = "cap3"; // local assembler: cap3 (cap3 executable), olc, debruijn (built-in) or auto (selected per location)
+	
 	// CAP3
 	public static String CAP3_TOOL_PATH = "/work/lianglab/bin/CAP3/"; //"/usr/local/bin"; // path for cap3
 	public static Integer PERC_IDENTITY_CAP3 = 90; // overlap percentage identity cutoff
@@ -156,11 +162,17 @@ public class IOParameters {
 	public static int FLANKING_ALIGNMENT_THRESHOLD = 70; //100; // min bps that should be aligned to flanking region in contigs
 	public static int LENGTH_ALIGNED_THRESHOLD = 95; // contig max % of alignment length to insertion
 	
+	// BRIDGE ASSEMBLY PATHS
+	public static int MAX_PATHS = 10; // max number of paths between flanking sequences tried in the bridge assembly
+	public static long PATH_SEARCH_TIME = 10000; // time budget of the path search in ms
+	
 	// BL2SEQ
 	public static String BL2SEQ_EXEC_PATH = "/work/lianglab/bin/blast-2.2.26/bin"; //"/usr/local/bin";  // path to bl2seq executable
 	
 	// THREADS
 	public static int THREADS = 1; // by default
+	public static int BAM_THREADS = 1; // number of .bam files to read concurrently
+	public static int ALIGNMENT_THREADS = 1; // number of contig pairs aligned concurrently in the bridge assembly
 	
 	/**
 	 * Collect all .bam files from a specified directory
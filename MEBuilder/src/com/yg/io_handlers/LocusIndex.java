@@ -0,0 +1,112 @@
+package com.yg.io_handlers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.yg.io_handlers.BAMReadsCollector.LocusReads;
+
+/**
+ * In-memory interval index over flanking regions of loci;
+ * Regions of each chromosome are sorted by start, so that regions overlapping a read are found with a binary search
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class LocusIndex {
+
+	private Map<String, List<LocusReads>> lociByChromosome = new HashMap<String, List<LocusReads>>(); // loci sorted by start of flanking region
+	private Map<String, long[]> startsByChromosome = new HashMap<String, long[]>(); // starts of flanking regions
+	private long maxRegionLength = 0; // length of the longest flanking region
+
+	/**
+	 * Constructor
+	 * @param lociByChromosome - loci of each chromosome
+	 */
+	public LocusIndex(Map<String, List<LocusReads>> lociByChromosome) {
+		for (String chromosome : lociByChromosome.keySet()) {
+			List<LocusReads> loci = new ArrayList<LocusReads>(lociByChromosome.get(chromosome));
+			Collections.sort(loci, new Comparator<LocusReads>() {
+				@Override
+				public int compare(LocusReads l1, LocusReads l2) {
+					return Long.compare(l1.getStart(), l2.getStart());
+				}
+			});
+
+			long[] starts = new long[loci.size()];
+			for (int i = 0; i < loci.size(); i++) {
+				starts[i] = loci.get(i).getStart();
+				maxRegionLength = Math.max(maxRegionLength, loci.get(i).getEnd() - loci.get(i).getStart() + 1);
+			}
+			this.lociByChromosome.put(chromosome, loci);
+			this.startsByChromosome.put(chromosome, starts);
+		}
+	}
+
+	/**
+	 * Find loci which flanking regions overlap the region
+	 * @param chromosome
+	 * @param start - 1-based start
+	 * @param end - 1-based inclusive end
+	 * @param result - list to add found loci to, in order of their positions
+	 */
+	public void findOverlapping(String chromosome, long start, long end, List<LocusReads> result) {
+		long[] starts = startsByChromosome.get(chromosome);
+		if (starts == null) {
+			return;
+		}
+		List<LocusReads> loci = lociByChromosome.get(chromosome);
+
+		// Regions that start before start - maxRegionLength end before the region
+		for (int i = firstStartNotBefore(starts, start - maxRegionLength + 1); i < starts.length && starts[i] <= end; i++) {
+			if (loci.get(i).getEnd() >= start) {
+				result.add(loci.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Check if any flanking region overlaps the region
+	 * @param chromosome
+	 * @param start - 1-based start
+	 * @param end - 1-based inclusive end
+	 * @return
+	 */
+	public boolean overlaps(String chromosome, long start, long end) {
+		long[] starts = startsByChromosome.get(chromosome);
+		if (starts == null) {
+			return false;
+		}
+		List<LocusReads> loci = lociByChromosome.get(chromosome);
+
+		for (int i = firstStartNotBefore(starts, start - maxRegionLength + 1); i < starts.length && starts[i] <= end; i++) {
+			if (loci.get(i).getEnd() >= start) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Binary search of the first start that is not less than the value
+	 * @param starts - sorted starts
+	 * @param value
+	 * @return index of the start or length of the array
+	 */
+	private static int firstStartNotBefore(long[] starts, long value) {
+		int low = 0;
+		int high = starts.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
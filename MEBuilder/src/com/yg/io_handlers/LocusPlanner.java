@@ -0,0 +1,100 @@
+package com.yg.io_handlers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.yg.models.MEInsertion;
+
+/**
+ * Groups MEI locations into clusters of nearby loci, so that reads of a cluster
+ * are collected with a single query per .bam file and then split between its loci
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class LocusPlanner {
+
+	public static final long MAX_WINDOWS_GAP = 1000; // flanking regions closer than this are read with one query
+	public static final long MAX_CLUSTER_SPAN = 100000; // max length of the region of a cluster
+
+	/**
+	 * Loci on the same chromosome read with one query
+	 */
+	public static class LocusCluster {
+		private String chromosome;
+		private List<Long> positions = new ArrayList<Long>(); // sorted positions of loci without duplicates
+
+		public LocusCluster(String chromosome) {
+			this.chromosome = chromosome;
+		}
+
+		public String getChromosome() {
+			return chromosome;
+		}
+
+		public List<Long> getPositions() {
+			return positions;
+		}
+
+		/**
+		 * Start of the flanking region of the first locus
+		 */
+		public long getStart() {
+			return positions.get(0) - IOParameters.FLANKING_REGION;
+		}
+
+		/**
+		 * End of the flanking region of the last locus
+		 */
+		public long getEnd() {
+			return positions.get(positions.size() - 1) + IOParameters.FLANKING_REGION;
+		}
+
+		@Override
+		public String toString() {
+			return chromosome + ":" + getStart() + "-" + getEnd() + " (" + positions.size() + " loci)";
+		}
+	}
+
+	/**
+	 * Sort loci by chromosome and position and merge overlapping or close flanking regions into clusters
+	 * @param loci
+	 * @return
+	 */
+	public static List<LocusCluster> planClusters(List<MEInsertion> loci) {
+		List<MEInsertion> sorted = new ArrayList<MEInsertion>(loci);
+		Collections.sort(sorted, new Comparator<MEInsertion>() {
+			@Override
+			public int compare(MEInsertion me1, MEInsertion me2) {
+				int res = me1.getChromosome().compareTo(me2.getChromosome());
+				if (res != 0) {
+					return res;
+				}
+				return Long.compare(me1.getPosition(), me2.getPosition());
+			}
+		});
+
+		List<LocusCluster> clusters = new ArrayList<LocusCluster>();
+		LocusCluster cluster = null;
+		for (MEInsertion me : sorted) {
+			long start = me.getPosition() - IOParameters.FLANKING_REGION;
+			long end = me.getPosition() + IOParameters.FLANKING_REGION;
+
+			if (cluster != null && cluster.getChromosome().equals(me.getChromosome())) {
+				if (cluster.getPositions().get(cluster.getPositions().size() - 1) == me.getPosition()) {
+					continue; // duplicated prediction
+				}
+				if (start <= cluster.getEnd() + MAX_WINDOWS_GAP && end - cluster.getStart() <= MAX_CLUSTER_SPAN) {
+					cluster.getPositions().add(me.getPosition());
+					continue;
+				}
+			}
+			cluster = new LocusCluster(me.getChromosome());
+			cluster.getPositions().add(me.getPosition());
+			clusters.add(cluster);
+		}
+		return clusters;
+	}
+}
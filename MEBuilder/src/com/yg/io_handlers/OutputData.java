@@ -15,11 +15,14 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.yg.assembler.Bl2seqAlignment;
+import com.yg.exceptions.FileException;
 import com.yg.exceptions.InputParametersException;
 import com.yg.models.ConsensusLocation;
 import com.yg.models.FASTASeq;
 import com.yg.models.MEInsertion;
+import com.yg.models.NucleotideSeq;
 import com.yg.parsers.FastaParser;
+import com.yg.reference.ReferenceGenome;
 import com.yg.utilities.IOGeneralHelper;
 import com.yg.utilities.PatternSplitter;
 
@@ -45,9 +48,9 @@ public class OutputData {
 	 * 
 	 * Format:
 	 * for insertion
-	 * >dbRIP|ID#|ME|Class:Family:Subfamily|Strand|+/-|Genome|hg19/hg38|Pos|chr:start-end|Allele|ins|Insertion|ref/non-ref|TSD|length:sequence|IMD|length:sequence|5TR|length:sequence|3TR|length:sequence
+	 * >dbRIP|ID#|ME|Class:Family:Subfamily|Strand|+/-|Genome|hg19/hg38|Pos|chr:start-end|Allele|ins|Insertion|ref/non-ref|TSD|length:sequence|IMD|length:sequence|5TR|length:sequence|3TR|length:sequence|Assembler|local assembler
 	 * pre-integration
-	 * >dbRIP|ID#|ME|Class:Family:Subfamily|Strand|+/-|Genome|hg19/hg38|Pos|chr:start-end|Allele|pre|Insertion|ref/non-ref|TSD|length:sequence|IMD|length:sequence|5TR|length:sequence|3TR|length:sequence
+	 * >dbRIP|ID#|ME|Class:Family:Subfamily|Strand|+/-|Genome|hg19/hg38|Pos|chr:start-end|Allele|pre|Insertion|ref/non-ref|TSD|length:sequence|IMD|length:sequence|5TR|length:sequence|3TR|length:sequence|Assembler|local assembler
 	 */
 	public static void writeMEOut(MEInsertion me) throws IOException {
 		LOGGER.info("Writing SUCCESSFUL sequences: " + me.getChromosome() + "_" + me.getPosition() + "\n");
@@ -77,6 +80,7 @@ public class OutputData {
 		if (me.getTransduction5().length() > 0) output += ":" + me.getTransduction5(); // 5' end transduction
 		output += "|3TR|" + me.getTransduction3().length();
 		if (me.getTransduction3().length() > 0) output += ":" + me.getTransduction3(); // 3' end transduction
+		if (me.getAssembler() != null) output += "|Assembler|" + me.getAssembler(); // local assembler of the contigs
 				
 		// new output format 400 bp of flanking including TSD
 		output += "\n" + me.getFlankingL() + // write pre-integration allele
@@ -96,6 +100,7 @@ public class OutputData {
 		if (me.getTransduction5().length() > 0) output += ":" + me.getTransduction5(); // 5' end transduction
 		output += "|3TR|" + me.getTransduction3().length();
 		if (me.getTransduction3().length() > 0) output += ":" + me.getTransduction3(); // 3' end transduction
+		if (me.getAssembler() != null) output += "|Assembler|" + me.getAssembler(); // local assembler of the contigs
 		
 		output += 	"\n" + me.getFlankingL() + // left flanking
 					"\n" + me.getTSD() + // TSD
@@ -159,8 +164,9 @@ public class OutputData {
 				output += "Undef|Strand|Undef";
 			}
 			
-			output += "|Genome|hg19|" + me.getChromosome() + ":" + me.getStartPos() + "-" + me.getEndPos() + "|Allele|ins|" + me.getContigs().get(i).getDescription() + 
-					  "\n" + me.getContigs().get(i).getSequence() + "\n";
+			output += "|Genome|hg19|" + me.getChromosome() + ":" + me.getStartPos() + "-" + me.getEndPos() + "|Allele|ins|" + me.getContigs().get(i).getDescription();
+			if (me.getAssembler() != null) output += "|Assembler|" + me.getAssembler(); // local assembler of the contig
+			output += "\n" + me.getContigs().get(i).getSequence() + "\n";
 		}
 		if (!output.equals("")) {
 			output += "//\n"; // to separate events
@@ -255,9 +261,13 @@ public class OutputData {
 		FastaParser parseRef = new FastaParser(contigfile);
 		FASTASeq query = parseRef.parse().get(0);
 				
-		// Parse overlapping contig (subject)
-		parseRef = new FastaParser(chrRefSeqFile);
-		FASTASeq subject = parseRef.parse().get(0);
+		// Reference region around the location (subject), the same as in chrRefSeqFile
+		FASTASeq subject;
+		try {
+			subject = ReferenceGenome.fetch(me.getChromosome(), me.getPosition() - IOParameters.FLANKING_REGION, 2*IOParameters.FLANKING_REGION);
+		} catch (FileException e) {
+			throw new IOException(e);
+		}
 		
 		// Get the alignment positions
 		List<Integer> positionsList = new ArrayList<Integer>();
@@ -287,7 +297,7 @@ public class OutputData {
 			int tsdEnd = positionsList.get(2);
 
 			// Get the TSD sequence
-			String tsd = subject.getSequence().substring(tsdStart - 1, tsdEnd);
+			String tsd = subject.getNucleotideSeq().subSequence(tsdStart - 1, tsdEnd).toString();
 			LOGGER.info("TSD :" + tsdStart + "-" + tsdEnd + ": " + tsd + "\n");
 			// Set TSD to ME
 			me.setTSD(tsd);
@@ -301,7 +311,7 @@ public class OutputData {
 			
 			if (imdEnd > imdStart + 1) {
 				// Get the IMD sequence
-				String imd = subject.getSequence().substring(imdStart, imdEnd - 1);
+				String imd = subject.getNucleotideSeq().subSequence(imdStart, imdEnd - 1).toString();
 				LOGGER.info("IMD :" + imdStart + "-" + imdEnd + ": " + imd + "\n");
 
 				// Set IMD to ME
@@ -343,7 +353,7 @@ public class OutputData {
 			if (!matcherT.find()) {
 				me.setTransduction5(tr);
 			}
-			me.setSequence(tr + me.getSequence());
+			me.setSequence(NucleotideSeq.valueOf(tr).concat(me.getNucleotideSeq()));
 			
 			LOGGER.info("5' TR: " + me.getTransduction5() + " " + me.getTransduction5().length() + " bases");
 			
@@ -351,7 +361,7 @@ public class OutputData {
 			
 			if (me.getFlankingL().length() > IOParameters.FLANKING_REGION) {
 				String extraBases = me.getFlankingL().substring(IOParameters.FLANKING_REGION); // get extra bases
-				me.setSequence(extraBases + me.getSequence()); // attach extra bases to the insertion sequence
+				me.setSequence(NucleotideSeq.valueOf(extraBases).concat(me.getNucleotideSeq())); // attach extra bases to the insertion sequence
 				me.setFlankingL(me.getFlankingL().substring(0, IOParameters.FLANKING_REGION)); // remove extra bases from the flanking sequence
 			}
 			
@@ -382,7 +392,7 @@ public class OutputData {
 				if (!matcherA.find()) {
 					me.setTransduction3(tr);
 				}
-				me.setSequence(me.getSequence() + tr);
+				me.setSequence(me.getNucleotideSeq().concat(NucleotideSeq.valueOf(tr)));
 				
 				me.setFlankingR(me.getFlankingR().substring(tr.length())); // remove polyA or TR from the beginning of the flanking
 	
@@ -398,7 +408,7 @@ public class OutputData {
 					matcherA = Pattern.compile("\\A[Aa]+").matcher(me.getFlankingR());
 					
 					if (matcherA.find()) {
-				    	me.setSequence(me.getSequence() + me.getFlankingR().substring(matcherA.start(), matcherA.end())); // attach polyA to the insertion sequence
+				    	me.setSequence(me.getNucleotideSeq().concat(me.getFlankingRSeq().subSequence(matcherA.start(), matcherA.end()))); // attach polyA to the insertion sequence
 				    	me.setFlankingR(me.getFlankingR().substring(matcherA.end())); // remove polyA from the flanking sequence
 				    }
 	//			}
@@ -0,0 +1,134 @@
+package com.yg.io_handlers;
+
+/**
+ * Filter of reads by Phred base qualities (thresholds in IOParameters);
+ * Qualities are read straight from the text with primitive counters, and the scan stops
+ * as soon as the read cannot have enough bases above the base quality;
+ * One filter per thread: stats of the last checked read are kept in the filter and reused
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class QualityFilter {
+
+	private static final int PHRED_OFFSET = 33;
+	private static final int BLOCK_SIZE = 32; // number of bases between checks for early exit
+
+	// Stats of the last checked read; when the scan stopped early they cover only the scanned bases
+	private int length = 0; // length of the read
+	private int scanned = 0; // number of scanned bases
+	private int minQ = 0; // minimum base quality
+	private int totalQ = 0; // sum of base qualities
+	private int minL = 0; // number of bases with quality >= MIN_BASE_QUAL
+	private boolean passed = false;
+
+	/**
+	 * Check the quality string
+	 * @param qual
+	 * @return true if the read passes all thresholds
+	 */
+	public boolean check(CharSequence qual) {
+		return check(qual, 0, qual.length());
+	}
+
+	/**
+	 * Check a part of the text as a quality string, e.g. the QUAL field of a SAM line
+	 * @param text
+	 * @param start
+	 * @param end - exclusive end
+	 * @return true if the read passes all thresholds
+	 */
+	public boolean check(CharSequence text, int start, int end) {
+		int minBaseQual = IOParameters.MIN_BASE_QUAL;
+		int minAbove = IOParameters.MIN_NUM_OF_BASES_ABOVE_QUAL;
+		long minPercentAbove = (long) IOParameters.PERCENT_BASE_ABOVE_QUAL * (end - start);
+
+		int minQ = 0;
+		int totalQ = 0;
+		int above = 0;
+		int i = start;
+		while (i < end) {
+			int blockEnd = Math.min(end, i + BLOCK_SIZE);
+			for (; i < blockEnd; i++) {
+				int qual = text.charAt(i) - PHRED_OFFSET;
+				if (minQ == 0 || minQ > qual) { // quality 0 does not count as minimum, as in the original stats
+					minQ = qual;
+				}
+				if (qual >= minBaseQual) {
+					above++;
+				}
+				totalQ += qual;
+			}
+
+			// Stop if the remaining bases cannot bring enough bases above the quality
+			int maxAbove = above + (end - i);
+			if (maxAbove < minAbove || 100L * maxAbove < minPercentAbove) {
+				return setStats(start, end, i, minQ, totalQ, above, false);
+			}
+		}
+
+		int length = end - start;
+		double qp = (double) above / length * 100;
+		double avgQ = (double) (totalQ / length);
+		boolean passed = !(minQ < minBaseQual ||
+						   avgQ < IOParameters.MIN_AVG_READ_QUAL ||
+						   above < minAbove ||
+						   qp < IOParameters.PERCENT_BASE_ABOVE_QUAL);
+		return setStats(start, end, end, minQ, totalQ, above, passed);
+	}
+
+	private boolean setStats(int start, int end, int scannedEnd, int minQ, int totalQ, int above, boolean passed) {
+		this.length = end - start;
+		this.scanned = scannedEnd - start;
+		this.minQ = minQ;
+		this.totalQ = totalQ;
+		this.minL = above;
+		this.passed = passed;
+		return passed;
+	}
+
+	/**
+	 * Getters of stats of the last checked read
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	public int getScanned() {
+		return scanned;
+	}
+
+	public boolean isComplete() {
+		return scanned == length;
+	}
+
+	public int getMinQ() {
+		return minQ;
+	}
+
+	public int getTotalQ() {
+		return totalQ;
+	}
+
+	/**
+	 * Average quality, rounded down
+	 */
+	public double getAvgQ() {
+		return (scanned == 0) ? 0 : (double) (totalQ / scanned);
+	}
+
+	public int getMinL() {
+		return minL;
+	}
+
+	/**
+	 * Percent of bases with quality >= MIN_BASE_QUAL
+	 */
+	public double getPercentAboveQual() {
+		return (scanned == 0) ? 0 : (double) minL / scanned * 100;
+	}
+
+	public boolean isPassed() {
+		return passed;
+	}
+}
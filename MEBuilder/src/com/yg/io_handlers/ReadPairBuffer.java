@@ -0,0 +1,247 @@
+package com.yg.io_handlers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable columnar buffer of qualified read pairs;
+ * Names, sequences, qualities and SAM lines of all pairs are kept in a single byte arena
+ * and written to FASTA/FASTQ files straight from it, pairs are written in the order they were added
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class ReadPairBuffer {
+
+	// Fields of a pair, stored one after another in the arena
+	private static final int ID1 = 0;
+	private static final int S1 = 1;
+	private static final int Q1 = 2;
+	private static final int ID2 = 3;
+	private static final int S2 = 4;
+	private static final int Q2 = 5;
+	private static final int BAM1 = 6;
+	private static final int BAM2 = 7;
+	private static final int NUM_OF_FIELDS = 8;
+
+	private byte[] arena = new byte[1 << 12]; // text of all fields
+	private int arenaLength = 0;
+	private int[] fieldStarts = new int[16 * (NUM_OF_FIELDS + 1)]; // start of each field of each pair, and the end of the last field
+	private byte[] orders = new byte[16]; // 1 if read #1 is the anchoring read, 2 if read #2 is, 0 if unknown
+	private short[] sampleIds = new short[16]; // index of the sample of each pair
+	private int size = 0;
+
+	private List<String> samples = new ArrayList<String>(); // names of samples
+	private List<byte[]> sampleBytes = new ArrayList<byte[]>();
+
+	/**
+	 * Add a pair
+	 * @param id1 - ID of read #1
+	 * @param s1 - sequence of read #1
+	 * @param q1 - quality of read #1
+	 * @param id2 - ID of read #2
+	 * @param s2 - sequence of read #2
+	 * @param q2 - quality of read #2
+	 * @param sample - name of the sample
+	 * @param order - 1 if read #1 is the anchoring read, 2 if read #2 is
+	 * @param bam1 - read #1 in SAM format
+	 * @param bam2 - read #2 in SAM format
+	 * @return index of the pair
+	 */
+	public int add(String id1, String s1, String q1, String id2, String s2, String q2, String sample, int order, String bam1, String bam2) {
+		ensurePairsCapacity();
+		set(size, id1, s1, q1, id2, s2, q2, sample, order, bam1, bam2);
+		return size++;
+	}
+
+	/**
+	 * Replace data of the pair; text of the old data stays in the arena
+	 * @param pair - index of the pair
+	 * @see #add
+	 */
+	public void set(int pair, String id1, String s1, String q1, String id2, String s2, String q2, String sample, int order, String bam1, String bam2) {
+		int base = pair * (NUM_OF_FIELDS + 1);
+		fieldStarts[base + ID1] = append(id1);
+		fieldStarts[base + S1] = append(s1);
+		fieldStarts[base + Q1] = append(q1);
+		fieldStarts[base + ID2] = append(id2);
+		fieldStarts[base + S2] = append(s2);
+		fieldStarts[base + Q2] = append(q2);
+		fieldStarts[base + BAM1] = append(bam1);
+		fieldStarts[base + BAM2] = append(bam2);
+		fieldStarts[base + NUM_OF_FIELDS] = arenaLength;
+		orders[pair] = (byte) order;
+		sampleIds[pair] = getSampleId(sample);
+	}
+
+	/**
+	 * Copy a pair from another buffer
+	 * @param other
+	 * @param pair - index of the pair in the other buffer
+	 * @return index of the pair in this buffer
+	 */
+	public int add(ReadPairBuffer other, int pair) {
+		ensurePairsCapacity();
+		int otherBase = pair * (NUM_OF_FIELDS + 1);
+		int start = other.fieldStarts[otherBase];
+		int length = other.fieldStarts[otherBase + NUM_OF_FIELDS] - start;
+		ensureArenaCapacity(length);
+		System.arraycopy(other.arena, start, arena, arenaLength, length);
+
+		int base = size * (NUM_OF_FIELDS + 1);
+		for (int f = 0; f <= NUM_OF_FIELDS; f++) {
+			fieldStarts[base + f] = other.fieldStarts[otherBase + f] - start + arenaLength;
+		}
+		arenaLength += length;
+		orders[size] = other.orders[pair];
+		sampleIds[size] = getSampleId(other.samples.get(other.sampleIds[pair]));
+		return size++;
+	}
+
+	/**
+	 * Append the text to the arena
+	 * @param text - ASCII text
+	 * @return start of the text in the arena
+	 */
+	private int append(String text) {
+		int start = arenaLength;
+		ensureArenaCapacity(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			arena[arenaLength++] = (byte) text.charAt(i);
+		}
+		return start;
+	}
+
+	private void ensurePairsCapacity() {
+		if (size == orders.length) {
+			orders = Arrays.copyOf(orders, 2 * size);
+			sampleIds = Arrays.copyOf(sampleIds, 2 * size);
+			fieldStarts = Arrays.copyOf(fieldStarts, 2 * size * (NUM_OF_FIELDS + 1));
+		}
+	}
+
+	private void ensureArenaCapacity(int length) {
+		if (arenaLength + length > arena.length) {
+			long capacity = Math.max((long) arenaLength + length, 2L * arena.length);
+			if (capacity > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("ERROR - ReadPairBuffer: too many read pairs");
+			}
+			arena = Arrays.copyOf(arena, (int) capacity);
+		}
+	}
+
+	private short getSampleId(String sample) {
+		int id = samples.lastIndexOf(sample); // pairs of the same sample usually come together
+		if (id < 0) {
+			id = samples.size();
+			samples.add(sample);
+			sampleBytes.add(sample.getBytes());
+		}
+		return (short) id;
+	}
+
+	/**
+	 * Write the field of the pair
+	 */
+	private void writeField(OutputStream out, int pair, int field) throws IOException {
+		int idx = pair * (NUM_OF_FIELDS + 1) + field;
+		out.write(arena, fieldStarts[idx], fieldStarts[idx + 1] - fieldStarts[idx]);
+	}
+
+	/**
+	 * Write all pairs in FASTA format, the anchoring read first with sample info
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeFasta(OutputStream out) throws IOException {
+		for (int pair = 0; pair < size; pair++) {
+			int first = (orders[pair] == 1) ? 0 : 3; // ID, sequence and quality of the anchoring read
+			int second = 3 - first;
+
+			out.write('>');
+			writeField(out, pair, ID1 + first);
+			out.write('|');
+			out.write(sampleBytes.get(sampleIds[pair]));
+			out.write('\n');
+			writeField(out, pair, S1 + first);
+			out.write('\n');
+			out.write('>');
+			writeField(out, pair, ID1 + second);
+			out.write('\n');
+			writeField(out, pair, S1 + second);
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Write all pairs in FASTQ format, anchoring reads to the first file and their mates to the second
+	 * @param out1
+	 * @param out2
+	 * @throws IOException
+	 */
+	public void writeFastq(OutputStream out1, OutputStream out2) throws IOException {
+		for (int pair = 0; pair < size; pair++) {
+			int first = (orders[pair] == 1) ? 0 : 3;
+			int second = 3 - first;
+
+			out1.write('@');
+			writeField(out1, pair, ID1 + first);
+			out1.write('\n');
+			writeField(out1, pair, S1 + first);
+			out1.write('\n');
+			writeField(out1, pair, Q1 + first);
+			out1.write('\n');
+
+			out2.write('@');
+			writeField(out2, pair, ID1 + second);
+			out2.write('\n');
+			writeField(out2, pair, S1 + second);
+			out2.write('\n');
+			out2.write('+');
+			out2.write('\n');
+			out2.write(' ');
+			writeField(out2, pair, Q1 + second);
+			out2.write('\n');
+		}
+	}
+
+	/**
+	 * Write SAM lines of all pairs, the anchoring read first
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeSamLines(OutputStream out) throws IOException {
+		for (int pair = 0; pair < size; pair++) {
+			int first = (orders[pair] == 1) ? 0 : 1;
+			writeField(out, pair, BAM1 + first);
+			out.write('\n');
+			writeField(out, pair, BAM1 + 1 - first);
+			out.write('\n');
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Release the memory
+	 */
+	public void clear() {
+		arena = new byte[1 << 12];
+		arenaLength = 0;
+		fieldStarts = new int[16 * (NUM_OF_FIELDS + 1)];
+		orders = new byte[16];
+		sampleIds = new short[16];
+		size = 0;
+		samples.clear();
+		sampleBytes.clear();
+	}
+}
@@ -0,0 +1,368 @@
+package com.yg.io_handlers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.yg.bam.Cigar;
+import com.yg.bam.SamRecord;
+
+/**
+ * Rule that classifies a pair of reads around the insertion point as split-reads or discordant reads;
+ * Rules are built once and applied in order to every pair over decoded positions, flags and CIGARs
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public abstract class ReadPairRule {
+
+	private static final int MIN_SOFT_CLIP = 10; // min length of soft clipping of a split-read
+	private static final int MAX_MATCH_END_SHIFT = 10; // max distance from the end of a match to the insertion point
+	private static final int MIN_DISCORDANT_DISTANCE = 1000000; // min distance between reads of a discordant pair on the same chromosome
+
+	private String description;
+	private int leftNumOfSplitReads; // split-reads added on the left side of insertion
+	private int rightNumOfSplitReads; // split-reads added on the right side of insertion
+	private int numOfDiscReads; // discordant reads added
+
+	/**
+	 * Constructor
+	 * @param description
+	 * @param leftNumOfSplitReads
+	 * @param rightNumOfSplitReads
+	 * @param numOfDiscReads
+	 */
+	protected ReadPairRule(String description, int leftNumOfSplitReads, int rightNumOfSplitReads, int numOfDiscReads) {
+		this.description = description;
+		this.leftNumOfSplitReads = leftNumOfSplitReads;
+		this.rightNumOfSplitReads = rightNumOfSplitReads;
+		this.numOfDiscReads = numOfDiscReads;
+	}
+
+	/**
+	 * Check if the pair is of the type described by the rule
+	 * @param read - anchoring read
+	 * @param mate - its mate
+	 * @param position - insertion point
+	 * @param start - start of flanking region
+	 * @param end - end of flanking region
+	 * @return
+	 */
+	public abstract boolean applies(SamRecord read, SamRecord mate, long position, long start, long end);
+
+	/**
+	 * Check split-reads of the pair the rule applies to; the whole pair is filtered out if they don't qualify
+	 * @param read - anchoring read
+	 * @param mate - its mate
+	 * @param position - insertion point
+	 * @return
+	 */
+	public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+		return true;
+	}
+
+	// ---------------------------------------------
+	// CHECKS OF SPLIT-READS
+	// ---------------------------------------------
+
+	/**
+	 * Check the read split at 5' side of the insertion point, e.g. '90M11S':
+	 * the only soft clipping is at the end and long enough, the read starts with a match that ends close to the insertion point
+	 * @param read
+	 * @param position
+	 * @return
+	 */
+	private static boolean isLeftSplitRead(SamRecord read, long position) {
+		Cigar cigar = read.getCigar();
+		if (cigar.indexOf(Cigar.OP_S) != cigar.getNumOfOperations() - 1 || cigar.getTrailingSoftClip() < MIN_SOFT_CLIP) {
+			return false;
+		}
+		if (cigar.getOperation(0) != Cigar.OP_M) {
+			return false;
+		}
+		long matchesAligned = cigar.getLength(0) + read.getPos();
+		return matchesAligned >= position - MAX_MATCH_END_SHIFT && matchesAligned <= position + MAX_MATCH_END_SHIFT;
+	}
+
+	/**
+	 * Check the read split at 3' side of the insertion point, e.g. '20S81M': soft clipping at the start is long enough
+	 * @param read
+	 * @return
+	 */
+	private static boolean isRightSplitRead(SamRecord read) {
+		return read.getCigar().getLeadingSoftClip() >= MIN_SOFT_CLIP;
+	}
+
+	/**
+	 * Check both reads of the pair split on opposite sides:
+	 * the only soft clipping of the 5' split-read is at the end, and at least one of clippings is long enough
+	 * @param leftSplitRead - read soft clipped at the end
+	 * @param rightSplitRead - read soft clipped at the start
+	 * @return
+	 */
+	private static boolean areBothSplitReads(SamRecord leftSplitRead, SamRecord rightSplitRead) {
+		Cigar cigar = leftSplitRead.getCigar();
+		if (cigar.indexOf(Cigar.OP_S) != cigar.getNumOfOperations() - 1) {
+			return false;
+		}
+		return cigar.getTrailingSoftClip() >= MIN_SOFT_CLIP || rightSplitRead.getCigar().getLeadingSoftClip() >= MIN_SOFT_CLIP;
+	}
+
+	/**
+	 * Reads of the pair are on different chromosomes or far from each other
+	 * @param read
+	 * @param mate
+	 * @return
+	 */
+	private static boolean isDiscordant(SamRecord read, SamRecord mate) {
+		return !read.getRefName().equals(mate.getRefName()) || Math.abs(read.getPos() - mate.getPos()) > MIN_DISCORDANT_DISTANCE;
+	}
+
+	private static boolean isProperPair(SamRecord read) {
+		return (read.getFlag() & 2) > 0;
+	}
+
+	private static boolean isReverse(SamRecord read) {
+		return (read.getFlag() & 16) > 0;
+	}
+
+	// ---------------------------------------------
+	// RULES
+	// ---------------------------------------------
+
+	/**
+	 * Rules in the order they are applied to a pair;
+	 * Allow 1-5bp around position to be matched in soft clipped reads, e.g. chr10	9510991	60	20S81M
+	 */
+	public static final List<ReadPairRule> RULES;
+	static {
+		List<ReadPairRule> rules = new ArrayList<ReadPairRule>();
+
+		// ---------------------------------------------
+		// BOTH READS IN 5' - SPLIT-READS
+		// ---------------------------------------------
+		// +5 to position to allow some flexibility
+
+		rules.add(new ReadPairRule("concordant pair with 2nd read split at 5' and 1st match in 5'", 1, 0, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() < position && read.getPos() >= start &&
+						mate.getPos() < position + 5 && mate.getPos() >= start &&
+						mate.getCigar().isSoftClippedAtEnd() && read.getCigar().isFullMatch();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isLeftSplitRead(mate, position);
+			}
+		});
+
+		rules.add(new ReadPairRule("concordant pair with 1st read split at 5' side of the insertion point, 2nd in 5'", 1, 0, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() < position + 5 && read.getPos() >= start &&
+						mate.getPos() < position && mate.getPos() >= start &&
+						read.getCigar().isSoftClippedAtEnd() && mate.getCigar().isFullMatch();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isLeftSplitRead(read, position);
+			}
+		});
+
+		// ---------------------------------------------
+		// BOTH READS IN 3' - SPLIT-READS
+		// ---------------------------------------------
+
+		rules.add(new ReadPairRule("concordant pair with 1st read split at 3' side of the insertion point, 2nd in 3'", 0, 1, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() > position - 100 && read.getPos() < end &&
+						mate.getPos() > position && mate.getPos() + mate.getSeqLength() <= end &&
+						!isReverse(read) &&
+						read.getCigar().isSoftClippedAtStart() && mate.getCigar().isFullMatch();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isRightSplitRead(read);
+			}
+		});
+
+		rules.add(new ReadPairRule("concordant pair with 2nd read split at 3' side of the insertion point, 1st in 3'", 0, 1, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return mate.getPos() > position - 100 && mate.getPos() < end &&
+						read.getPos() > position && read.getPos() + read.getSeqLength() <= end &&
+						isReverse(read) &&
+						mate.getCigar().isSoftClippedAtStart() && read.getCigar().isFullMatch();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isRightSplitRead(mate);
+			}
+		});
+
+		// ---------------------------------------------
+		// SPLIT IN 5' MATE IN 3' - SPLIT-READS
+		// ---------------------------------------------
+
+		rules.add(new ReadPairRule("concordant pair with 1st read as 5' split read and 2nd in 3'", 1, 0, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() >= start && read.getPos() < position + 5 &&
+						mate.getPos() > position && mate.getPos() + mate.getSeqLength() <= end &&
+						read.getCigar().isSoftClippedAtEnd() && mate.getCigar().isFullMatch();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isLeftSplitRead(read, position);
+			}
+		});
+
+		rules.add(new ReadPairRule("concordant pair with 2nd read as 5' split read and 1st in 3'", 1, 0, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return mate.getPos() >= start && mate.getPos() < position + 5 &&
+						read.getPos() > position && read.getPos() + read.getSeqLength() <= end &&
+						mate.getCigar().isSoftClippedAtEnd() && read.getCigar().isFullMatch();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isLeftSplitRead(mate, position);
+			}
+		});
+
+		// ---------------------------------------------
+		// SPLIT IN 3' MATE IN 5' - SPLIT-READS
+		// ---------------------------------------------
+
+		rules.add(new ReadPairRule("concordant pair with 1st read as 3' split read and 2nd in 5'", 0, 1, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() > position - 100 && read.getPos() <= end &&
+						mate.getPos() < position && mate.getPos() >= start &&
+						read.getCigar().isSoftClippedAtStart() && mate.getCigar().isFullMatch();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isRightSplitRead(read);
+			}
+		});
+
+		rules.add(new ReadPairRule("concordant pair with 2nd read as 3' split read and 1st in 5'", 0, 1, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return mate.getPos() > position - 100 && mate.getPos() <= end &&
+						read.getPos() < position && read.getPos() >= start &&
+						mate.getCigar().isSoftClippedAtStart() && read.getCigar().isFullMatch();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isRightSplitRead(mate);
+			}
+		});
+
+		// ---------------------------------------------
+		// ONE SPLIT - DISCORDANT
+		// ---------------------------------------------
+
+		rules.add(new ReadPairRule("pair with 1st read as 5' split read and mate inside the insertion", 1, 0, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() < position + 5 && read.getPos() >= start &&
+						read.getCigar().isSoftClippedAtEnd() &&
+						isDiscordant(read, mate) && !isProperPair(read);
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isLeftSplitRead(read, position);
+			}
+		});
+
+		rules.add(new ReadPairRule("pair with 1st read as 3' split read and mate inside the insertion", 0, 1, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() > position - 100 && read.getPos() < end &&
+						read.getCigar().isSoftClippedAtStart() &&
+						isDiscordant(read, mate) && !isProperPair(read);
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return isRightSplitRead(read);
+			}
+		});
+
+		// ---------------------------------------------
+		// BOTH SPLIT READS
+		// ---------------------------------------------
+
+		rules.add(new ReadPairRule("1st read split in 5', 2nd in 3'", 1, 1, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() <= position + 5 && read.getPos() >= start &&
+						mate.getPos() <= position + 5 && mate.getPos() >= start &&
+						read.getCigar().isSoftClippedAtEnd() && mate.getCigar().isSoftClippedAtStart();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return areBothSplitReads(read, mate);
+			}
+		});
+
+		rules.add(new ReadPairRule("2nd read split in 5', 1st in 3'", 1, 1, 0) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() <= position + 5 && read.getPos() >= start &&
+						mate.getPos() <= position + 5 && mate.getPos() >= start &&
+						mate.getCigar().isSoftClippedAtEnd() && read.getCigar().isSoftClippedAtStart();
+			}
+			@Override
+			public boolean qualifies(SamRecord read, SamRecord mate, long position) {
+				return areBothSplitReads(mate, read);
+			}
+		});
+
+		// ---------------------------------------------
+		// JUST DISCORDANT
+		// ---------------------------------------------
+
+		rules.add(new ReadPairRule("discordant pair with 1st read within 5' flank and mate inside the insertion", 0, 0, 1) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() >= start && read.getPos() + read.getSeqLength() <= position &&
+						!isReverse(read) && read.getCigar().isFullMatch() &&
+						isDiscordant(read, mate) && !isProperPair(read);
+			}
+		});
+
+		rules.add(new ReadPairRule("discordant pair with 1st read in the 3' flank and mate inside the insertion", 0, 0, 1) {
+			@Override
+			public boolean applies(SamRecord read, SamRecord mate, long position, long start, long end) {
+				return read.getPos() >= position && read.getPos() + read.getSeqLength() <= end &&
+						isReverse(read) && read.getCigar().isFullMatch() &&
+						isDiscordant(read, mate) && !isProperPair(read);
+			}
+		});
+
+		RULES = Collections.unmodifiableList(rules);
+	}
+
+	/**
+	 * Getters
+	 */
+	public int getLeftNumOfSplitReads() {
+		return leftNumOfSplitReads;
+	}
+
+	public int getRightNumOfSplitReads() {
+		return rightNumOfSplitReads;
+	}
+
+	public int getNumOfDiscReads() {
+		return numOfDiscReads;
+	}
+
+	@Override
+	public String toString() {
+		return description;
+	}
+}
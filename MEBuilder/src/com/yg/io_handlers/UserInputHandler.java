@@ -11,6 +11,7 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.yg.assembler.AssemblerSelector;
 import com.yg.exceptions.FileException;
 import com.yg.exceptions.InputParametersException;
 
@@ -47,6 +48,26 @@ public class UserInputHandler {
 			return false;
 		}
 		
+		// Reference preparation: -prepareRef <genome.fa> -ref_dir <folder> [-ref_pack <file>]
+		if (args[0].equals("-prepareRef")) {
+			if (args.length % 2 != 0) {
+				throw new InputParametersException("PARAMETERS ERROR: Not enough parameters");
+			}
+			for (int i=0; i < args.length - 1; i=i+2) {
+				clParameters.put(args[i], args[i+1]);
+			}
+			if (!clParameters.containsKey("-ref_dir")) {
+				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
+			}
+			IOParameters.REFERENCE_SEQ_FA = clParameters.get("-prepareRef");
+			IOParameters.REF_SEQ_DIR = clParameters.get("-ref_dir");
+			if (clParameters.containsKey("-ref_pack")) {
+				IOParameters.REF_PACK_FILE = clParameters.get("-ref_pack");
+			}
+			IOParameters.PREPARE_REF = true;
+			return true;
+		}
+		
 		// Config file with parameters is given
 		if (args[0].equals("-config") || args[0].equals("-conf")) {
 			 
@@ -80,9 +101,10 @@ public class UserInputHandler {
 			// Check for required parameters
 			if (!(clParameters.containsKey("-c") && clParameters.containsKey("-p")) ||
 				!clParameters.containsKey("-i") ||
-				!clParameters.containsKey("-BAMpath") || !clParameters.containsKey("-SAMTOOLSpath") ||
+				!clParameters.containsKey("-BAMpath") ||
+				("samtools".equals(clParameters.get("-BAMreader")) && !clParameters.containsKey("-SAMTOOLSpath")) ||
 				!clParameters.containsKey("-BLASTpath") || !clParameters.containsKey("-BLASTdb") || !clParameters.containsKey("-BL2SEQpath") ||
-				!clParameters.containsKey("-CDHITpath") || !clParameters.containsKey("-CAP3path") ||
+				(!"olc".equals(clParameters.get("-assembler")) && !"debruijn".equals(clParameters.get("-assembler")) && !clParameters.containsKey("-CAP3path")) ||
 				!clParameters.containsKey("-ME") || !IOParameters.SUPPORTED_TYPES.contains(clParameters.get("-ME"))) {
 				
 				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
@@ -163,12 +185,21 @@ public class UserInputHandler {
 				"-min_ins_length: the minimum length of the insertion alignment to the consensus database, optional. Default = 100\n" +
 				"-BAMpath: path to BAM files, required\n" + 
 				"-BAMfile: BAM file name, if not specified, all BAM files in BAMpath will be used\n" +
-				"-SAMTOOLSpath: path to samtools, required\n" +
+				"-ref_pack: packed reference genome file, loaded once for all loci; built from ref_dir if it does not exist, optional\n" +
+				"-BAMreader: the way of reading BAM files - java (in-process, requires .bai index) or samtools, optional. Default = java\n" +
+				"-SAMTOOLSpath: path to samtools, required if BAMreader is samtools\n" +
+				"-BAMthreads: number of BAM files to read concurrently, optional. Default = 1\n" +
+				"-BAMsidecar: folder for sidecar BAM files with candidate reads only, created once and used instead of BAM files to collect reads, optional\n" +
+				"-BAMcollect: the way of collecting reads of loci - region (query each locus) or scan (read each BAM file once for all loci), optional. Default = region\n" +
 				"-BLASTpath: path to blastn executable, required\n" + 
 				"-BLASTdb: path and name of blast DB, required\n" +
 				"-BL2SEQpath: path to bl2seq executable, required\n" + 
-				"-CDHITpath: path to cd-hit executable, required\n" +
-				"-CAP3path: path to cap3 executable, required\n" +
+				"-ALIGNthreads: number of contig pairs aligned concurrently in the bridge assembly, optional. Default = 1\n" +
+				"-maxPaths: max number of paths between flanking sequences tried in the bridge assembly, the best first, optional. Default = 10\n" +
+				"-pathTime: time budget of the path search per location in seconds, optional. Default = 10\n" +
+				"-assembler: local assembler - auto (selected by reads, coverage and ME type), olc (built-in overlap-layout-consensus), debruijn (built-in de Bruijn graph) or cap3 (runs cap3), optional. Default = cap3\n" +
+				"-CAP3path: path to cap3 executable, required if assembler is auto or cap3\n" +
+				"-prepareRef: genome .fa file to split into chromosome files with indexes in ref_dir (and packed into ref_pack, if given) instead of running the pipeline, used as the first parameter\n" +
 				"-config: path to the configuration faile with all parameters specified there. optional\n" +
 				// genome version
 				// -dev 1 
@@ -227,22 +258,84 @@ public class UserInputHandler {
 		
 		// Refence genome directory
 		IOParameters.REF_SEQ_DIR = clParameters.get("-ref_dir");
+		if (clParameters.containsKey("-ref_pack")) {
+			IOParameters.REF_PACK_FILE = clParameters.get("-ref_pack");
+		}
 		
 		// Consensus DB path
 		IOParameters.CONSENSUS_DB = System.getProperty("user.dir") + "/src/com/yg/input/consensus/" + IOParameters.ME_TYPE + ".fa"; ;
 		
+		// The way of reading BAM files
+		if (clParameters.containsKey("-BAMreader")) {
+			if (clParameters.get("-BAMreader").equals("java")) {
+				IOParameters.BAM_READER_IN_PROCESS = true;
+			} else if (clParameters.get("-BAMreader").equals("samtools")) {
+				IOParameters.BAM_READER_IN_PROCESS = false;
+			} else {
+				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
+			}
+		}
+		if (clParameters.containsKey("-BAMsidecar")) {
+			IOParameters.BAM_SIDECAR_PATH = clParameters.get("-BAMsidecar");
+		}
+		if (clParameters.containsKey("-BAMcollect")) {
+			if (clParameters.get("-BAMcollect").equals("region")) {
+				IOParameters.BAM_SCAN = false;
+			} else if (clParameters.get("-BAMcollect").equals("scan")) {
+				IOParameters.BAM_SCAN = true;
+			} else {
+				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
+			}
+		}
+		
 		// Tools exec paths
 		if (clParameters.containsKey("-SAMTOOLSpath")) {
 			IOParameters.SAMTOOLS_PATH = clParameters.get("-SAMTOOLSpath");
 		}
 		IOParameters.BLAST_EXEC_PATH = clParameters.get("-BLASTpath");
 		IOParameters.BL2SEQ_EXEC_PATH = clParameters.get("-BL2SEQpath");
-		IOParameters.CDHIT_TOOL_PATH = clParameters.get("-CDHITpath");
-		IOParameters.CAP3_TOOL_PATH = clParameters.get("-CAP3path");
+		if (clParameters.containsKey("-CAP3path")) {
+			IOParameters.CAP3_TOOL_PATH = clParameters.get("-CAP3path");
+		}
+		
+		// Local assembler
+		if (clParameters.containsKey("-assembler")) {
+			if (AssemblerSelector.isSupported(clParameters.get("-assembler"))) {
+				IOParameters.ASSEMBLER = clParameters.get("-assembler");
+			} else {
+				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
+			}
+		}
 		
 		// Number of threads
 		if (clParameters.containsKey("-threads")) {
 			IOParameters.THREADS = Integer.parseInt(clParameters.get("-threads"));
+		}
+		if (clParameters.containsKey("-BAMthreads")) {
+			IOParameters.BAM_THREADS = Integer.parseInt(clParameters.get("-BAMthreads"));
+			if (IOParameters.BAM_THREADS < 1) {
+				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
+			}
+		}
+		if (clParameters.containsKey("-ALIGNthreads")) {
+			IOParameters.ALIGNMENT_THREADS = Integer.parseInt(clParameters.get("-ALIGNthreads"));
+			if (IOParameters.ALIGNMENT_THREADS < 1) {
+				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
+			}
+		}
+		
+		// Path search of the bridge assembly
+		if (clParameters.containsKey("-maxPaths")) {
+			IOParameters.MAX_PATHS = Integer.parseInt(clParameters.get("-maxPaths"));
+			if (IOParameters.MAX_PATHS < 1) {
+				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
+			}
+		}
+		if (clParameters.containsKey("-pathTime")) {
+			IOParameters.PATH_SEARCH_TIME = 1000 * Long.parseLong(clParameters.get("-pathTime"));
+			if (IOParameters.PATH_SEARCH_TIME < 0) {
+				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
+			}
 		}		
 		
 		// Check output format specification
@@ -287,8 +380,8 @@ public class UserInputHandler {
 			   prop.getProperty("-BLASTpath") == null || prop.getProperty("-BLASTpath").equals("") ||
 			   //prop.getProperty("-BLASTdb") == null || prop.getProperty("-BLASTdb").equals("") ||
 			   prop.getProperty("-BL2SEQpath") == null || prop.getProperty("-BL2SEQpath").equals("") ||
-			   prop.getProperty("-CDHITpath") == null || prop.getProperty("-CDHITpath").equals("") ||
-			   prop.getProperty("-CAP3path") == null || prop.getProperty("-CAP3path").equals("")) {
+			   (!"olc".equals(prop.getProperty("-assembler")) && !"debruijn".equals(prop.getProperty("-assembler")) &&
+			    (prop.getProperty("-CAP3path") == null || prop.getProperty("-CAP3path").equals("")))) {
 				
 				System.out.println("EXCEPTION - Config file: BAD ARGUMENTS"); 
 				throw new InputParametersException("PARAMETERS ERROR: Parameters do not meet the requirements");
@@ -329,6 +422,26 @@ public class UserInputHandler {
 				parameters.put("-ref_dir", prop.getProperty("-ref_dir"));
 			}
 			
+			if (prop.getProperty("-ref_pack") != null && !prop.getProperty("-ref_pack").equals("")) {
+				parameters.put("-ref_pack", prop.getProperty("-ref_pack"));
+			}
+			
+			if (prop.getProperty("-BAMreader") != null && !prop.getProperty("-BAMreader").equals("")) {
+				parameters.put("-BAMreader", prop.getProperty("-BAMreader"));
+			}
+			
+			if (prop.getProperty("-BAMthreads") != null && !prop.getProperty("-BAMthreads").equals("")) {
+				parameters.put("-BAMthreads", prop.getProperty("-BAMthreads"));
+			}
+			
+			if (prop.getProperty("-BAMsidecar") != null && !prop.getProperty("-BAMsidecar").equals("")) {
+				parameters.put("-BAMsidecar", prop.getProperty("-BAMsidecar"));
+			}
+			
+			if (prop.getProperty("-BAMcollect") != null && !prop.getProperty("-BAMcollect").equals("")) {
+				parameters.put("-BAMcollect", prop.getProperty("-BAMcollect"));
+			}
+			
 			// for dev mode - path is empty
 			if (prop.getProperty("-SAMTOOLSpath") != null && !prop.getProperty("-SAMTOOLSpath").equals("")) {
 				parameters.put("-SAMTOOLSpath", prop.getProperty("-SAMTOOLSpath"));
@@ -347,8 +460,20 @@ public class UserInputHandler {
 				parameters.put("-BL2SEQpath", prop.getProperty("-BL2SEQpath"));
 			}
 			
-			if (prop.getProperty("-CDHITpath") != null && !prop.getProperty("-CDHITpath").equals("")) {
-				parameters.put("-CDHITpath", prop.getProperty("-CDHITpath"));
+			if (prop.getProperty("-ALIGNthreads") != null && !prop.getProperty("-ALIGNthreads").equals("")) {
+				parameters.put("-ALIGNthreads", prop.getProperty("-ALIGNthreads"));
+			}
+			
+			if (prop.getProperty("-maxPaths") != null && !prop.getProperty("-maxPaths").equals("")) {
+				parameters.put("-maxPaths", prop.getProperty("-maxPaths"));
+			}
+			
+			if (prop.getProperty("-pathTime") != null && !prop.getProperty("-pathTime").equals("")) {
+				parameters.put("-pathTime", prop.getProperty("-pathTime"));
+			}
+			
+			if (prop.getProperty("-assembler") != null && !prop.getProperty("-assembler").equals("")) {
+				parameters.put("-assembler", prop.getProperty("-assembler"));
 			}
 			
 			if (prop.getProperty("-CAP3path") != null && !prop.getProperty("-CAP3path").equals("")) {
@@ -4,22 +4,23 @@ package com.yg.models;
  * Fasta sequence model: 
  * >description
  * sequence
+ * The sequence is kept packed (see NucleotideSeq)
  * @author Yaroslava Girilishena
  *
  */
 public class FASTASeq {
 	
 	private String description;
-	private String sequence;
+	private NucleotideSeq sequence;
 	
 	public FASTASeq () {
 		this.description = "";
-		this.sequence = "";
+		this.sequence = NucleotideSeq.EMPTY;
 	}
 	
-	public FASTASeq (String desc, String seq) {
+	public FASTASeq (String desc, CharSequence seq) {
 		this.description = desc;
-		this.sequence = seq;
+		setSequence(seq);
 	}
 
 	public String getDescription() {
@@ -31,11 +32,15 @@ public class FASTASeq {
 	}
 
 	public String getSequence() {
+		return (sequence == null) ? null : sequence.toString();
+	}
+
+	public NucleotideSeq getNucleotideSeq() {
 		return sequence;
 	}
 
-	public void setSequence(String sequence) {
-		this.sequence = sequence;
+	public void setSequence(CharSequence sequence) {
+		this.sequence = (sequence == null) ? null : NucleotideSeq.valueOf(sequence);
 	}
 	
 	public String toString() {
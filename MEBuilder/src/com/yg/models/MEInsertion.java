@@ -15,7 +15,7 @@ public class MEInsertion extends MobileElement{
 	private long endPos = -1;
 
 	private String typeOfMEI; // subtype of MEI, e.g. ALuYa5
-	private String sequence; // actual sequence of insertion
+	private NucleotideSeq sequence; // actual sequence of insertion
 	private int genotype; // not calculated in this version
 	private int length; // length of insertion: can be omitted or used as approximation 
 	private Boolean reference;
@@ -25,12 +25,13 @@ public class MEInsertion extends MobileElement{
 	private String IMD; // IMD
 	private String transduction5; // 5TR
 	private String transduction3; // 3TR
-	private String flankingL; // left flanking
-	private String flankingR; // right flanking
+	private NucleotideSeq flankingL; // left flanking
+	private NucleotideSeq flankingR; // right flanking
 	private List<ConsensusLocation> consensusAlignments;
 	private List<FASTASeq> contigs = new ArrayList<>();
 	private boolean full = false;
 	private boolean partialChar = false;
+	private String assembler; // local assembly engine that assembled the contigs
 	
 	// for stats 
 	public int rightSR; // number of split-reads at 3' end
@@ -68,8 +69,8 @@ public class MEInsertion extends MobileElement{
 	 * Reset data
 	 */
 	private void initData() {
-		this.flankingL = "";
-		this.flankingR = "";
+		this.flankingL = NucleotideSeq.EMPTY;
+		this.flankingR = NucleotideSeq.EMPTY;
 		this.TSD = "";
 		this.IMD = "";
 		this.transduction5 = "";
@@ -89,26 +90,34 @@ public class MEInsertion extends MobileElement{
 	
 	// Left flanking + transduction check
 	public String getFlankingL() {
-		if (flankingL == null || flankingL.equals("")) {
+		if (flankingL == null || flankingL.isEmpty()) {
 			return "";
 		}
-		return flankingL;
+		return flankingL.toString();
 	}
 	
-	public void setFlankingL(String flanking) {
-		this.flankingL = flanking;
+	public NucleotideSeq getFlankingLSeq() {
+		return (flankingL == null) ? NucleotideSeq.EMPTY : flankingL;
+	}
+	
+	public void setFlankingL(CharSequence flanking) {
+		this.flankingL = (flanking == null) ? null : NucleotideSeq.valueOf(flanking);
 	}
 	
 	// Right flanking + transduction check
 	public String getFlankingR() {
-		if (flankingR == null || flankingR.equals("")) {
+		if (flankingR == null || flankingR.isEmpty()) {
 			return "";
 		}
-		return flankingR;
+		return flankingR.toString();
 	}
 	
-	public void setFlankingR(String flanking) {
-		this.flankingR = flanking;
+	public NucleotideSeq getFlankingRSeq() {
+		return (flankingR == null) ? NucleotideSeq.EMPTY : flankingR;
+	}
+	
+	public void setFlankingR(CharSequence flanking) {
+		this.flankingR = (flanking == null) ? null : NucleotideSeq.valueOf(flanking);
 	}
 
 	// Start position
@@ -143,11 +152,15 @@ public class MEInsertion extends MobileElement{
 	
 	// Insertion sequence
 	public String getSequence() {
+		return (sequence == null) ? null : sequence.toString();
+	}
+	
+	public NucleotideSeq getNucleotideSeq() {
 		return sequence;
 	}
 	
-	public void setSequence(String sequence) {
-		this.sequence = sequence;
+	public void setSequence(CharSequence sequence) {
+		this.sequence = (sequence == null) ? null : NucleotideSeq.valueOf(sequence);
 	}
 
 	// TSD
@@ -281,4 +294,13 @@ public class MEInsertion extends MobileElement{
 		this.partialChar = partialChar;
 	}
 
+	// Local assembler of the contigs
+	public String getAssembler() {
+		return assembler;
+	}
+
+	public void setAssembler(String assembler) {
+		this.assembler = assembler;
+	}
+
 }
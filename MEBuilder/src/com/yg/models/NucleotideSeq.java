@@ -0,0 +1,370 @@
+package com.yg.models;
+
+import java.util.Arrays;
+
+import com.yg.utilities.DNA;
+
+/**
+ * Immutable nucleotide sequence packed with 2 bits per base (A=0, C=1, G=2, T=3);
+ * Characters other than A, C, G, T (N, IUPAC codes, gaps) are kept verbatim in a sparse exception list,
+ * lowercase (soft-masked) regions are kept as runs, so the text of the sequence is restored exactly;
+ * Subsequences are views over the same packed data and do not copy bases
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public final class NucleotideSeq implements CharSequence {
+
+	private static final char[] BASES = {'A', 'C', 'G', 'T'};
+	private static final byte[] CODES = new byte[256]; // 2-bit code of each character, -1 for exceptions
+	static {
+		Arrays.fill(CODES, (byte) -1);
+		for (int code = 0; code < BASES.length; code++) {
+			CODES[BASES[code]] = (byte) code;
+			CODES[Character.toLowerCase(BASES[code])] = (byte) code;
+		}
+	}
+
+	public static final NucleotideSeq EMPTY = new Builder(0).build();
+
+	// Data shared by all views
+	private final long[] packed; // 32 bases per word, base i at bits 2*(i%32)..2*(i%32)+1
+	private final int[] exceptionPositions; // sorted positions of characters other than ACGT, code 0 is packed for them
+	private final char[] exceptionChars;
+	private final int[] lowerCaseRuns; // sorted runs of lowercase characters: start1, end1, start2, end2, ...
+
+	// The view
+	private final int offset;
+	private final int length;
+	private int hash = 0;
+
+	private NucleotideSeq(long[] packed, int[] exceptionPositions, char[] exceptionChars, int[] lowerCaseRuns, int offset, int length) {
+		this.packed = packed;
+		this.exceptionPositions = exceptionPositions;
+		this.exceptionChars = exceptionChars;
+		this.lowerCaseRuns = lowerCaseRuns;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Pack the text of the sequence, e.g. the sequence lines of a FASTA record
+	 * @param text
+	 * @return
+	 */
+	public static NucleotideSeq valueOf(CharSequence text) {
+		if (text instanceof NucleotideSeq) {
+			return (NucleotideSeq) text;
+		}
+		return new Builder(text.length()).append(text).build();
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	public boolean isEmpty() {
+		return length == 0;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("ERROR - NucleotideSeq: index " + index + " of " + length);
+		}
+		int pos = offset + index;
+		int e = Arrays.binarySearch(exceptionPositions, pos);
+		if (e >= 0) {
+			return exceptionChars[e];
+		}
+		char base = BASES[code(pos)];
+		return isLowerCase(pos) ? Character.toLowerCase(base) : base;
+	}
+
+	/**
+	 * Get the 2-bit code of the base
+	 * @param index
+	 * @return code, 0 for characters other than ACGT
+	 */
+	public int getCode(int index) {
+		return code(offset + index);
+	}
+
+	private int code(int pos) {
+		return (int) (packed[pos >>> 5] >>> ((pos & 31) << 1)) & 3;
+	}
+
+	private boolean isLowerCase(int pos) {
+		int r = Arrays.binarySearch(lowerCaseRuns, pos);
+		return (r >= 0) ? (r & 1) == 0 : ((-r - 1) & 1) == 1; // at a run start, or between a start and its end
+	}
+
+	/**
+	 * Get the k-mer starting at the index as 2-bit codes, base j of the k-mer at bits 2*j..2*j+1
+	 * @param index
+	 * @param k - up to 32
+	 * @return
+	 */
+	public long getKmer(int index, int k) {
+		if (k < 1 || k > 32 || index < 0 || index + k > length) {
+			throw new IndexOutOfBoundsException("ERROR - NucleotideSeq: " + k + "-mer at " + index + " of " + length);
+		}
+		int pos = offset + index;
+		int shift = (pos & 31) << 1;
+		long kmer = packed[pos >>> 5] >>> shift;
+		if (shift + 2*k > 64) {
+			kmer |= packed[(pos >>> 5) + 1] << (64 - shift);
+		}
+		return (k == 32) ? kmer : kmer & ((1L << 2*k) - 1);
+	}
+
+	/**
+	 * Check if the part of the sequence consists of A, C, G, T only, e.g. before taking its k-mer
+	 * @param start
+	 * @param end - exclusive end
+	 * @return
+	 */
+	public boolean isUnambiguous(int start, int end) {
+		int e = Arrays.binarySearch(exceptionPositions, offset + start);
+		if (e >= 0) {
+			return false;
+		}
+		e = -e - 1;
+		return e == exceptionPositions.length || exceptionPositions[e] >= offset + end;
+	}
+
+	/**
+	 * Get the view of the part of the sequence without copying bases
+	 */
+	@Override
+	public NucleotideSeq subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("ERROR - NucleotideSeq: subsequence " + start + "-" + end + " of " + length);
+		}
+		if (start == 0 && end == length) {
+			return this;
+		}
+		return new NucleotideSeq(packed, exceptionPositions, exceptionChars, lowerCaseRuns, offset + start, end - start);
+	}
+
+	public NucleotideSeq subSequence(int start) {
+		return subSequence(start, length);
+	}
+
+	/**
+	 * Copy the view into its own packed data, so that the data of the whole sequence can be released
+	 * @return
+	 */
+	public NucleotideSeq compact() {
+		if (packed.length <= (length >>> 5) + 1) {
+			return this;
+		}
+		return new Builder(length).append(this).build();
+	}
+
+	/**
+	 * Create reverse complementary sequence (see DNA)
+	 * @return
+	 */
+	public NucleotideSeq reverseComplement() {
+		char[] text = new char[length];
+		getChars(0, length, text, 0);
+		for (int i = 0, j = length - 1; i <= j; i++, j--) {
+			char left = text[i];
+			text[i] = DNA.complement(text[j]);
+			text[j] = DNA.complement(left);
+		}
+		return new Builder(length).append(text, 0, length).build();
+	}
+
+	/**
+	 * Concatenate sequences
+	 * @param other
+	 * @return
+	 */
+	public NucleotideSeq concat(NucleotideSeq other) {
+		if (other.isEmpty()) {
+			return this;
+		}
+		if (isEmpty()) {
+			return other;
+		}
+		return new Builder(length + other.length).append(this).append(other).build();
+	}
+
+	/**
+	 * Decode characters of the part of the sequence
+	 * @param start
+	 * @param end - exclusive end
+	 * @param dst
+	 * @param dstStart
+	 */
+	public void getChars(int start, int end, char[] dst, int dstStart) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("ERROR - NucleotideSeq: subsequence " + start + "-" + end + " of " + length);
+		}
+		int from = offset + start;
+		int to = offset + end;
+		int shift = dstStart - from;
+
+		// Bases
+		for (int pos = from; pos < to; pos++) {
+			dst[pos + shift] = BASES[code(pos)];
+		}
+		// Lowercase runs
+		int r = Arrays.binarySearch(lowerCaseRuns, from);
+		r = (r >= 0) ? r & ~1 : (-r - 1) & ~1; // the run that contains or follows the start
+		for (; r < lowerCaseRuns.length && lowerCaseRuns[r] < to; r += 2) {
+			int runEnd = Math.min(lowerCaseRuns[r + 1], to);
+			for (int pos = Math.max(lowerCaseRuns[r], from); pos < runEnd; pos++) {
+				dst[pos + shift] = Character.toLowerCase(dst[pos + shift]);
+			}
+		}
+		// Exceptions
+		int e = Arrays.binarySearch(exceptionPositions, from);
+		e = (e >= 0) ? e : -e - 1;
+		for (; e < exceptionPositions.length && exceptionPositions[e] < to; e++) {
+			dst[exceptionPositions[e] + shift] = exceptionChars[e];
+		}
+	}
+
+	/**
+	 * Get the text of the sequence
+	 */
+	@Override
+	public String toString() {
+		char[] text = new char[length];
+		getChars(0, length, text, 0);
+		return new String(text);
+	}
+
+	/**
+	 * Sequences are equal if their texts are equal
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof NucleotideSeq)) {
+			return false;
+		}
+		NucleotideSeq other = (NucleotideSeq) obj;
+		return length == other.length && toString().equals(other.toString());
+	}
+
+	/**
+	 * Same as hash code of the text
+	 */
+	@Override
+	public int hashCode() {
+		if (hash == 0 && length > 0) {
+			hash = toString().hashCode();
+		}
+		return hash;
+	}
+
+	/**
+	 * Builder of packed sequences from text
+	 */
+	public static class Builder {
+
+		private long[] packed;
+		private int length = 0;
+		private int[] exceptionPositions = new int[8];
+		private char[] exceptionChars = new char[8];
+		private int numOfExceptions = 0;
+		private int[] lowerCaseRuns = new int[8];
+		private int numOfRunBounds = 0;
+
+		public Builder() {
+			this(64);
+		}
+
+		/**
+		 * Constructor
+		 * @param capacity - expected length of the sequence
+		 */
+		public Builder(int capacity) {
+			packed = new long[(Math.max(capacity, 1) + 31) >>> 5];
+		}
+
+		public Builder append(char c) {
+			if ((length >>> 5) == packed.length) {
+				packed = Arrays.copyOf(packed, 2 * packed.length);
+			}
+			int code = (c < CODES.length) ? CODES[c] : -1;
+			if (code < 0) {
+				if (numOfExceptions == exceptionPositions.length) {
+					exceptionPositions = Arrays.copyOf(exceptionPositions, 2 * numOfExceptions);
+					exceptionChars = Arrays.copyOf(exceptionChars, 2 * numOfExceptions);
+				}
+				exceptionPositions[numOfExceptions] = length;
+				exceptionChars[numOfExceptions++] = c;
+				code = 0;
+			}
+			packed[length >>> 5] |= (long) code << ((length & 31) << 1);
+
+			if (c >= 'a' && c <= 'z') {
+				if (numOfRunBounds > 0 && lowerCaseRuns[numOfRunBounds - 1] == length) {
+					lowerCaseRuns[numOfRunBounds - 1]++; // continue the last run
+				} else {
+					if (numOfRunBounds == lowerCaseRuns.length) {
+						lowerCaseRuns = Arrays.copyOf(lowerCaseRuns, 2 * numOfRunBounds);
+					}
+					lowerCaseRuns[numOfRunBounds++] = length;
+					lowerCaseRuns[numOfRunBounds++] = length + 1;
+				}
+			}
+			length++;
+			return this;
+		}
+
+		public Builder append(CharSequence text) {
+			return append(text, 0, text.length());
+		}
+
+		/**
+		 * Append a part of the text
+		 * @param text
+		 * @param start
+		 * @param end - exclusive end
+		 * @return
+		 */
+		public Builder append(CharSequence text, int start, int end) {
+			if (text instanceof NucleotideSeq) {
+				char[] chunk = new char[Math.min(end - start, 1 << 12)];
+				for (int i = start; i < end; i += chunk.length) {
+					int chunkEnd = Math.min(end, i + chunk.length);
+					((NucleotideSeq) text).getChars(i, chunkEnd, chunk, 0);
+					append(chunk, 0, chunkEnd - i);
+				}
+				return this;
+			}
+			for (int i = start; i < end; i++) {
+				append(text.charAt(i));
+			}
+			return this;
+		}
+
+		public Builder append(char[] text, int start, int end) {
+			for (int i = start; i < end; i++) {
+				append(text[i]);
+			}
+			return this;
+		}
+
+		public int length() {
+			return length;
+		}
+
+		public NucleotideSeq build() {
+			return new NucleotideSeq(Arrays.copyOf(packed, (length + 31) >>> 5),
+									 Arrays.copyOf(exceptionPositions, numOfExceptions),
+									 Arrays.copyOf(exceptionChars, numOfExceptions),
+									 Arrays.copyOf(lowerCaseRuns, numOfRunBounds),
+									 0, length);
+		}
+	}
+}
@@ -1,10 +1,8 @@
 package com.yg.parsers;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -18,6 +16,10 @@ import com.yg.exceptions.FileException;
 import com.yg.exceptions.InputParametersException;
 import com.yg.io_handlers.IOParameters;
 import com.yg.models.FASTASeq;
+import com.yg.models.NucleotideSeq;
+import com.yg.reference.IndexedFastaReader;
+import com.yg.reference.ReferencePreparer;
+import com.yg.reference.ReferenceGenome;
 import com.yg.utilities.IOGeneralHelper;
 
 /**
@@ -53,9 +55,9 @@ public class FastaParser {
     	List<FASTASeq> fastaSequences= new ArrayList<FASTASeq>();
     	
     	List<String> desc= new ArrayList<>();
-    	List<String> seq = new ArrayList<>();
+    	List<NucleotideSeq> seq = new ArrayList<>();
     	
-		StringBuffer buffer = new StringBuffer();
+		NucleotideSeq.Builder buffer = new NucleotideSeq.Builder(); // sequence lines are packed as they are read
 		String line = reader.readLine();
  
 		if (line == null) {
@@ -70,8 +72,8 @@ public class FastaParser {
         
 		for (line = reader.readLine().trim(); line != null; line = reader.readLine()) {
 			if (line.length() > 0 && line.charAt(0) == '>' ) {
-				seq.add(buffer.toString());
-				buffer = new StringBuffer();
+				seq.add(buffer.build());
+				buffer = new NucleotideSeq.Builder();
 				desc.add(line.substring(1, line.length())); // remove '>' character in front
 			} else  {
 				buffer.append(line.trim());
@@ -79,20 +81,20 @@ public class FastaParser {
 		}   
 		
 		if (buffer.length() != 0) {
-			seq.add(buffer.toString());
+			seq.add(buffer.build());
 		}
     	
     	for (int i=0; i<desc.size(); i++) {
     		FASTASeq faSeq = new FASTASeq(desc.get(i), seq.get(i));
     		fastaSequences.add(faSeq);
     	}
-    	buffer.setLength(0);
     	return fastaSequences;
     }
     
     
     /**
-     * Parse the reference genome to extract the sequence from the given range
+     * Parse the reference genome to extract the sequence from the given range;
+     * The range of the first sequence of the file is read through the index of the file (see IndexedFastaReader)
      * @param filename
      * @param start
      * @param interval
@@ -101,42 +103,12 @@ public class FastaParser {
      * @throws IOException
      */
 	public FASTASeq parseRefGenome(String filename, int start, int interval) throws FileException, IOException {
-		BufferedReader reader = new BufferedReader(new FileReader(filename));
-    	
-    	FASTASeq fastaSequence = new FASTASeq();
-    	
-    	String desc = null;
-    	String seq = null;
-    	
-		String line = reader.readLine();
- 
-		if (line == null) {
-			reader.close();
-			//LOGGER.severe("ERROR - FastaParser: file + " + filename + " is an empty file" );
+		IndexedFastaReader reader = IndexedFastaReader.getReader(filename);
+		if (reader.getIndex().size() == 0) {
 			throw new FileException( "ERROR - FastaParser: file + " + filename + " is an empty file" );
 		}
- 
-		if (line.charAt(0) != '>') {
-			reader.close();
-			//LOGGER.severe("ERROR - FastaParser: first line of " + filename + " should start with '>'");
-			throw new FileException( "ERROR - FastaParser: first line of " + filename + " should start with '>'" );
-		} else {
-			desc = line.trim().substring(1, line.length()); // remove '>' character in front
-		}
-		
-		StringBuffer buffer = new StringBuffer();
-		while ((line = reader.readLine()) != null) {
-			buffer.append(line.trim());
-		}
-		
-		seq = buffer.toString().substring(start, start+interval);
-		buffer.setLength(0);
-		
-		fastaSequence.setDescription(desc);
-		fastaSequence.setSequence(seq);
-    	
-		reader.close();
-    	return fastaSequence;
+		String name = reader.getIndex().getNames().get(0);
+		return new FASTASeq(reader.getDescription(name), reader.fetch(name, start, interval));
 	}
 	
 	/**
@@ -176,23 +148,20 @@ public class FastaParser {
 	 * @throws FileException 
 	 */
 	public static List<String> collectFlankingSequences(String outputDir, String chromosome, long position) throws IOException, FileException {
-		String chromosomeRefFile = IOParameters.REF_SEQ_DIR + chromosome + ".fa";
-		// Check if input file exist
-		File input = new File(chromosomeRefFile);
-		if (!input.exists() || input.isDirectory()) {
+		// Check if the chromosome exists
+		if (!ReferenceGenome.contains(chromosome)) {
 			return null;
 		}
 				
-		LOGGER.info("Parsing refrence sequence file: " + chromosomeRefFile + " FOR " + chromosome + "_" + position + " flanking\n");
+		LOGGER.info("Fetching refrence sequence of " + chromosome + " FOR " + chromosome + "_" + position + " flanking\n");
 		
 		 // Extract flanking sequences
-        FastaParser faParser = new FastaParser(chromosomeRefFile);
-		FASTASeq refSeq = faParser.parseRefGenome(chromosomeRefFile, (int)position - IOParameters.FLANKING_REGION, 2*IOParameters.FLANKING_REGION);
+		FASTASeq refSeq = ReferenceGenome.fetch(chromosome, position - IOParameters.FLANKING_REGION, 2*IOParameters.FLANKING_REGION);
 		
-		String flankingSeq = refSeq.getSequence().substring(0, IOParameters.FLANKING_REGION);
+		NucleotideSeq flankingSeq = refSeq.getNucleotideSeq().subSequence(0, IOParameters.FLANKING_REGION);
 		FASTASeq leftFlanking = new FASTASeq(IOParameters.LEFT_FLANK_TAG, flankingSeq);
 		
-		flankingSeq = refSeq.getSequence().substring(IOParameters.FLANKING_REGION); // to the end of the sequence
+		flankingSeq = refSeq.getNucleotideSeq().subSequence(IOParameters.FLANKING_REGION); // to the end of the sequence
 		FASTASeq rightFlanking = new FASTASeq(IOParameters.RIGHT_FLANK_TAG, flankingSeq);
 
 		
@@ -213,48 +182,22 @@ public class FastaParser {
 	}
 
 	/**
-	 * Parse the whole reference file into files that contain only one chromosome
+	 * Parse the whole reference file into files that contain only one chromosome, with their indexes
+	 * and the packed genome if IOParameters.REF_PACK_FILE is set (see ReferencePreparer)
 	 * @throws InputParametersException
 	 * @throws FileException
+	 * @throws IOException
+	 * @throws InterruptedException
 	 */
-	public static void parseRefIntoChromosomes() throws InputParametersException, FileException {
+	public static void parseRefIntoChromosomes() throws InputParametersException, FileException, IOException, InterruptedException {
 		// Check if input file exist
 		File input = new File(IOParameters.REFERENCE_SEQ_FA);
 		if (!input.exists() || input.isDirectory()) {
 			throw new InputParametersException("NO REFERENCE FILE");
 		}
 		
-		String line, chromosome;
-		BufferedReader reader;
-		BufferedWriter bw;
-		
-		try {
-			reader = new BufferedReader(new FileReader(IOParameters.REFERENCE_SEQ_FA));
-
-			line = reader.readLine();
-			if (line == null) {
-				reader.close();
-				throw new FileException( "ERROR - FastaParser: file + " + IOParameters.REFERENCE_SEQ_FA + " is an empty file" );
-			}
-	 
-			while ( (line=reader.readLine()) != null ) {
-				if (line.charAt(0) == '>') {
-					chromosome = line.trim().substring(1, line.length()); // remove '>' character in front
-					
-					System.out.println("Parsing chromosome: " + chromosome + " into separate file");
-					
-					bw = new BufferedWriter(new FileWriter(IOParameters.REF_SEQ_DIR + chromosome + ".fa"));
-		            while ((line=reader.readLine()).charAt(0) != '>') {
-		            	bw.write(line);
-		            }
-		            
-		            bw.close();
-				}
-			}
-			
-			reader.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		ReferencePreparer preparer = new ReferencePreparer(IOParameters.REFERENCE_SEQ_FA, IOParameters.REF_SEQ_DIR, IOParameters.REF_PACK_FILE,
+														   Runtime.getRuntime().availableProcessors());
+		preparer.prepare();
 	}
 }
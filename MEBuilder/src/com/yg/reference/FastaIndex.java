@@ -0,0 +1,269 @@
+package com.yg.reference;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.yg.exceptions.FileException;
+import com.yg.utilities.PatternSplitter;
+
+/**
+ * FASTA index model (.fai, as written by samtools faidx);
+ * For each sequence: name, length, offset of the first base, bases per line and bytes per line,
+ * so that the byte offset of any base is computed without reading the file
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class FastaIndex {
+	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	/**
+	 * Index entry of one sequence
+	 */
+	public static class Entry {
+		private String name;
+		private long length; // number of bases
+		private long offset; // byte offset of the first base
+		private int lineBases; // bases per line
+		private int lineWidth; // bytes per line, including the line end
+
+		public Entry(String name, long length, long offset, int lineBases, int lineWidth) {
+			this.name = name;
+			this.length = length;
+			this.offset = offset;
+			this.lineBases = lineBases;
+			this.lineWidth = lineWidth;
+		}
+
+		/**
+		 * Get the byte offset of the base
+		 * @param pos - 0-based position in the sequence
+		 * @return
+		 */
+		public long getByteOffset(long pos) {
+			return offset + (pos / lineBases) * lineWidth + pos % lineBases;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		public int getLineBases() {
+			return lineBases;
+		}
+
+		public int getLineWidth() {
+			return lineWidth;
+		}
+	}
+
+	private Map<String, Entry> entries = new LinkedHashMap<String, Entry>(); // in the order of the FASTA file
+
+	FastaIndex() {
+	}
+
+	/**
+	 * Load the index of the FASTA file from <fastaFile>.fai;
+	 * The index is built and written if it does not exist or is older than the FASTA file
+	 * @param fastaFile
+	 * @return
+	 * @throws IOException
+	 * @throws FileException
+	 */
+	public static FastaIndex load(String fastaFile) throws IOException, FileException {
+		File fasta = new File(fastaFile);
+		File fai = new File(fastaFile + ".fai");
+		if (fai.exists() && fai.lastModified() >= fasta.lastModified()) {
+			return read(fai.getPath());
+		}
+
+		FastaIndex index = build(fastaFile);
+		try {
+			index.write(fai.getPath());
+		} catch (IOException e) {
+			LOGGER.warning("Cannot write FASTA index " + fai.getPath() + ": " + e.getMessage() + "\n"); // the index is still used in memory
+		}
+		return index;
+	}
+
+	/**
+	 * Read the .fai file
+	 * @param faiFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static FastaIndex read(String faiFile) throws IOException {
+		FastaIndex index = new FastaIndex();
+		BufferedReader reader = new BufferedReader(new FileReader(faiFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				String[] fields = PatternSplitter.PTRN_TAB_SPLITTER.split(line);
+				if (fields.length < 5) {
+					throw new IOException("ERROR - FastaIndex: " + faiFile + " is not a FASTA index file");
+				}
+				index.add(new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+									Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("ERROR - FastaIndex: " + faiFile + " is not a FASTA index file", e);
+		} finally {
+			reader.close();
+		}
+		return index;
+	}
+
+	/**
+	 * Build the index by reading the FASTA file once;
+	 * All lines of a sequence but the last one should have the same length
+	 * @param fastaFile
+	 * @return
+	 * @throws IOException
+	 * @throws FileException
+	 */
+	public static FastaIndex build(String fastaFile) throws IOException, FileException {
+		FastaIndex index = new FastaIndex();
+		InputStream in = new BufferedInputStream(new FileInputStream(fastaFile), 1 << 16);
+		try {
+			StringBuilder header = null; // header being read
+			String name = null; // name of the current sequence
+			long length = 0;
+			long offset = 0;
+			int lineBases = 0;
+			int lineWidth = 0;
+			boolean lastLine = false; // a shorter line was seen, the sequence has to end
+
+			long pos = 0;
+			long lineStart = 0;
+			int bases = 0; // bases in the current line
+			int c;
+			while (true) {
+				c = in.read();
+				if (pos == 0 && c != '>') {
+					throw new FileException(c < 0 ? "ERROR - FastaIndex: file " + fastaFile + " is an empty file"
+												  : "ERROR - FastaIndex: first line of " + fastaFile + " should start with '>'");
+				}
+
+				if (header != null) { // header line
+					if (c == '\n' || c < 0) {
+						name = PatternSplitter.PTRN_SPACES_SPLITTER.split(header.toString().trim())[0];
+						header = null;
+						length = 0;
+						offset = pos + 1;
+						lineBases = 0;
+						lineWidth = 0;
+						lastLine = false;
+						lineStart = pos + 1;
+					} else if (c != '\r') {
+						header.append((char) c);
+					}
+				} else if (c == '\n' || c < 0) { // end of a sequence line
+					int width = (int) (pos - lineStart) + ((c == '\n') ? 1 : 0);
+					if (bases == 0) {
+						if (lineBases == 0) {
+							offset = pos + 1; // blank lines before the sequence
+						} else {
+							lastLine = true; // blank line ends the sequence
+						}
+					} else if (lastLine || (lineBases > 0 && bases > lineBases) || (bases == lineBases && c == '\n' && width != lineWidth)) {
+						throw new FileException("ERROR - FastaIndex: lines of different length in " + name + " of " + fastaFile);
+					} else {
+						if (lineBases == 0) {
+							lineBases = bases;
+							lineWidth = width;
+						}
+						lastLine |= bases < lineBases;
+						length += bases;
+					}
+					bases = 0;
+					lineStart = pos + 1;
+				} else if (c == '>' && pos == lineStart) { // next sequence
+					if (name != null) {
+						index.add(new Entry(name, length, offset, lineBases, lineWidth));
+					}
+					header = new StringBuilder();
+				} else if (c != '\r') {
+					bases++;
+				}
+
+				if (c < 0) {
+					break;
+				}
+				pos++;
+			}
+			if (name != null) {
+				index.add(new Entry(name, length, offset, lineBases, lineWidth));
+			}
+		} finally {
+			in.close();
+		}
+		return index;
+	}
+
+	/**
+	 * Write the index in .fai format
+	 * @param faiFile
+	 * @throws IOException
+	 */
+	public void write(String faiFile) throws IOException {
+		String tmpFile = faiFile + ".tmp";
+		BufferedWriter bw = new BufferedWriter(new FileWriter(tmpFile));
+		try {
+			for (Entry entry : entries.values()) {
+				bw.write(entry.name + "\t" + entry.length + "\t" + entry.offset + "\t" + entry.lineBases + "\t" + entry.lineWidth + "\n");
+			}
+		} finally {
+			bw.close();
+		}
+		File fai = new File(faiFile);
+		fai.delete();
+		if (!new File(tmpFile).renameTo(fai)) {
+			throw new IOException("ERROR - FastaIndex: cannot create " + faiFile);
+		}
+	}
+
+	void add(Entry entry) throws IOException {
+		if (entry.lineBases == 0 && entry.length > 0) {
+			throw new IOException("ERROR - FastaIndex: no line length for " + entry.name);
+		}
+		entries.put(entry.name, entry);
+	}
+
+	/**
+	 * Getters
+	 */
+	public Entry getEntry(String name) {
+		return entries.get(name);
+	}
+
+	public List<String> getNames() {
+		return new ArrayList<String>(entries.keySet());
+	}
+
+	public int size() {
+		return entries.size();
+	}
+}
@@ -0,0 +1,168 @@
+package com.yg.reference;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.yg.exceptions.FileException;
+import com.yg.models.NucleotideSeq;
+
+/**
+ * Random access to sequences of a FASTA file through its index (see FastaIndex);
+ * The file is memory-mapped, so fetching a region reads only the pages of the region;
+ * Readers are shared: one reader per file, fetches from several threads are safe;
+ * A reader holds no open file, its mapping is released by the garbage collector once the reader is no longer used,
+ * so readers dropped from the shared ones are never closed under threads that still fetch from them
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class IndexedFastaReader {
+
+	private static final int MAX_READERS = 32; // shared readers, e.g. chromosome files
+	private static final int CHUNK_BITS = 30; // files are mapped in chunks of 1 GB
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	// Shared readers, the least recently used one is dropped (not closed) above MAX_READERS
+	private static final Map<String, IndexedFastaReader> READERS = new LinkedHashMap<String, IndexedFastaReader>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, IndexedFastaReader> eldest) {
+			return size() > MAX_READERS;
+		}
+	};
+
+	private String fastaFile;
+	private long lastModified; // of the FASTA file when it was mapped
+	private FastaIndex index;
+	private MappedByteBuffer[] chunks; // the whole file
+
+	/**
+	 * Constructor
+	 * @param fastaFile - path to FASTA file, the index is loaded or built (see FastaIndex.load)
+	 * @throws IOException
+	 * @throws FileException
+	 */
+	public IndexedFastaReader(String fastaFile) throws IOException, FileException {
+		this.fastaFile = fastaFile;
+		this.lastModified = new File(fastaFile).lastModified();
+		this.index = FastaIndex.load(fastaFile);
+
+		RandomAccessFile file = new RandomAccessFile(fastaFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+			for (int i = 0; i < chunks.length; i++) {
+				long chunkStart = (long) i << CHUNK_BITS;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, Math.min(CHUNK_MASK + 1, size - chunkStart));
+			}
+		} finally {
+			file.close(); // mappings stay valid
+		}
+	}
+
+	/**
+	 * Get the shared reader of the file; the reader is reopened if the file was changed,
+	 * the old one stays valid for threads that hold it
+	 * @param fastaFile
+	 * @return
+	 * @throws IOException
+	 * @throws FileException
+	 */
+	public static synchronized IndexedFastaReader getReader(String fastaFile) throws IOException, FileException {
+		IndexedFastaReader reader = READERS.get(fastaFile);
+		if (reader == null || reader.lastModified != new File(fastaFile).lastModified()) {
+			reader = new IndexedFastaReader(fastaFile);
+			READERS.put(fastaFile, reader);
+		}
+		return reader;
+	}
+
+	/**
+	 * Fetch the region of the sequence
+	 * @param name - name of the sequence, e.g. chromosome
+	 * @param start - 0-based start
+	 * @param length - number of bases
+	 * @return
+	 * @throws IOException
+	 */
+	public NucleotideSeq fetch(String name, long start, int length) throws IOException {
+		FastaIndex.Entry entry = index.getEntry(name);
+		if (entry == null) {
+			throw new IOException("ERROR - IndexedFastaReader: no sequence " + name + " in " + fastaFile);
+		}
+		if (start < 0 || length < 0 || start + length > entry.getLength()) {
+			throw new IndexOutOfBoundsException("ERROR - IndexedFastaReader: region " + name + ":" + start + "-" + (start + length) + " is out of " + fastaFile);
+		}
+		if (length == 0) {
+			return NucleotideSeq.EMPTY;
+		}
+
+		long from = entry.getByteOffset(start);
+		long to = entry.getByteOffset(start + length - 1) + 1;
+
+		NucleotideSeq.Builder seq = new NucleotideSeq.Builder(length);
+		for (long pos = from; pos < to; pos++) {
+			char c = (char) (get(pos) & 0xFF);
+			if (c != '\n' && c != '\r') {
+				seq.append(c);
+			}
+		}
+		return seq.build();
+	}
+
+	/**
+	 * Get the header line of the sequence without '>'
+	 * @param name
+	 * @return
+	 * @throws IOException
+	 */
+	public String getDescription(String name) throws IOException {
+		FastaIndex.Entry entry = index.getEntry(name);
+		if (entry == null) {
+			throw new IOException("ERROR - IndexedFastaReader: no sequence " + name + " in " + fastaFile);
+		}
+		// The header line ends right before the first base (blank lines aside), read it backwards
+		long end = entry.getOffset();
+		long start = Math.max(0, end - (1 << 16));
+		long headerStart = end - 1;
+		while (headerStart >= start && get(headerStart) != '>') {
+			headerStart--;
+		}
+		StringBuilder header = new StringBuilder();
+		for (long pos = headerStart + 1; pos < end; pos++) {
+			char c = (char) (get(pos) & 0xFF);
+			if (c == '\n') {
+				break;
+			}
+			header.append(c);
+		}
+		return header.toString().trim();
+	}
+
+	/**
+	 * Get the byte of the file, absolute get as the mapping is shared
+	 * @param pos - offset in the file
+	 * @return
+	 */
+	private byte get(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+	}
+
+	/**
+	 * Getters
+	 */
+	public String getFastaFile() {
+		return fastaFile;
+	}
+
+	public FastaIndex getIndex() {
+		return index;
+	}
+}
@@ -0,0 +1,483 @@
+package com.yg.reference;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.yg.exceptions.FileException;
+import com.yg.models.NucleotideSeq;
+
+/**
+ * Reference genome packed off-heap with 2 bits per base (A=0, C=1, G=2, T=3, 4 bases per byte);
+ * Runs of other characters (N, IUPAC codes) and lowercase runs are kept per sequence, so regions are restored exactly;
+ * The store is either built from FASTA files or memory-mapped from a binary file (.pack) written before:
+ *
+ * magic "MEBPACK1", metadata length (long), metadata, packed bases of all sequences, each starting at a byte boundary
+ *
+ * Region lookups only read the buffers and are safe from several threads
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class PackedReference {
+
+	private static final byte[] MAGIC = {'M', 'E', 'B', 'P', 'A', 'C', 'K', '1'};
+	private static final int SEGMENT_SHIFT = 30; // buffers of 1GB, a buffer cannot be larger than 2GB
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+	/**
+	 * Packed sequence
+	 */
+	private static class Sequence {
+		private String name;
+		private String description; // header line without '>'
+		private long length;
+		private long dataOffset; // byte offset of the first base in the packed data
+		private long[] exceptionRuns = new long[0]; // start1, end1, start2, end2, ... of runs of the same character other than ACGT
+		private char[] exceptionChars = new char[0]; // character of each run
+		private long[] lowerCaseRuns = new long[0]; // start1, end1, ... of lowercase runs
+	}
+
+	private Map<String, Sequence> sequences = new LinkedHashMap<String, Sequence>();
+	private ByteBuffer[] segments = new ByteBuffer[0]; // packed bases, direct or mapped buffers
+	private long dataLength = 0;
+
+	private PackedReference() {
+	}
+
+	/**
+	 * Build the store from FASTA files; the first sequence of each file is packed under the name of the file
+	 * without extension (e.g. chr1 for chr1.fa), as chromosomes are looked up by file name
+	 * @param fastaFiles
+	 * @return
+	 * @throws IOException
+	 * @throws FileException
+	 */
+	public static PackedReference build(List<String> fastaFiles) throws IOException, FileException {
+		PackedReference reference = new PackedReference();
+		List<FastaIndex.Entry> entries = new ArrayList<FastaIndex.Entry>();
+		for (String fastaFile : fastaFiles) {
+			FastaIndex index = FastaIndex.load(fastaFile);
+			if (index.size() == 0) {
+				throw new FileException("ERROR - PackedReference: file " + fastaFile + " is an empty file");
+			}
+			FastaIndex.Entry entry = index.getEntry(index.getNames().get(0));
+			entries.add(entry);
+			reference.dataLength += (entry.getLength() + 3) >>> 2;
+		}
+
+		reference.segments = new ByteBuffer[(int) ((reference.dataLength + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+		for (int s = 0; s < reference.segments.length; s++) {
+			reference.segments[s] = ByteBuffer.allocateDirect((int) Math.min(SEGMENT_SIZE, reference.dataLength - s * SEGMENT_SIZE));
+		}
+
+		// Pack sequences one by one and copy them into the buffers
+		long dataOffset = 0;
+		for (int f = 0; f < fastaFiles.size(); f++) {
+			String fastaFile = fastaFiles.get(f);
+			FastaIndex.Entry entry = entries.get(f);
+			String name = new File(fastaFile).getName().replaceFirst("\\.[^.]*$", "");
+			SequencePacker packer = new SequencePacker(name, IndexedFastaReader.getReader(fastaFile).getDescription(entry.getName()));
+			packFile(packer, fastaFile, entry);
+
+			Sequence seq = packer.finish();
+			seq.dataOffset = dataOffset;
+			for (int i = 0; i < packer.getDataLength(); i++) {
+				long byteOffset = dataOffset + i;
+				reference.segments[(int) (byteOffset >>> SEGMENT_SHIFT)].put((int) (byteOffset & (SEGMENT_SIZE - 1)), packer.data[i]);
+			}
+			dataOffset += packer.getDataLength();
+			reference.sequences.put(name, seq);
+		}
+		return reference;
+	}
+
+	/**
+	 * Read bases of the sequence from the FASTA file
+	 */
+	private static void packFile(SequencePacker packer, String fastaFile, FastaIndex.Entry entry) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(fastaFile), 1 << 20);
+		try {
+			long skip = entry.getOffset();
+			while (skip > 0) {
+				long skipped = in.skip(skip);
+				if (skipped <= 0) {
+					throw new IOException("ERROR - PackedReference: unexpected end of " + fastaFile);
+				}
+				skip -= skipped;
+			}
+			while (packer.getLength() < entry.getLength()) {
+				int c = in.read();
+				if (c < 0) {
+					throw new IOException("ERROR - PackedReference: unexpected end of " + fastaFile);
+				}
+				if (c != '\n' && c != '\r') {
+					packer.add(c);
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Packer of one sequence on the heap; bases are added in the order of the sequence
+	 */
+	public static class SequencePacker {
+		private Sequence seq = new Sequence();
+		private byte[] data = new byte[1 << 12];
+		private RunList exceptions = new RunList();
+		private RunList lowerCase = new RunList();
+
+		/**
+		 * Constructor
+		 * @param name - name of the sequence, e.g. chromosome
+		 * @param description - header line without '>'
+		 */
+		public SequencePacker(String name, String description) {
+			seq.name = name;
+			seq.description = description;
+		}
+
+		/**
+		 * Add a base
+		 * @param c - ASCII code of the base
+		 */
+		public void add(int c) {
+			long pos = seq.length;
+			int code;
+			switch (c) {
+				case 'A': case 'a': code = 0; break;
+				case 'C': case 'c': code = 1; break;
+				case 'G': case 'g': code = 2; break;
+				case 'T': case 't': code = 3; break;
+				default: code = 0; exceptions.add(pos, (char) c);
+			}
+			if (c >= 'a' && c <= 'z') {
+				lowerCase.add(pos, 'a');
+			}
+
+			long index = pos >>> 2;
+			if (index == data.length) {
+				if (index >= Integer.MAX_VALUE - 8) {
+					throw new IllegalStateException("ERROR - PackedReference: sequence " + seq.name + " is too long");
+				}
+				data = Arrays.copyOf(data, (int) Math.min(2L * data.length, Integer.MAX_VALUE - 8));
+			}
+			data[(int) index] |= code << ((pos & 3) << 1);
+			seq.length++;
+		}
+
+		/**
+		 * Add bases
+		 * @param bases - ASCII codes of bases, no line ends
+		 * @param start
+		 * @param end - exclusive end
+		 */
+		public void add(byte[] bases, int start, int end) {
+			for (int i = start; i < end; i++) {
+				add(bases[i] & 0xFF);
+			}
+		}
+
+		private Sequence finish() {
+			seq.exceptionRuns = exceptions.getRuns();
+			seq.exceptionChars = exceptions.getChars();
+			seq.lowerCaseRuns = lowerCase.getRuns();
+			return seq;
+		}
+
+		public String getName() {
+			return seq.name;
+		}
+
+		public long getLength() {
+			return seq.length;
+		}
+
+		private int getDataLength() {
+			return (int) ((seq.length + 3) >>> 2);
+		}
+	}
+
+	/**
+	 * Runs of the same character at consecutive positions
+	 */
+	private static class RunList {
+		private long[] runs = new long[16];
+		private char[] chars = new char[8];
+		private int numOfRuns = 0;
+
+		void add(long pos, char c) {
+			if (numOfRuns > 0 && runs[2*numOfRuns - 1] == pos && chars[numOfRuns - 1] == c) {
+				runs[2*numOfRuns - 1]++;
+				return;
+			}
+			if (numOfRuns == chars.length) {
+				runs = Arrays.copyOf(runs, 4 * numOfRuns);
+				chars = Arrays.copyOf(chars, 2 * numOfRuns);
+			}
+			runs[2*numOfRuns] = pos;
+			runs[2*numOfRuns + 1] = pos + 1;
+			chars[numOfRuns++] = c;
+		}
+
+		long[] getRuns() {
+			return Arrays.copyOf(runs, 2 * numOfRuns);
+		}
+
+		char[] getChars() {
+			return Arrays.copyOf(chars, numOfRuns);
+		}
+	}
+
+	/**
+	 * Write the store into the binary file, to be mapped by next runs
+	 * @param packFile
+	 * @throws IOException
+	 */
+	public void write(String packFile) throws IOException {
+		String tmpFile = packFile + ".tmp";
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 20);
+		try {
+			DataOutputStream data = new DataOutputStream(out);
+			writeHeader(data, sequences.values());
+			byte[] chunk = new byte[1 << 20];
+			for (ByteBuffer segment : segments) {
+				ByteBuffer view = segment.duplicate();
+				view.clear();
+				while (view.hasRemaining()) {
+					int length = Math.min(chunk.length, view.remaining());
+					view.get(chunk, 0, length);
+					data.write(chunk, 0, length);
+				}
+			}
+			data.flush();
+		} finally {
+			out.close();
+		}
+		rename(tmpFile, packFile);
+	}
+
+	/**
+	 * Write sequences packed on the heap into the binary file, in the order of the list
+	 * @param packFile
+	 * @param packers - packers of complete sequences
+	 * @throws IOException
+	 */
+	public static void write(String packFile, List<SequencePacker> packers) throws IOException {
+		List<Sequence> seqs = new ArrayList<Sequence>();
+		long dataOffset = 0;
+		for (SequencePacker packer : packers) {
+			Sequence seq = packer.finish();
+			seq.dataOffset = dataOffset;
+			dataOffset += packer.getDataLength();
+			seqs.add(seq);
+		}
+
+		String tmpFile = packFile + ".tmp";
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 20);
+		try {
+			DataOutputStream data = new DataOutputStream(out);
+			writeHeader(data, seqs);
+			for (SequencePacker packer : packers) {
+				data.write(packer.data, 0, packer.getDataLength());
+			}
+			data.flush();
+		} finally {
+			out.close();
+		}
+		rename(tmpFile, packFile);
+	}
+
+	/**
+	 * Write magic, length of metadata and metadata of sequences
+	 */
+	private static void writeHeader(DataOutputStream out, Collection<Sequence> seqs) throws IOException {
+		ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+		DataOutputStream meta = new DataOutputStream(metadata);
+		meta.writeInt(seqs.size());
+		for (Sequence seq : seqs) {
+			meta.writeUTF(seq.name);
+			meta.writeUTF(seq.description);
+			meta.writeLong(seq.length);
+			meta.writeLong(seq.dataOffset);
+			meta.writeInt(seq.exceptionChars.length);
+			for (int r = 0; r < seq.exceptionChars.length; r++) {
+				meta.writeLong(seq.exceptionRuns[2*r]);
+				meta.writeLong(seq.exceptionRuns[2*r + 1]);
+				meta.writeChar(seq.exceptionChars[r]);
+			}
+			meta.writeInt(seq.lowerCaseRuns.length / 2);
+			for (long bound : seq.lowerCaseRuns) {
+				meta.writeLong(bound);
+			}
+		}
+		meta.close();
+
+		out.write(MAGIC);
+		out.writeLong(metadata.size());
+		metadata.writeTo(out);
+	}
+
+	private static void rename(String tmpFile, String packFile) throws IOException {
+		File pack = new File(packFile);
+		pack.delete();
+		if (!new File(tmpFile).renameTo(pack)) {
+			throw new IOException("ERROR - PackedReference: cannot create " + packFile);
+		}
+	}
+
+	/**
+	 * Map the binary file written before
+	 * @param packFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static PackedReference map(String packFile) throws IOException {
+		PackedReference reference = new PackedReference();
+		long dataStart;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(packFile), 1 << 16));
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("ERROR - PackedReference: " + packFile + " is not a packed reference file");
+			}
+			long metadataLength = in.readLong();
+			dataStart = MAGIC.length + 8 + metadataLength;
+
+			int numOfSequences = in.readInt();
+			for (int i = 0; i < numOfSequences; i++) {
+				Sequence seq = new Sequence();
+				seq.name = in.readUTF();
+				seq.description = in.readUTF();
+				seq.length = in.readLong();
+				seq.dataOffset = in.readLong();
+				int numOfRuns = in.readInt();
+				seq.exceptionRuns = new long[2 * numOfRuns];
+				seq.exceptionChars = new char[numOfRuns];
+				for (int r = 0; r < numOfRuns; r++) {
+					seq.exceptionRuns[2*r] = in.readLong();
+					seq.exceptionRuns[2*r + 1] = in.readLong();
+					seq.exceptionChars[r] = in.readChar();
+				}
+				seq.lowerCaseRuns = new long[2 * in.readInt()];
+				for (int r = 0; r < seq.lowerCaseRuns.length; r++) {
+					seq.lowerCaseRuns[r] = in.readLong();
+				}
+				reference.sequences.put(seq.name, seq);
+				reference.dataLength = Math.max(reference.dataLength, seq.dataOffset + ((seq.length + 3) >>> 2));
+			}
+		} finally {
+			in.close();
+		}
+
+		RandomAccessFile file = new RandomAccessFile(packFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() < dataStart + reference.dataLength) {
+				throw new IOException("ERROR - PackedReference: " + packFile + " is truncated");
+			}
+			reference.segments = new ByteBuffer[(int) ((reference.dataLength + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+			for (int s = 0; s < reference.segments.length; s++) {
+				long size = Math.min(SEGMENT_SIZE, reference.dataLength - s * SEGMENT_SIZE);
+				reference.segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + s * SEGMENT_SIZE, size);
+			}
+		} finally {
+			file.close(); // mappings stay valid
+		}
+		return reference;
+	}
+
+	/**
+	 * Fetch the region of the sequence
+	 * @param name - name of the sequence, e.g. chromosome
+	 * @param start - 0-based start
+	 * @param length - number of bases
+	 * @return
+	 */
+	public NucleotideSeq fetch(String name, long start, int length) {
+		Sequence seq = sequences.get(name);
+		if (seq == null) {
+			throw new IllegalArgumentException("ERROR - PackedReference: no sequence " + name);
+		}
+		if (start < 0 || length < 0 || start + length > seq.length) {
+			throw new IndexOutOfBoundsException("ERROR - PackedReference: region " + name + ":" + start + "-" + (start + length) + " is out of " + seq.length);
+		}
+
+		char[] text = new char[length];
+		for (int i = 0; i < length; i++) {
+			long pos = start + i;
+			long byteOffset = seq.dataOffset + (pos >>> 2);
+			int packed = segments[(int) (byteOffset >>> SEGMENT_SHIFT)].get((int) (byteOffset & (SEGMENT_SIZE - 1)));
+			text[i] = "ACGT".charAt((packed >>> ((pos & 3) << 1)) & 3);
+		}
+		for (int r = firstRun(seq.lowerCaseRuns, start); r < seq.lowerCaseRuns.length && seq.lowerCaseRuns[r] < start + length; r += 2) {
+			long end = Math.min(seq.lowerCaseRuns[r + 1], start + length);
+			for (long pos = Math.max(seq.lowerCaseRuns[r], start); pos < end; pos++) {
+				text[(int) (pos - start)] = Character.toLowerCase(text[(int) (pos - start)]);
+			}
+		}
+		for (int r = firstRun(seq.exceptionRuns, start); r < seq.exceptionRuns.length && seq.exceptionRuns[r] < start + length; r += 2) {
+			long end = Math.min(seq.exceptionRuns[r + 1], start + length);
+			for (long pos = Math.max(seq.exceptionRuns[r], start); pos < end; pos++) {
+				text[(int) (pos - start)] = seq.exceptionChars[r / 2];
+			}
+		}
+		return new NucleotideSeq.Builder(length).append(text, 0, length).build();
+	}
+
+	/**
+	 * Get the index of the run that contains or follows the position
+	 */
+	private static int firstRun(long[] runs, long pos) {
+		int r = Arrays.binarySearch(runs, pos);
+		return (r >= 0) ? r & ~1 : (-r - 1) & ~1;
+	}
+
+	public boolean contains(String name) {
+		return sequences.containsKey(name);
+	}
+
+	/**
+	 * Get the header line of the sequence without '>'
+	 */
+	public String getDescription(String name) {
+		Sequence seq = sequences.get(name);
+		return (seq == null) ? null : seq.description;
+	}
+
+	public long getLength(String name) {
+		Sequence seq = sequences.get(name);
+		return (seq == null) ? -1 : seq.length;
+	}
+
+	public List<String> getNames() {
+		return new ArrayList<String>(sequences.keySet());
+	}
+
+	/**
+	 * Number of bytes of packed bases
+	 */
+	public long getDataLength() {
+		return dataLength;
+	}
+}
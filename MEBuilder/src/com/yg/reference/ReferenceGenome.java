@@ -0,0 +1,123 @@
+package com.yg.reference;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.yg.exceptions.FileException;
+import com.yg.io_handlers.IOParameters;
+import com.yg.models.FASTASeq;
+
+/**
+ * Access to chromosome sequences of the reference genome (IOParameters.REF_SEQ_DIR, a file <chromosome>.fa per chromosome);
+ * If IOParameters.REF_PACK_FILE is set, the genome is loaded once into a packed store shared by all loci
+ * (mapped from the file, or built from REF_SEQ_DIR and written to the file), otherwise files are read through their index
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class ReferenceGenome {
+	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	private static PackedReference packed; // loaded once
+
+	/**
+	 * Load the packed store, if requested and not loaded yet
+	 * @return the store or null if the packed mode is off
+	 * @throws IOException
+	 * @throws FileException
+	 */
+	public static synchronized PackedReference load() throws IOException, FileException {
+		if (IOParameters.REF_PACK_FILE == null || IOParameters.REF_PACK_FILE.isEmpty()) {
+			return null;
+		}
+		if (packed != null) {
+			return packed;
+		}
+
+		File packFile = new File(IOParameters.REF_PACK_FILE);
+		if (packFile.exists()) {
+			LOGGER.info("Mapping packed reference genome " + packFile.getPath() + "\n");
+			packed = PackedReference.map(packFile.getPath());
+			return packed;
+		}
+
+		List<String> fastaFiles = getChromosomeFiles();
+		LOGGER.info("Packing reference genome of " + fastaFiles.size() + " files from " + IOParameters.REF_SEQ_DIR + "\n");
+		packed = PackedReference.build(fastaFiles);
+		try {
+			packed.write(packFile.getPath());
+		} catch (IOException e) {
+			LOGGER.warning("Cannot write packed reference genome " + packFile.getPath() + ": " + e.getMessage() + "\n"); // the store is still used in memory
+		}
+		return packed;
+	}
+
+	/**
+	 * Get FASTA files of chromosomes in REF_SEQ_DIR
+	 * @return
+	 */
+	private static List<String> getChromosomeFiles() {
+		File[] files = new File(IOParameters.REF_SEQ_DIR).listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".fa");
+			}
+		});
+		List<String> fastaFiles = new ArrayList<String>();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				fastaFiles.add(file.getPath());
+			}
+		}
+		return fastaFiles;
+	}
+
+	/**
+	 * Check if the chromosome is available
+	 * @param chromosome
+	 * @return
+	 * @throws IOException
+	 * @throws FileException
+	 */
+	public static boolean contains(String chromosome) throws IOException, FileException {
+		PackedReference reference = load();
+		if (reference != null) {
+			return reference.contains(chromosome);
+		}
+		File input = new File(getChromosomeFile(chromosome));
+		return input.exists() && !input.isDirectory();
+	}
+
+	/**
+	 * Fetch the region of the chromosome
+	 * @param chromosome
+	 * @param start - 0-based start
+	 * @param length - number of bases
+	 * @return sequence with the header line of the chromosome as the description
+	 * @throws IOException
+	 * @throws FileException
+	 */
+	public static FASTASeq fetch(String chromosome, long start, int length) throws IOException, FileException {
+		PackedReference reference = load();
+		if (reference != null) {
+			return new FASTASeq(reference.getDescription(chromosome), reference.fetch(chromosome, start, length));
+		}
+
+		IndexedFastaReader reader = IndexedFastaReader.getReader(getChromosomeFile(chromosome));
+		if (reader.getIndex().size() == 0) {
+			throw new FileException( "ERROR - ReferenceGenome: file + " + reader.getFastaFile() + " is an empty file" );
+		}
+		String name = reader.getIndex().getNames().get(0);
+		return new FASTASeq(reader.getDescription(name), reader.fetch(name, start, length));
+	}
+
+	public static String getChromosomeFile(String chromosome) {
+		return IOParameters.REF_SEQ_DIR + chromosome + ".fa";
+	}
+}
@@ -0,0 +1,315 @@
+package com.yg.reference;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.yg.exceptions.FileException;
+import com.yg.utilities.PatternSplitter;
+
+/**
+ * Prepares the reference genome for random access: splits the genome FASTA file into files <chromosome>.fa,
+ * writes their indexes (.fai) and, if requested, the packed genome (see PackedReference);
+ * The genome file is read once with large NIO buffers, bases of each chromosome are handed in chunks
+ * to a writer of the chromosome, so that several chromosomes are written in parallel
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class ReferencePreparer {
+	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	private static final int LINE_BASES = 60; // bases per line of chromosome files
+	private static final int READ_BUFFER_SIZE = 1 << 23;
+	private static final int CHUNK_SIZE = 1 << 22; // bases handed to a writer at once
+	private static final int CHUNKS_PER_THREAD = 8; // chunks read ahead of writers, per thread
+	private static final byte[] END = new byte[0]; // marks the end of a chromosome
+
+	private String genomeFile;
+	private String outputDir;
+	private String packFile; // not written if empty
+	private int numOfThreads;
+
+	private Semaphore chunkPermits; // limits memory of chunks read ahead
+	private ExecutorService executor;
+
+	/**
+	 * Constructor
+	 * @param genomeFile - FASTA file with all chromosomes
+	 * @param outputDir - folder for chromosome files and their indexes
+	 * @param packFile - packed genome file, not written if empty or null
+	 * @param numOfThreads - number of chromosomes written in parallel
+	 */
+	public ReferencePreparer(String genomeFile, String outputDir, String packFile, int numOfThreads) {
+		this.genomeFile = genomeFile;
+		this.outputDir = outputDir;
+		this.packFile = (packFile == null) ? "" : packFile;
+		this.numOfThreads = Math.max(1, numOfThreads);
+	}
+
+	/**
+	 * Split, index and pack the genome
+	 * @throws IOException
+	 * @throws FileException
+	 * @throws InterruptedException
+	 */
+	public void prepare() throws IOException, FileException, InterruptedException {
+		File dir = new File(outputDir);
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("ERROR - ReferencePreparer: cannot create folder " + outputDir);
+		}
+
+		chunkPermits = new Semaphore(numOfThreads * CHUNKS_PER_THREAD);
+		executor = Executors.newFixedThreadPool(numOfThreads);
+		List<Future<PackedReference.SequencePacker>> writers = new ArrayList<Future<PackedReference.SequencePacker>>();
+		try {
+			readGenome(writers);
+
+			List<PackedReference.SequencePacker> packers = new ArrayList<PackedReference.SequencePacker>();
+			for (Future<PackedReference.SequencePacker> writer : writers) {
+				packers.add(getResult(writer));
+			}
+			if (!packFile.isEmpty()) {
+				LOGGER.info("Writing packed reference genome " + packFile + "\n");
+				PackedReference.write(packFile, packers);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Read the genome file and start a writer for each chromosome
+	 * @param writers - writers in the order of chromosomes
+	 */
+	private void readGenome(List<Future<PackedReference.SequencePacker>> writers) throws IOException, FileException, InterruptedException {
+		FileInputStream in = new FileInputStream(genomeFile);
+		FileChannel channel = in.getChannel();
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			byte[] bytes = buffer.array();
+			Set<String> names = new HashSet<String>();
+
+			StringBuilder header = null; // header being read
+			boolean lineStart = true;
+			boolean started = false; // the first header was seen
+			ChromosomeWriter writer = null;
+			byte[] chunk = null;
+			int chunkLength = 0;
+
+			int length;
+			while ((length = channel.read(buffer)) >= 0) {
+				for (int i = 0; i < length; i++) {
+					byte c = bytes[i];
+					if (header != null) {
+						if (c == '\n') {
+							String description = header.toString().trim();
+							String name = PatternSplitter.PTRN_SPACES_SPLITTER.split(description)[0];
+							if (name.isEmpty() || !names.add(name)) {
+								throw new FileException("ERROR - ReferencePreparer: empty or repeated name of sequence " + name + " in " + genomeFile);
+							}
+							LOGGER.info("Parsing chromosome: " + name + " into separate file\n");
+							writer = new ChromosomeWriter(name, description);
+							writers.add(executor.submit(writer));
+							header = null;
+						} else if (c != '\r') {
+							header.append((char) c);
+						}
+						lineStart = c == '\n';
+						continue;
+					}
+
+					if (lineStart && c == '>') {
+						if (writer != null) {
+							writer.put(chunk, chunkLength);
+							writer.put(END, 0);
+							chunk = null;
+							chunkLength = 0;
+						}
+						header = new StringBuilder();
+						started = true;
+						lineStart = false;
+						continue;
+					}
+					lineStart = c == '\n';
+					if ((c & 0xFF) <= ' ') { // line ends and spaces
+						continue;
+					}
+					if (!started) {
+						throw new FileException("ERROR - ReferencePreparer: first line of " + genomeFile + " should start with '>'");
+					}
+
+					if (chunk == null) {
+						while (!chunkPermits.tryAcquire(1, TimeUnit.SECONDS)) {
+							checkWriters(writers); // a failed writer would not release its chunks
+						}
+						chunk = new byte[CHUNK_SIZE];
+					}
+					chunk[chunkLength++] = c;
+					if (chunkLength == CHUNK_SIZE) {
+						writer.put(chunk, chunkLength);
+						chunk = null;
+						chunkLength = 0;
+					}
+				}
+				buffer.clear();
+			}
+
+			if (header != null) { // header at the end of the file without a line end
+				throw new FileException("ERROR - ReferencePreparer: no sequence after the last header of " + genomeFile);
+			}
+			if (writer == null) {
+				throw new FileException("ERROR - ReferencePreparer: file " + genomeFile + " is an empty file");
+			}
+			writer.put(chunk, chunkLength);
+			writer.put(END, 0);
+		} finally {
+			channel.close();
+			in.close();
+		}
+	}
+
+	/**
+	 * Writer of one chromosome: FASTA file with lines of LINE_BASES bases, its index and packed bases
+	 */
+	private class ChromosomeWriter implements Callable<PackedReference.SequencePacker> {
+		private String name;
+		private String description;
+		private BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(numOfThreads * CHUNKS_PER_THREAD + 1);
+		private BlockingQueue<Integer> chunkLengths = new ArrayBlockingQueue<Integer>(numOfThreads * CHUNKS_PER_THREAD + 1);
+
+		public ChromosomeWriter(String name, String description) {
+			this.name = name;
+			this.description = description;
+		}
+
+		/**
+		 * Hand a chunk of bases to the writer
+		 */
+		void put(byte[] chunk, int length) throws InterruptedException {
+			if (chunk == null) {
+				return;
+			}
+			chunkLengths.put(length);
+			chunks.put(chunk);
+		}
+
+		@Override
+		public PackedReference.SequencePacker call() throws Exception {
+			PackedReference.SequencePacker packer = packFile.isEmpty() ? null : new PackedReference.SequencePacker(name, description);
+			String fastaFile = new File(outputDir, name + ".fa").getPath();
+			String tmpFile = fastaFile + ".tmp";
+
+			FileOutputStream out = new FileOutputStream(tmpFile);
+			FileChannel channel = out.getChannel();
+			long length = 0;
+			long offset;
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+				byte[] headerLine = (">" + description + "\n").getBytes("US-ASCII");
+				buffer.put(headerLine);
+				offset = headerLine.length;
+
+				int column = 0;
+				while (true) {
+					byte[] chunk = chunks.take();
+					if (chunk == END) {
+						break;
+					}
+					int chunkLength = chunkLengths.take();
+					for (int i = 0; i < chunkLength; i++) {
+						if (buffer.remaining() < 2) {
+							flush(channel, buffer);
+						}
+						buffer.put(chunk[i]);
+						if (++column == LINE_BASES) {
+							buffer.put((byte) '\n');
+							column = 0;
+						}
+					}
+					if (packer != null) {
+						packer.add(chunk, 0, chunkLength);
+					}
+					length += chunkLength;
+					chunkPermits.release();
+				}
+				if (column > 0) {
+					buffer.put((byte) '\n');
+				}
+				flush(channel, buffer);
+			} finally {
+				channel.close();
+				out.close();
+			}
+
+			File fasta = new File(fastaFile);
+			fasta.delete();
+			if (!new File(tmpFile).renameTo(fasta)) {
+				throw new IOException("ERROR - ReferencePreparer: cannot create " + fastaFile);
+			}
+
+			// The index is written after the FASTA file, so that it is not older
+			FastaIndex index = new FastaIndex();
+			index.add(new FastaIndex.Entry(name, length, offset, LINE_BASES, LINE_BASES + 1));
+			index.write(fastaFile + ".fai");
+
+			LOGGER.info("Chromosome " + name + " of " + length + " bases written into " + fastaFile + "\n");
+			return packer;
+		}
+
+		private void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Rethrow the exception of a failed writer
+	 */
+	private static void checkWriters(List<Future<PackedReference.SequencePacker>> writers) throws IOException, FileException, InterruptedException {
+		for (Future<PackedReference.SequencePacker> writer : writers) {
+			if (writer.isDone()) {
+				getResult(writer);
+			}
+		}
+	}
+
+	/**
+	 * Get the result of a writer, rethrowing its exception
+	 */
+	private static PackedReference.SequencePacker getResult(Future<PackedReference.SequencePacker> writer) throws IOException, FileException, InterruptedException {
+		try {
+			return writer.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof FileException) {
+				throw (FileException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+}
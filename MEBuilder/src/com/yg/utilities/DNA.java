@@ -0,0 +1,121 @@
+package com.yg.utilities;
+
+/**
+ * Operations on DNA sequences with lookup tables over ASCII codes of bases;
+ * IUPAC ambiguity codes are complemented to their counterparts (R/Y, K/M, B/V, D/H; S, W and N to themselves),
+ * the case of bases is kept and any other character is complemented to N
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class DNA {
+
+	public static final byte CODE_OTHER = 4; // code of characters other than A, C, G, T (see encode)
+
+	private static final byte[] COMPLEMENT = new byte[256];
+	private static final byte[] CODE = new byte[256];
+	static {
+		for (int c = 0; c < CODE.length; c++) {
+			CODE[c] = CODE_OTHER;
+		}
+		String acgt = "ACGT";
+		for (int i = 0; i < acgt.length(); i++) {
+			CODE[acgt.charAt(i)] = (byte) i;
+			CODE[Character.toLowerCase(acgt.charAt(i))] = (byte) i;
+		}
+
+		for (int c = 0; c < COMPLEMENT.length; c++) {
+			COMPLEMENT[c] = 'N';
+		}
+		String bases = "ACGTURYKMSWBDHVN";
+		String complements = "TGCAAYRMKSWVHDBN";
+		for (int i = 0; i < bases.length(); i++) {
+			char base = bases.charAt(i);
+			char complement = complements.charAt(i);
+			COMPLEMENT[base] = (byte) complement;
+			COMPLEMENT[Character.toLowerCase(base)] = (byte) Character.toLowerCase(complement);
+		}
+	}
+
+	/**
+	 * Get complement base
+	 * @param base - ASCII code of the base
+	 * @return
+	 */
+	public static byte complement(byte base) {
+		return COMPLEMENT[base & 0xFF];
+	}
+
+	public static char complement(char base) {
+		return (base < COMPLEMENT.length) ? (char) COMPLEMENT[base] : 'N';
+	}
+
+	/**
+	 * Reverse complement the sequence in place
+	 * @param seq - ASCII codes of bases
+	 */
+	public static void reverseComplement(byte[] seq) {
+		reverseComplement(seq, 0, seq.length);
+	}
+
+	/**
+	 * Reverse complement a part of the sequence in place
+	 * @param seq - ASCII codes of bases
+	 * @param start
+	 * @param end - exclusive end
+	 */
+	public static void reverseComplement(byte[] seq, int start, int end) {
+		int i = start;
+		int j = end - 1;
+		while (i < j) {
+			byte left = seq[i];
+			seq[i++] = COMPLEMENT[seq[j] & 0xFF];
+			seq[j--] = COMPLEMENT[left & 0xFF];
+		}
+		if (i == j) { // middle base of odd length
+			seq[i] = COMPLEMENT[seq[i] & 0xFF];
+		}
+	}
+
+	/**
+	 * Create reverse complementary sequence
+	 * @param seq
+	 * @return
+	 */
+	public static String reverseComplement(String seq) {
+		int length = seq.length();
+		char[] rc = new char[length];
+		for (int i = 0; i < length; i++) {
+			rc[length - 1 - i] = complement(seq.charAt(i));
+		}
+		return new String(rc);
+	}
+
+	/**
+	 * Encode bases as 2-bit codes A=0, C=1, G=2, T=3 (either case), CODE_OTHER for other characters
+	 * @param seq
+	 * @return
+	 */
+	public static byte[] encode(CharSequence seq) {
+		byte[] codes = new byte[seq.length()];
+		for (int i = 0; i < codes.length; i++) {
+			char c = seq.charAt(i);
+			codes[i] = (c < CODE.length) ? CODE[c] : CODE_OTHER;
+		}
+		return codes;
+	}
+
+	/**
+	 * Create reverse complementary sequence of codes (see encode)
+	 * @param codes
+	 * @return
+	 */
+	public static byte[] reverseComplementCodes(byte[] codes) {
+		byte[] rc = new byte[codes.length];
+		for (int i = 0; i < codes.length; i++) {
+			byte c = codes[codes.length - 1 - i];
+			rc[i] = (c == CODE_OTHER) ? CODE_OTHER : (byte) (3 - c);
+		}
+		return rc;
+	}
+}
@@ -0,0 +1,76 @@
+package com.yg.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimizer sketches of sequences: the k-mer with the smallest hash in each window of w consecutive k-mers;
+ * Two sequences sharing a stretch of w+k-1 bases share the minimizer of that stretch,
+ * so shared minimizers point to candidate overlaps without comparing all k-mers
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class Minimizers {
+
+	/**
+	 * Get minimizers of the sequence, k-mers with other characters than ACGT are skipped
+	 * @param codes - bases as codes (see DNA.encode)
+	 * @param k - k-mer length, up to 32
+	 * @param w - k-mers per window
+	 * @return list of {hash, position}, a sequence shorter than a window gives the minimizer of all its k-mers
+	 */
+	public static List<long[]> getMinimizers(byte[] codes, int k, int w) {
+		List<long[]> minimizers = new ArrayList<long[]>();
+		int count = codes.length - k + 1;
+		if (count <= 0) {
+			return minimizers;
+		}
+		long[] hashes = new long[count];
+		long mask = (k == 32) ? -1L : (1L << 2*k) - 1;
+		long kmer = 0;
+		int valid = 0; // ACGT bases before the position
+		for (int i = 0; i < codes.length; i++) {
+			if (codes[i] == DNA.CODE_OTHER) {
+				valid = 0;
+				kmer = 0;
+			} else {
+				valid++;
+				kmer = ((kmer << 2) | codes[i]) & mask;
+			}
+			if (i >= k - 1) {
+				hashes[i - k + 1] = (valid >= k) ? hash(kmer) : Long.MAX_VALUE;
+			}
+		}
+
+		int last = -1;
+		for (int start = 0; start + w <= count || (start == 0 && count < w); start++) {
+			int min = start;
+			for (int i = start + 1; i < start + w && i < count; i++) {
+				if (hashes[i] < hashes[min]) {
+					min = i;
+				}
+			}
+			if (min != last && hashes[min] != Long.MAX_VALUE) {
+				minimizers.add(new long[] {hashes[min], min});
+				last = min;
+			}
+		}
+		return minimizers;
+	}
+
+	/**
+	 * Invertible hash of a k-mer, so that minimizers are not biased to poly-A
+	 * @param kmer
+	 * @return non-negative hash
+	 */
+	public static long hash(long kmer) {
+		long h = kmer;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h & Long.MAX_VALUE;
+	}
+}
@@ -34,6 +34,8 @@ public class PatternSplitter {
 	public static final Pattern FULL_MATCH_M = Pattern.compile("^\\d+M$");
 	
 	public static final Pattern CHROMOSOME_VALID = Pattern.compile("^chr[0-9XY]+$");
+	public static final Pattern POOR_SEQUENCE_N = Pattern.compile("[Nn]{4,}");
+	public static final Pattern BAM_SAMPLE_NAME = Pattern.compile("([^\\/]+)\\.bam");
 
 	/**
 	 * Convert line with patterns into List
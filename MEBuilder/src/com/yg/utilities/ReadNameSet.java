@@ -0,0 +1,273 @@
+package com.yg.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Set of read names with open addressing over 64-bit hashes of names;
+ * In the exact mode names are also kept in a byte arena and compared when hashes are equal,
+ * otherwise names with equal hashes are treated as the same name
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class ReadNameSet {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final boolean exact; // compare names when hashes are equal
+
+	private long[] hashes = new long[64]; // hash of the name in each slot; 0 marks empty slots
+	private int[] ordinals = new int[64]; // index of the name in each slot in the order of adding
+	private int size = 0;
+
+	// Names in the order of adding (exact mode) or their hashes (hash mode)
+	private byte[] names = new byte[0];
+	private int namesLength = 0;
+	private int[] nameStarts = new int[17]; // start of each name and the end of the last one
+	private long[] hashesByOrdinal = new long[16];
+
+	/**
+	 * Constructor
+	 * @param exact - compare names when hashes are equal
+	 */
+	public ReadNameSet(boolean exact) {
+		this.exact = exact;
+		if (exact) {
+			names = new byte[1 << 10];
+		}
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of ASCII characters of the name
+	 * @param name
+	 * @param start
+	 * @param end - exclusive end
+	 * @return
+	 */
+	public static long hash(CharSequence name, int start, int end) {
+		long hash = FNV_OFFSET;
+		for (int i = start; i < end; i++) {
+			hash ^= name.charAt(i) & 0xFF;
+			hash *= FNV_PRIME;
+		}
+		return (hash == 0) ? 1 : hash;
+	}
+
+	/**
+	 * Add the name
+	 * @param name
+	 * @return true if the name was not in the set
+	 */
+	public boolean add(CharSequence name) {
+		return add(name, 0, name.length());
+	}
+
+	/**
+	 * Add a part of the text as a name, e.g. the first field of a SAM line
+	 * @param text
+	 * @param start
+	 * @param end - exclusive end
+	 * @return true if the name was not in the set
+	 */
+	public boolean add(CharSequence text, int start, int end) {
+		long hash = hash(text, start, end);
+		int slot = findSlot(hash, text, start, end);
+		if (hashes[slot] != 0) {
+			return false;
+		}
+		insert(slot, hash);
+		if (exact) {
+			ensureNamesCapacity(end - start);
+			for (int i = start; i < end; i++) {
+				names[namesLength++] = (byte) text.charAt(i);
+			}
+			nameStarts[size] = namesLength;
+		}
+		return true;
+	}
+
+	/**
+	 * Add all names of another set
+	 * @param other - set of the same mode
+	 */
+	public void addAll(ReadNameSet other) {
+		if (other.exact != exact) {
+			throw new IllegalArgumentException("ERROR - ReadNameSet: sets of different modes");
+		}
+		for (int ordinal = 0; ordinal < other.size; ordinal++) {
+			if (!exact) {
+				addHash(other.hashesByOrdinal[ordinal]);
+				continue;
+			}
+			int start = other.nameStarts[ordinal];
+			int end = other.nameStarts[ordinal + 1];
+			long hash = other.hashesByOrdinal[ordinal];
+			int slot = findSlot(hash, other.names, start, end);
+			if (hashes[slot] == 0) {
+				insert(slot, hash);
+				ensureNamesCapacity(end - start);
+				System.arraycopy(other.names, start, names, namesLength, end - start);
+				namesLength += end - start;
+				nameStarts[size] = namesLength;
+			}
+		}
+	}
+
+	/**
+	 * Add a name by its hash (see hash()), the set should not be exact
+	 * @param hash
+	 * @return true if the hash was not in the set
+	 */
+	public boolean addHash(long hash) {
+		if (exact) {
+			throw new IllegalStateException("ERROR - ReadNameSet: names are required in the exact mode");
+		}
+		hash = (hash == 0) ? 1 : hash;
+		int slot = findSlot(hash);
+		if (hashes[slot] != 0) {
+			return false;
+		}
+		insert(slot, hash);
+		return true;
+	}
+
+	public boolean contains(CharSequence name) {
+		return indexOf(name) >= 0;
+	}
+
+	/**
+	 * Check if the hash is in the set, the set should not be exact
+	 * @param hash
+	 * @return
+	 */
+	public boolean containsHash(long hash) {
+		if (exact) {
+			throw new IllegalStateException("ERROR - ReadNameSet: names are required in the exact mode");
+		}
+		hash = (hash == 0) ? 1 : hash;
+		return hashes[findSlot(hash)] != 0;
+	}
+
+	/**
+	 * Get the index of the name in the order of adding
+	 * @param name
+	 * @return index or -1 if the name is not in the set
+	 */
+	public int indexOf(CharSequence name) {
+		int slot = findSlot(hash(name, 0, name.length()), name, 0, name.length());
+		return (hashes[slot] == 0) ? -1 : ordinals[slot];
+	}
+
+	/**
+	 * Find the slot of the hash (hash mode) or the empty slot to insert it to
+	 */
+	private int findSlot(long hash) {
+		int mask = hashes.length - 1;
+		int slot = (int) (hash ^ (hash >>> 29)) & mask;
+		while (hashes[slot] != 0 && hashes[slot] != hash) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Find the slot of the name or the empty slot to insert it to
+	 */
+	private int findSlot(long hash, CharSequence text, int start, int end) {
+		int mask = hashes.length - 1;
+		int slot = (int) (hash ^ (hash >>> 29)) & mask;
+		while (hashes[slot] != 0) {
+			if (hashes[slot] == hash && (!exact || equalsName(ordinals[slot], text, start, end))) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private int findSlot(long hash, byte[] text, int start, int end) {
+		int mask = hashes.length - 1;
+		int slot = (int) (hash ^ (hash >>> 29)) & mask;
+		while (hashes[slot] != 0) {
+			if (hashes[slot] == hash && equalsName(ordinals[slot], text, start, end)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private boolean equalsName(int ordinal, CharSequence text, int start, int end) {
+		int nameStart = nameStarts[ordinal];
+		if (nameStarts[ordinal + 1] - nameStart != end - start) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (names[nameStart + i - start] != (byte) text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean equalsName(int ordinal, byte[] text, int start, int end) {
+		int nameStart = nameStarts[ordinal];
+		if (nameStarts[ordinal + 1] - nameStart != end - start) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (names[nameStart + i - start] != text[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Put the hash to the empty slot; the name (exact mode) is appended by the caller
+	 */
+	private void insert(int slot, long hash) {
+		hashes[slot] = hash;
+		ordinals[slot] = size;
+		if (size == hashesByOrdinal.length) {
+			hashesByOrdinal = Arrays.copyOf(hashesByOrdinal, 2 * size);
+			if (exact) {
+				nameStarts = Arrays.copyOf(nameStarts, 2 * size + 1);
+			}
+		}
+		hashesByOrdinal[size] = hash;
+		size++;
+		if (2 * size > hashes.length) {
+			rehash();
+		}
+	}
+
+	/**
+	 * Double the table
+	 */
+	private void rehash() {
+		hashes = new long[2 * hashes.length];
+		ordinals = new int[hashes.length];
+		int mask = hashes.length - 1;
+		for (int ordinal = 0; ordinal < size; ordinal++) {
+			long hash = hashesByOrdinal[ordinal];
+			int slot = (int) (hash ^ (hash >>> 29)) & mask;
+			while (hashes[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			hashes[slot] = hash;
+			ordinals[slot] = ordinal;
+		}
+	}
+
+	private void ensureNamesCapacity(int length) {
+		if (namesLength + length > names.length) {
+			names = Arrays.copyOf(names, Math.max(namesLength + length, 2 * names.length));
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+}
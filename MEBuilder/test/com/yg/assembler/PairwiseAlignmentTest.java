@@ -0,0 +1,95 @@
+package com.yg.assembler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yg.models.Bl2seqOutputData;
+import com.yg.models.FASTASeq;
+import com.yg.utilities.DNA;
+
+/**
+ * Alignments of fixed overlapping sequences, coordinates are reported as bl2seq tabular output:
+ * 1-based, the subject start greater than its end on '-'
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class PairwiseAlignmentTest {
+
+	private static final String GENOME = randomSequence(3000, 1);
+	private static final String CONTIG1 = GENOME.substring(0, 1200);
+	private static final String CONTIG2 = GENOME.substring(900, 2500); // overlaps the last 300 bases of CONTIG1
+
+	private PairwiseAlignment aligner = new PairwiseAlignment();
+
+	@Test
+	public void alignsOverlapOnPlusStrand() {
+		List<Bl2seqOutputData> alignments = aligner.align(new FASTASeq("Contig1", CONTIG1), new FASTASeq("Contig2", CONTIG2), true);
+		assertTrue(!alignments.isEmpty());
+
+		Bl2seqOutputData best = alignments.get(0);
+		assertEquals("Contig1", best.queryId);
+		assertEquals("Contig2", best.subjectId);
+		assertEquals('+', best.subjectStrand);
+		assertEquals(901, best.queryStart);
+		assertEquals(1200, best.queryEnd);
+		assertEquals(1, best.subjectStart);
+		assertEquals(300, best.subjectEnd);
+		assertEquals(300, best.alignmentLength);
+		assertEquals(100, best.identities, 1e-9);
+	}
+
+	@Test
+	public void alignsOverlapOnMinusStrand() {
+		List<Bl2seqOutputData> alignments = aligner.align(new FASTASeq("Contig1", CONTIG1), new FASTASeq("Contig2", DNA.reverseComplement(CONTIG2)), true);
+		assertTrue(!alignments.isEmpty());
+
+		Bl2seqOutputData best = alignments.get(0);
+		assertEquals('-', best.subjectStrand);
+		assertEquals(901, best.queryStart);
+		assertEquals(1200, best.queryEnd);
+		assertEquals(1600, best.subjectStart);
+		assertEquals(1301, best.subjectEnd);
+		assertEquals(300, best.alignmentLength);
+	}
+
+	@Test
+	public void alignsOverlapWithMismatchAndGap() {
+		// A substitution and a deletion of one base in the middle of the overlap
+		StringBuilder contig2 = new StringBuilder(CONTIG2);
+		contig2.setCharAt(100, (contig2.charAt(100) == 'A') ? 'C' : 'A');
+		contig2.deleteCharAt(200);
+
+		List<Bl2seqOutputData> alignments = aligner.align(new FASTASeq("Contig1", CONTIG1), new FASTASeq("Contig2", contig2.toString()), true);
+		assertTrue(!alignments.isEmpty());
+
+		Bl2seqOutputData best = alignments.get(0);
+		assertEquals('+', best.subjectStrand);
+		assertEquals(901, best.queryStart);
+		assertEquals(1200, best.queryEnd);
+		assertEquals(1, best.subjectStart);
+		assertEquals(299, best.subjectEnd);
+		assertEquals(300, best.alignmentLength); // 299 identities, 1 mismatch and 1 gap column
+		assertEquals(100.0 * 298 / 300, best.identities, 0.01);
+	}
+
+	@Test
+	public void findsNoAlignmentOfUnrelatedSequences() {
+		String other = randomSequence(1500, 2);
+		assertEquals(0, aligner.align(new FASTASeq("Contig1", CONTIG1), new FASTASeq("Contig2", other), true).size());
+	}
+
+	private static String randomSequence(int length, long seed) {
+		Random random = new Random(seed);
+		StringBuilder seq = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			seq.append("ACGT".charAt(random.nextInt(4)));
+		}
+		return seq.toString();
+	}
+}
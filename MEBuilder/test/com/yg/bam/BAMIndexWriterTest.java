@@ -0,0 +1,126 @@
+package com.yg.bam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Round trip of BAM indexes: records are written to a BGZF file and indexed by BAMIndexWriter,
+ * chunks of BAMIndex queries are read back and have to contain every record overlapping the region
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BAMIndexWriterTest {
+
+	private static final int NUM_OF_REFS = 3;
+
+	private File dataFile;
+	private File indexFile;
+	private List<int[]> records = new ArrayList<int[]>(); // {id, refId, beg, end} in the order of the file
+
+	@Before
+	public void setUp() throws IOException {
+		dataFile = File.createTempFile("records", ".bgzf");
+		indexFile = File.createTempFile("records", ".bai");
+
+		// Coordinate-sorted records of variable size, long and short ones, over several 16kb windows
+		Random random = new Random(7);
+		BGZFWriter writer = new BGZFWriter(dataFile.getPath());
+		BAMIndexWriter indexWriter = new BAMIndexWriter(NUM_OF_REFS);
+		int id = 0;
+		for (int refId = 0; refId < NUM_OF_REFS; refId++) {
+			if (refId == 1) {
+				continue; // a reference without reads
+			}
+			int beg = 0;
+			for (int r = 0; r < 3000; r++) {
+				beg += random.nextInt(200);
+				int end = beg + 1 + ((random.nextInt(20) == 0) ? random.nextInt(40000) : random.nextInt(150));
+				long recordStart = writer.getVirtualOffset();
+				writer.writeInt(id);
+				writer.writeInt(refId);
+				writer.writeInt(beg);
+				writer.writeInt(end);
+				byte[] payload = new byte[random.nextInt(300)];
+				random.nextBytes(payload);
+				writer.writeInt(payload.length);
+				writer.write(payload, 0, payload.length);
+				indexWriter.addRead(refId, beg, end, recordStart, writer.getVirtualOffset());
+				records.add(new int[] {id, refId, beg, end});
+				id++;
+			}
+		}
+		writer.close();
+		indexWriter.write(indexFile.getPath());
+	}
+
+	@After
+	public void tearDown() {
+		dataFile.delete();
+		indexFile.delete();
+	}
+
+	@Test
+	public void chunksContainAllOverlappingRecords() throws IOException {
+		BAMIndex index = new BAMIndex(indexFile.getPath());
+		BGZFReader reader = new BGZFReader(dataFile.getPath());
+		try {
+			Random random = new Random(11);
+			for (int q = 0; q < 300; q++) {
+				int refId = random.nextInt(NUM_OF_REFS);
+				int beg = random.nextInt(350000);
+				int end = beg + 1 + random.nextInt((q % 2 == 0) ? 500 : 50000);
+
+				Set<Integer> found = new HashSet<Integer>();
+				long[] chunks = index.getChunks(refId, beg, end);
+				for (int c = 0; c < chunks.length; c += 2) {
+					assertTrue(chunks[c] < chunks[c + 1]);
+					reader.seek(chunks[c]);
+					while (reader.getVirtualOffset() < chunks[c + 1]) {
+						found.add(readRecord(reader));
+					}
+				}
+
+				for (int[] record : records) {
+					if (record[1] == refId && record[2] < end && record[3] > beg) {
+						assertTrue("record " + record[0] + " of " + refId + ":" + beg + "-" + end, found.contains(record[0]));
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void noChunksForReferenceWithoutReads() throws IOException {
+		BAMIndex index = new BAMIndex(indexFile.getPath());
+		assertEquals(0, index.getChunks(1, 0, 100000).length);
+		assertEquals(0, index.getChunks(NUM_OF_REFS, 0, 100000).length);
+	}
+
+	/**
+	 * Read a record, return its id
+	 */
+	private static int readRecord(BGZFReader reader) throws IOException {
+		int id = reader.readInt();
+		reader.readInt(); // reference
+		reader.readInt(); // start
+		reader.readInt(); // end
+		byte[] payload = new byte[reader.readInt()];
+		reader.readFully(payload, 0, payload.length);
+		return id;
+	}
+}
@@ -0,0 +1,112 @@
+package com.yg.bam;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Round trip of BGZF files: data written by BGZFWriter is read back by BGZFReader,
+ * sequentially and from virtual offsets reported while writing
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class BGZFWriterTest {
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("bgzf", ".gz");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void readsBackWrittenData() throws IOException {
+		// Compressible and random data, several blocks
+		byte[] data = new byte[300000];
+		Random random = new Random(1);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (i < 150000) ? (byte) "ACGT".charAt(random.nextInt(4)) : (byte) random.nextInt(256);
+		}
+
+		BGZFWriter writer = new BGZFWriter(file.getPath());
+		int[] parts = {0, 1, 17, 65280, 65281, 100000, 150000, 200003, data.length};
+		long[] offsets = new long[parts.length];
+		for (int p = 0; p < parts.length - 1; p++) {
+			offsets[p] = writer.getVirtualOffset();
+			writer.write(data, parts[p], parts[p + 1] - parts[p]);
+		}
+		offsets[parts.length - 1] = writer.getVirtualOffset();
+		writer.close();
+
+		// Sequential read
+		BGZFReader reader = new BGZFReader(file.getPath());
+		try {
+			byte[] read = new byte[data.length];
+			reader.readFully(read, 0, read.length);
+			assertArrayEquals(data, read);
+			assertTrue(reader.isEOF());
+
+			// Read from each reported offset
+			for (int p = parts.length - 2; p >= 0; p--) {
+				reader.seek(offsets[p]);
+				byte[] part = new byte[parts[p + 1] - parts[p]];
+				reader.readFully(part, 0, part.length);
+				for (int i = 0; i < part.length; i++) {
+					assertEquals(data[parts[p] + i], part[i]);
+				}
+				if (p + 1 < parts.length - 1) { // the last block ends at the end of file
+					assertEquals(offsets[p + 1], reader.getVirtualOffset());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void readsBackIntegers() throws IOException {
+		int[] values = {0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 123456789};
+		BGZFWriter writer = new BGZFWriter(file.getPath());
+		for (int value : values) {
+			writer.writeInt(value);
+		}
+		writer.close();
+
+		BGZFReader reader = new BGZFReader(file.getPath());
+		try {
+			for (int value : values) {
+				assertEquals(value, reader.readInt());
+			}
+			assertTrue(reader.isEOF());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void emptyFileHasEndOfFileBlockOnly() throws IOException {
+		new BGZFWriter(file.getPath()).close();
+		assertEquals(28, file.length());
+
+		BGZFReader reader = new BGZFReader(file.getPath());
+		try {
+			assertTrue(reader.isEOF());
+		} finally {
+			reader.close();
+		}
+	}
+}
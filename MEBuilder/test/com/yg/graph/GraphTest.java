@@ -0,0 +1,79 @@
+package com.yg.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Best paths of a fixed overlap graph: paths of fewer edges first, then of larger weights
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class GraphTest {
+
+	private static final long TIME_LIMIT = 10000;
+
+	private Graph graph;
+
+	@Before
+	public void setUp() {
+		List<Vertex> vertices = new ArrayList<Vertex>();
+		for (int i = 0; i < 7; i++) {
+			vertices.add(new Vertex(String.valueOf(i), "contig" + i));
+		}
+		graph = new Graph(vertices);
+		graph.addNewEdge(0, 4, 50);
+		graph.addNewEdge(0, 1, 200);
+		graph.addNewEdge(1, 4, 200);
+		graph.addNewEdge(0, 5, 100);
+		graph.addNewEdge(5, 4, 100);
+		graph.addNewEdge(0, 2, 20);
+		graph.addNewEdge(2, 3, 300);
+		graph.addNewEdge(3, 4, 300);
+		// vertex 6 has no edges
+	}
+
+	@Test
+	public void ranksPathsByEdgesThenWeights() {
+		List<List<Vertex>> paths = graph.getBestPaths(0, 4, 10, TIME_LIMIT);
+		assertEquals(4, paths.size());
+		assertEquals("[0, 4]", ids(paths.get(0)));
+		assertEquals("[0, 1, 4]", ids(paths.get(1)));
+		assertEquals("[0, 5, 4]", ids(paths.get(2)));
+		assertEquals("[0, 2, 3, 4]", ids(paths.get(3)));
+	}
+
+	@Test
+	public void returnsAtMostKPaths() {
+		List<List<Vertex>> paths = graph.getBestPaths(0, 4, 2, TIME_LIMIT);
+		assertEquals(2, paths.size());
+		assertEquals("[0, 4]", ids(paths.get(0)));
+		assertEquals("[0, 1, 4]", ids(paths.get(1)));
+	}
+
+	@Test
+	public void returnsPathsInBothDirections() {
+		List<List<Vertex>> paths = graph.getBestPaths(4, 0, 10, TIME_LIMIT);
+		assertEquals(4, paths.size());
+		assertEquals("[4, 0]", ids(paths.get(0)));
+		assertEquals("[4, 3, 2, 0]", ids(paths.get(3)));
+	}
+
+	@Test
+	public void findsNoPathToDisconnectedVertex() {
+		assertEquals(0, graph.getBestPaths(0, 6, 10, TIME_LIMIT).size());
+	}
+
+	private static String ids(List<Vertex> path) {
+		List<String> ids = new ArrayList<String>();
+		for (Vertex v : path) {
+			ids.add(v.getId());
+		}
+		return ids.toString();
+	}
+}
@@ -0,0 +1,114 @@
+package com.yg.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yg.utilities.DNA;
+
+/**
+ * Round trip of packed sequences: text packed into NucleotideSeq has to be unpacked unchanged,
+ * including views, concatenations and reverse complements
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class NucleotideSeqTest {
+
+	private static final String ALPHABET = "ACGTACGTACGTacgtNnRYKM-*";
+
+	@Test
+	public void unpacksPackedText() {
+		Random random = new Random(1);
+		for (int n = 0; n < 500; n++) {
+			String text = randomText(random, random.nextInt(300));
+			NucleotideSeq seq = NucleotideSeq.valueOf(text);
+			assertEquals(text.length(), seq.length());
+			assertEquals(text, seq.toString());
+			for (int i = 0; i < text.length(); i++) {
+				assertEquals(text.charAt(i), seq.charAt(i));
+			}
+			assertEquals(text.hashCode(), seq.hashCode());
+		}
+	}
+
+	@Test
+	public void unpacksViewsAndConcatenations() {
+		Random random = new Random(2);
+		for (int n = 0; n < 500; n++) {
+			String text = randomText(random, 1 + random.nextInt(300));
+			NucleotideSeq seq = NucleotideSeq.valueOf(text);
+			int start = random.nextInt(text.length() + 1);
+			int end = start + random.nextInt(text.length() - start + 1);
+			int from = random.nextInt(text.length() + 1);
+
+			NucleotideSeq view = seq.subSequence(start, end);
+			assertEquals(text.substring(start, end), view.toString());
+			assertEquals(text.substring(start, end), view.compact().toString());
+			assertEquals(text.substring(from), seq.subSequence(from).toString());
+			assertEquals(text.substring(start, end) + text.substring(from), view.concat(seq.subSequence(from)).toString());
+			assertEquals(NucleotideSeq.valueOf(text.substring(start, end)), view);
+		}
+	}
+
+	@Test
+	public void reverseComplementMatchesText() {
+		Random random = new Random(3);
+		for (int n = 0; n < 200; n++) {
+			String text = randomText(random, random.nextInt(200));
+			NucleotideSeq seq = NucleotideSeq.valueOf(text);
+			assertEquals(DNA.reverseComplement(text), seq.reverseComplement().toString());
+			assertEquals(DNA.reverseComplement(DNA.reverseComplement(text)), seq.reverseComplement().reverseComplement().toString()); // other characters become N
+		}
+	}
+
+	@Test
+	public void packsBasesInTwoBits() {
+		NucleotideSeq seq = NucleotideSeq.valueOf("ACGTNacgt");
+		int[] codes = {0, 1, 2, 3, 0, 0, 1, 2, 3};
+		for (int i = 0; i < codes.length; i++) {
+			assertEquals(codes[i], seq.getCode(i));
+		}
+		assertEquals(0 | 1 << 2 | 2 << 4 | 3 << 6, seq.getKmer(0, 4));
+		assertTrue(seq.isUnambiguous(0, 4));
+		assertFalse(seq.isUnambiguous(2, 5));
+		assertTrue(seq.isUnambiguous(5, 9));
+	}
+
+	@Test
+	public void keepsPackedInstance() {
+		NucleotideSeq seq = NucleotideSeq.valueOf("ACGT");
+		assertSame(seq, NucleotideSeq.valueOf(seq));
+		assertSame(seq, seq.subSequence(0, 4));
+		assertTrue(NucleotideSeq.valueOf("").isEmpty());
+		assertEquals("", NucleotideSeq.EMPTY.toString());
+	}
+
+	/**
+	 * Random text with runs of uppercase bases, lowercase bases, N and any characters, as in soft-masked genomes
+	 */
+	private static String randomText(Random random, int length) {
+		StringBuilder text = new StringBuilder(length);
+		int kind = random.nextInt(4);
+		for (int i = 0; i < length; i++) {
+			if (random.nextInt(20) == 0) {
+				kind = random.nextInt(4);
+			}
+			if (kind == 0) {
+				text.append("ACGT".charAt(random.nextInt(4)));
+			} else if (kind == 1) {
+				text.append("acgt".charAt(random.nextInt(4)));
+			} else if (kind == 2) {
+				text.append('N');
+			} else {
+				text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+		}
+		return text.toString();
+	}
+}
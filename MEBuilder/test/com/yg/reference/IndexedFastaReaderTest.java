@@ -0,0 +1,133 @@
+package com.yg.reference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.yg.exceptions.FileException;
+
+/**
+ * Round trip of indexed FASTA access: a FASTA file is indexed by FastaIndex.build,
+ * regions fetched by IndexedFastaReader have to match the written sequences
+ *
+ * @author Yaroslava Girilishena
+ *
+ */
+public class IndexedFastaReaderTest {
+
+	private File fastaFile;
+
+	@Before
+	public void setUp() throws IOException {
+		fastaFile = File.createTempFile("ref", ".fa");
+	}
+
+	@After
+	public void tearDown() {
+		fastaFile.delete();
+		new File(fastaFile.getPath() + ".fai").delete();
+	}
+
+	@Test
+	public void fetchesWrittenSequences() throws IOException, FileException {
+		Random random = new Random(3);
+		String[] lineEnds = {"\n", "\r\n"};
+		for (String lineEnd : lineEnds) {
+			for (int lineBases : new int[] {1, 7, 60, 80}) {
+				// Sequences of lengths around multiples of the line length, with N and lowercase bases
+				Map<String, String> seqs = new LinkedHashMap<String, String>();
+				seqs.put("chr1", randomSequence(random, 5 * lineBases));
+				seqs.put("chr2", randomSequence(random, 5 * lineBases + 1));
+				seqs.put("chrM", randomSequence(random, 1 + random.nextInt(1000)));
+				seqs.put("chrX", randomSequence(random, 1));
+				writeFasta(seqs, lineBases, lineEnd);
+
+				FastaIndex index = FastaIndex.build(fastaFile.getPath());
+				assertEquals(seqs.size(), index.size());
+				IndexedFastaReader reader = new IndexedFastaReader(fastaFile.getPath());
+				for (Map.Entry<String, String> seq : seqs.entrySet()) {
+					String name = seq.getKey();
+					String bases = seq.getValue();
+					assertEquals(bases.length(), index.getEntry(name).getLength());
+					assertEquals(name + " description", reader.getDescription(name));
+					assertEquals(bases, reader.fetch(name, 0, bases.length()).toString());
+					for (int q = 0; q < 100; q++) {
+						int start = random.nextInt(bases.length() + 1);
+						int length = random.nextInt(bases.length() - start + 1);
+						assertEquals(bases.substring(start, start + length), reader.fetch(name, start, length).toString());
+					}
+				}
+				new File(fastaFile.getPath() + ".fai").delete();
+			}
+		}
+	}
+
+	@Test
+	public void readsWrittenIndex() throws IOException, FileException {
+		Map<String, String> seqs = new LinkedHashMap<String, String>();
+		seqs.put("chr1", randomSequence(new Random(5), 1234));
+		writeFasta(seqs, 60, "\n");
+		FastaIndex.load(fastaFile.getPath()); // builds and writes the index
+
+		FastaIndex.Entry entry = FastaIndex.read(fastaFile.getPath() + ".fai").getEntry("chr1");
+		assertEquals(1234, entry.getLength());
+		assertEquals(">chr1 description\n".length(), entry.getOffset());
+		assertEquals(60, entry.getLineBases());
+		assertEquals(61, entry.getLineWidth());
+	}
+
+	@Test
+	public void rejectsLinesOfDifferentLength() throws IOException {
+		Writer writer = new FileWriter(fastaFile);
+		writer.write(">chr1\nACGTACGT\nACG\nACGTACGT\n");
+		writer.close();
+		try {
+			FastaIndex.build(fastaFile.getPath());
+			fail("lines of different length are not indexed");
+		} catch (FileException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void rejectsRegionOutOfSequence() throws IOException, FileException {
+		Map<String, String> seqs = new LinkedHashMap<String, String>();
+		seqs.put("chr1", "ACGTACGTAC");
+		writeFasta(seqs, 4, "\n");
+		new IndexedFastaReader(fastaFile.getPath()).fetch("chr1", 8, 3);
+	}
+
+	private static String randomSequence(Random random, int length) {
+		StringBuilder seq = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			seq.append("ACGTACGTACGTNacgt".charAt(random.nextInt(17)));
+		}
+		return seq.toString();
+	}
+
+	private void writeFasta(Map<String, String> seqs, int lineBases, String lineEnd) throws IOException {
+		Writer writer = new FileWriter(fastaFile);
+		try {
+			for (Map.Entry<String, String> seq : seqs.entrySet()) {
+				writer.write(">" + seq.getKey() + " description" + lineEnd);
+				String bases = seq.getValue();
+				for (int i = 0; i < bases.length(); i += lineBases) {
+					writer.write(bases.substring(i, Math.min(bases.length(), i + lineBases)) + lineEnd);
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}